@@ -0,0 +1,451 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark harness for path finding, search reset and maze generation.
+ * Every benchmark is warmed up, then timed over several fixed-length
+ * iterations, on maps generated from a fixed seed so runs can be compared
+ * against a baseline. Reports throughput, bytes allocated per operation
+ * and, for searches, vertices expanded per second. pathQuality reports
+ * how much longer than optimal the paths of each non-A* mode are.
+ * tieBreaking reports the vertices A* expands per query with and without
+ * tie-breaking and fixed point costs, with FOUR and EIGHT connectivity.
+ * landmarks builds the ALT landmark tables, reporting their build time
+ * and size, and compares A* expansions and query time with and without.
+ * flowField compares routing every query start to one goal with A*
+ * against finding one DistanceField for the goal and reading from it.
+ * agents moves AGENTS agents to the query ends with an AgentScheduler at
+ * a few replan budgets per tick, reporting tick latency and backlog.
+ *
+ * Usage: java -Xmx8g -cp target/classes Benchmarks [options]
+ *   -bench runAStar,initAStar,...  benchmarks to run (default all)
+ *   -sizes 27,256,...              grid widths and heights (default 27,256,1024,4096,8192)
+ *   -maps open,prim,prim2,random,terrain  map types for the search benchmarks (default all)
+ *   -modes ASTAR,JPS,...           SearchModes for runAStar (default ASTAR)
+ *   -openlists INDEXED_HEAP,...    OpenListTypes for runAStar (default INDEXED_HEAP)
+ *   -warmup 2 -iterations 5        iteration counts
+ *   -time 1000                     milliseconds per iteration
+ *   -seed 42                       seed for maps and queries
+ * @author Michael A. Long
+ *
+ */
+public class Benchmarks {
+	static final String[] BENCHMARKS = {"runAStar", "pathQuality", "tieBreaking", "landmarks", "flowField", "agents", "initAStar", "reinitAStar", "setHeuristicAll",
+		"randomizeWalls", "randomizeWalls2", "randomizeWalls3"};
+	static final String[] MAPS = {"open", "prim", "prim2", "random", "terrain"};
+	static final int QUERIES = 64;//start/end pairs cycled through by the search benchmarks
+	static final double OBSTACLE_DENSITY = 0.25;//fraction of blocked vertices in "random" maps
+	static final int MAX_TERRAIN_COST = 9;//"terrain" maps are open, with costs 1 to this
+	static final int LANDMARKS = 8;//landmarks built by the landmarks benchmark
+	static final int AGENTS = 1024;//agents moved by the agents benchmark
+	static final long[] AGENT_BUDGETS_MS = {1, 4};//replan budgets per tick tried by the agents benchmark
+
+	String[] benchmarks = BENCHMARKS;
+	int[] sizes = {27, 256, 1024, 4096, 8192};
+	String[] maps = MAPS;
+	SearchMode[] modes = {SearchMode.ASTAR};
+	OpenListType[] openLists = {OpenListType.INDEXED_HEAP};
+	int warmup = 2;
+	int iterations = 5;
+	long iterationNanos = 1000000000L;
+	long seed = 42;
+
+	/**
+	 * One benchmarked operation. Returns the vertices it expanded, if any.
+	 */
+	interface Op {
+		long run();
+	}
+
+	public static void main(String[] args) {
+		Benchmarks b = new Benchmarks();
+		for (int i=0; i<args.length; i++) {
+			String a = args[i];
+			if (a.equals("-bench")) b.benchmarks = args[++i].split(",");
+			else if (a.equals("-sizes")) b.sizes = parseInts(args[++i]);
+			else if (a.equals("-maps")) b.maps = args[++i].split(",");
+			else if (a.equals("-modes")) b.modes = parseModes(args[++i]);
+			else if (a.equals("-openlists")) b.openLists = parseOpenLists(args[++i]);
+			else if (a.equals("-warmup")) b.warmup = Integer.parseInt(args[++i]);
+			else if (a.equals("-iterations")) b.iterations = Integer.parseInt(args[++i]);
+			else if (a.equals("-time")) b.iterationNanos = Long.parseLong(args[++i]) * 1000000L;
+			else if (a.equals("-seed")) b.seed = Long.parseLong(args[++i]);
+			else {
+				System.out.println("Usage: java -cp target/classes Benchmarks [-bench names] [-sizes n,...]"
+						+ " [-maps open,prim,prim2,random,terrain] [-modes ASTAR,...] [-openlists INDEXED_HEAP,...]"
+						+ " [-warmup n] [-iterations n] [-time ms] [-seed n]");
+				return;
+			}
+		}
+		b.runAll();
+	}
+
+	void runAll() {
+		System.out.println(String.format("%-40s %6s %7s %14s %10s %14s %10s %14s",
+				"Benchmark", "size", "map", "ops/s", "error", "ns/op", "B/op", "expansions/s"));
+		for (int size : sizes) {
+			for (String bench : benchmarks) {
+				if (bench.startsWith("randomizeWalls")) {
+					runGenerator(bench, size);
+				} else {
+					for (String map : maps) runSearch(bench, size, map);
+				}
+			}
+		}
+	}
+	/**
+	 * Builds a size x size World holding the given kind of map.
+	 */
+	World makeWorld(int size, String map) {
+		World w = new World(size, size);
+		w.setSeed(seed);
+		if (map.equals("prim")) {
+			w.randomizeWalls();
+		} else if (map.equals("prim2")) {
+			w.randomizeWalls2();
+		} else if (map.equals("random")) {
+			Random rand = new Random(seed);
+			int blocked = (int)(w.grid.size() * OBSTACLE_DENSITY);
+			for (int i=0; i<blocked; i++) w.grid.setBlocked(rand.nextInt(w.grid.size()), true);
+		} else if (map.equals("terrain")) {
+			w.randomizeCosts(MAX_TERRAIN_COST);
+		}
+		return w;
+	}
+	/**
+	 * Fixed start/end pairs on open vertices, as x,y,x,y quads.
+	 */
+	int[] makeQueries(World w) {
+		Random rand = new Random(seed);
+		int[] q = new int[QUERIES*4];
+		for (int i=0; i<q.length; i+=2) {
+			int idx;
+			do {
+				idx = rand.nextInt(w.grid.size());
+			} while (w.grid.isBlocked(idx));
+			q[i] = w.grid.xOf(idx);
+			q[i+1] = w.grid.yOf(idx);
+		}
+		return q;
+	}
+	void runSearch(String bench, int size, String map) {
+		final World w = makeWorld(size, map);
+		final int[] q = makeQueries(w);
+		w.startX = q[0]; w.startY = q[1]; w.endX = q[2]; w.endY = q[3];
+		w.initAStar();
+		if (bench.equals("runAStar")) {
+			for (SearchMode mode : modes) {
+				for (OpenListType type : openLists) {
+					w.setSearchMode(mode);
+					w.setOpenListType(type);
+					measure(bench+"["+mode+","+type+"]", size, map, new Op() {
+						int next = 0;
+						public long run() {
+							w.startX = q[next]; w.startY = q[next+1];
+							w.endX = q[next+2]; w.endY = q[next+3];
+							next = (next + 4) % q.length;
+							w.reinitAStar();
+							w.runSearch();
+							return w.expanded();
+						}
+					});
+				}
+			}
+		} else if (bench.equals("pathQuality")) {
+			for (SearchMode mode : modes) {
+				if (mode != SearchMode.ASTAR) pathQuality(w, q, mode, size, map);
+			}
+		} else if (bench.equals("tieBreaking")) {
+			for (OpenListType type : openLists) {
+				w.setOpenListType(type);
+				tieBreaking(w, q, size, map);
+			}
+		} else if (bench.equals("landmarks")) {
+			landmarks(w, q, size, map);
+		} else if (bench.equals("flowField")) {
+			flowField(w, q, size, map);
+		} else if (bench.equals("agents")) {
+			agents(w, q, size, map);
+		} else if (bench.equals("initAStar")) {
+			measure(bench, size, map, new Op() {
+				public long run() {
+					w.initAStar();
+					return 0;
+				}
+			});
+		} else if (bench.equals("reinitAStar")) {
+			measure(bench, size, map, new Op() {
+				public long run() {
+					w.reinitAStar();
+					return 0;
+				}
+			});
+		} else if (bench.equals("setHeuristicAll")) {
+			measure(bench, size, map, new Op() {
+				public long run() {
+					w.setHeuristicAll();
+					return 0;
+				}
+			});
+		} else {
+			System.out.println("Unknown benchmark "+bench);
+		}
+	}
+	void runGenerator(final String bench, int size) {
+		final World w = new World(size, size);
+		w.setSeed(seed);
+		measure(bench, size, "-", new Op() {
+			public long run() {
+				if (bench.equals("randomizeWalls")) w.randomizeWalls();
+				else if (bench.equals("randomizeWalls2")) w.randomizeWalls2();
+				else w.randomizeWalls3();
+				return 0;
+			}
+		});
+	}
+	/**
+	 * Compares path costs found in mode against A* over every query,
+	 * reporting the mean and worst excess over the optimal cost.
+	 */
+	void pathQuality(World w, int[] q, SearchMode mode, int size, String map) {
+		AStarSearch optimal = new AStarSearch(w.grid);
+		optimal.setConnectivity(w.connectivity);
+		w.setSearchMode(mode);
+		double total = 0, worst = 0;
+		int paths = 0;
+		for (int i=0; i<q.length; i+=4) {
+			w.startX = q[i]; w.startY = q[i+1]; w.endX = q[i+2]; w.endY = q[i+3];
+			int end = w.grid.index(w.endX, w.endY);
+			w.reinitAStar();
+			w.runSearch();
+			optimal.init(w.grid.index(w.startX, w.startY), end);
+			if (!optimal.runAStar() || optimal.state.G[end] == 0) continue;
+			double excess = w.state.G[end] / optimal.state.G[end] - 1.0;
+			total += excess;
+			worst = Math.max(worst, excess);
+			paths++;
+		}
+		System.out.println(String.format("%-40s %6d %7s   %d paths, mean %.2f%% longer than optimal, worst %.2f%%",
+				"pathQuality["+mode+"]", size, map, paths, 100 * total / Math.max(1, paths), 100 * worst));
+	}
+	/**
+	 * Runs every query with each combination of tie-breaking and fixed point
+	 * costs, reporting the mean vertices expanded and path cost per query.
+	 */
+	void tieBreaking(World w, int[] q, int size, String map) {
+		AStarSearch search = w.aStarSearch();
+		Connectivity[] connectivities = {Connectivity.FOUR, Connectivity.EIGHT};
+		for (Connectivity c : connectivities) {
+			search.setConnectivity(c);
+			for (int variant=0; variant<4; variant++) {
+				search.tieBreaking = (variant & 1) != 0;
+				search.fixedPoint = (variant & 2) != 0;
+				long expanded = 0;
+				double cost = 0;
+				int paths = 0;
+				for (int i=0; i<q.length; i+=4) {
+					int start = w.grid.index(q[i], q[i+1]), end = w.grid.index(q[i+2], q[i+3]);
+					search.init(start, end);
+					if (!search.runAStar()) continue;
+					expanded += search.expanded;
+					cost += search.state.G[end];
+					paths++;
+				}
+				String name = "tieBreaking["+c+","+(search.fixedPoint ? "fixed" : "float")
+						+(search.tieBreaking ? ",highG" : "")+"]";
+				System.out.println(String.format("%-40s %6d %7s   %s, %d paths, %.1f expanded per path, mean cost %.3f",
+						name, size, map, w.openListType, paths, (double)expanded / Math.max(1, paths), cost / Math.max(1, paths)));
+			}
+		}
+		search.tieBreaking = true;
+		search.fixedPoint = false;
+		search.setConnectivity(w.connectivity);
+	}
+	/**
+	 * Builds landmarks for the map, then runs every query with and without
+	 * them, reporting build time and size, then the mean vertices expanded
+	 * and microseconds per query.
+	 */
+	void landmarks(World w, int[] q, int size, String map) {
+		AStarSearch search = w.aStarSearch();
+		search.setConnectivity(w.connectivity);
+		Landmarks landmarks = new Landmarks(w.grid, w.connectivity, LANDMARKS, Runtime.getRuntime().availableProcessors());
+		System.out.println(String.format("%-40s %6d %7s   %d landmarks, built in %.1fms, %.1fMB",
+				"landmarks[build]", size, map, landmarks.count, landmarks.buildNanos / 1e6, landmarks.bytes() / 1048576.0));
+		for (int variant=0; variant<2; variant++) {
+			search.landmarks = variant == 1 ? landmarks : null;
+			for (int i=0; i<warmup; i++) {
+				for (int j=0; j<q.length; j+=4) {
+					search.init(w.grid.index(q[j], q[j+1]), w.grid.index(q[j+2], q[j+3]));
+					search.runAStar();
+				}
+			}
+			long expanded = 0, nanos = 0;
+			int paths = 0;
+			for (int i=0; i<q.length; i+=4) {
+				long t0 = System.nanoTime();
+				search.init(w.grid.index(q[i], q[i+1]), w.grid.index(q[i+2], q[i+3]));
+				boolean found = search.runAStar();
+				nanos += System.nanoTime() - t0;
+				if (!found) continue;
+				expanded += search.expanded;
+				paths++;
+			}
+			System.out.println(String.format("%-40s %6d %7s   %d paths, %.1f expanded per path, %.1fus per query",
+					variant == 1 ? "landmarks[ALT]" : "landmarks[none]", size, map, paths,
+					(double)expanded / Math.max(1, paths), nanos / 1000.0 / (q.length / 4)));
+		}
+		search.landmarks = null;
+	}
+	/**
+	 * Sends an agent from every query start to the first query's end: with
+	 * A* for each, then with a DistanceField found on one thread and over
+	 * stripes on every processor, each agent reading its next step and its
+	 * whole path from the field.
+	 */
+	void flowField(World w, int[] q, int size, String map) {
+		AStarSearch search = w.aStarSearch();
+		search.setConnectivity(w.connectivity);
+		int goal = w.grid.index(q[2], q[3]);
+		int agents = q.length / 4;
+		for (int i=0; i<=warmup; i++) {
+			long t0 = System.nanoTime();
+			long expanded = 0;
+			for (int j=0; j<q.length; j+=4) {
+				search.init(w.grid.index(q[j], q[j+1]), goal);
+				search.runAStar();
+				expanded += search.expanded;
+			}
+			if (i == warmup) System.out.println(String.format("%-40s %6d %7s   %d agents, %.1fus, %d expanded",
+					"flowField[A* each]", size, map, agents, (System.nanoTime() - t0) / 1000.0, expanded));
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(threads);
+		for (int stripes : new int[] {1, 2*threads}) {
+			for (int i=0; i<=warmup; i++) {
+				DistanceField field = new DistanceField(w.grid, w.connectivity, goal, pool, stripes);
+				long t0 = System.nanoTime();
+				long steps = 0;
+				for (int j=0; j<q.length; j+=4) {
+					int start = w.grid.index(q[j], q[j+1]);
+					if (field.next(start) >= 0) steps++;
+				}
+				long stepNanos = System.nanoTime() - t0;
+				t0 = System.nanoTime();
+				for (int j=0; j<q.length; j+=4) field.path(w.grid.index(q[j], q[j+1]));
+				long pathNanos = System.nanoTime() - t0;
+				if (i == warmup) System.out.println(String.format("%-40s %6d %7s   built in %.1fus (%d rounds, %d settled, %.1fMB),"
+						+ " %d next steps in %.1fus, %d paths in %.1fus",
+						"flowField[stripes "+stripes+"]", size, map, field.buildNanos / 1000.0, field.rounds, field.settled,
+						field.bytes() / 1048576.0, steps, stepNanos / 1000.0, agents, pathNanos / 1000.0));
+			}
+		}
+		pool.shutdown();
+	}
+	/**
+	 * Moves AGENTS agents from random open vertices to the query ends, so
+	 * about AGENTS / QUERIES share each goal, until all have arrived or
+	 * can't, or the iterations' time runs out. Each budget starts with no
+	 * cached fields.
+	 */
+	void agents(World w, int[] q, int size, String map) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (long budget : AGENT_BUDGETS_MS) {
+			if (w.fields != null) w.fields.clear();
+			Random rand = new Random(seed);
+			AgentScheduler scheduler = new AgentScheduler(w, budget * 1000000L, threads);
+			for (int i=0; i<AGENTS; i++) {
+				int v;
+				do v = rand.nextInt(w.grid.size()); while (w.grid.isBlocked(v));
+				int j = 4 * rand.nextInt(q.length / 4);
+				scheduler.add(v, w.grid.index(q[j+2], q[j+3]));
+			}
+			int arrived = 0;
+			long t0 = System.nanoTime();
+			while (System.nanoTime() - t0 < iterationNanos * (warmup + iterations)) {
+				scheduler.tick();
+				arrived = 0;
+				int done = 0;
+				for (int i=0; i<AGENTS; i++) {
+					Agent a = scheduler.agent(i);
+					if (a.arrived()) arrived++;
+					if (a.arrived() || a.unreachable) done++;
+				}
+				if (done == AGENTS) break;
+			}
+			System.out.println(String.format("%-40s %6d %7s   %d ticks, %d arrived, tick p50 %.1fus p99 %.1fus max %.1fus,"
+					+ " backlog max %d, %d A* paths, %d on %d fields",
+					"agents[budget "+budget+"ms]", size, map, scheduler.ticks, arrived, scheduler.percentile(50) / 1000.0,
+					scheduler.percentile(99) / 1000.0, scheduler.percentile(100) / 1000.0, scheduler.maxBacklog,
+					scheduler.replans, scheduler.sharedReplans, scheduler.fieldsBuilt));
+			scheduler.shutdown();
+		}
+	}
+	/**
+	 * Runs op for the warmup iterations, then reports the mean of the
+	 * measured ones. The error is one standard deviation of ops/s.
+	 */
+	void measure(String name, int size, String map, Op op) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+				? (com.sun.management.ThreadMXBean)threads : null;
+		long thread = Thread.currentThread().getId();
+		for (int i=0; i<warmup; i++) iteration(op);
+		double[] opsPerSec = new double[iterations];
+		long totalOps = 0, totalNanos = 0, totalExpanded = 0, totalBytes = 0;
+		for (int i=0; i<iterations; i++) {
+			long bytes = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+			long[] r = iteration(op);
+			if (allocations != null) totalBytes += allocations.getThreadAllocatedBytes(thread) - bytes;
+			opsPerSec[i] = r[0] * 1e9 / r[1];
+			totalOps += r[0];
+			totalNanos += r[1];
+			totalExpanded += r[2];
+		}
+		double mean = 0;
+		for (double v : opsPerSec) mean += v;
+		mean /= iterations;
+		double var = 0;
+		for (double v : opsPerSec) var += (v - mean) * (v - mean);
+		double error = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0;
+		System.out.println(String.format("%-40s %6d %7s %14.1f %10.1f %14.1f %10s %14s",
+				name, size, map, mean, error, (double)totalNanos / totalOps,
+				allocations != null ? String.format("%.1f", (double)totalBytes / totalOps) : "n/a",
+				totalExpanded > 0 ? String.format("%.0f", totalExpanded * 1e9 / totalNanos) : "-"));
+	}
+	/**
+	 * Calls op until the iteration time is used up, always at least once.
+	 * Returns {operations, nanoseconds, expansions}.
+	 */
+	long[] iteration(Op op) {
+		long ops = 0, expanded = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			expanded += op.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+		return new long[] {ops, elapsed, expanded};
+	}
+
+	static int[] parseInts(String s) {
+		String[] parts = s.split(",");
+		int[] r = new int[parts.length];
+		for (int i=0; i<parts.length; i++) r[i] = Integer.parseInt(parts[i].trim());
+		return r;
+	}
+	static SearchMode[] parseModes(String s) {
+		List<SearchMode> r = new ArrayList<>();
+		for (String p : s.split(",")) r.add(SearchMode.valueOf(p.trim()));
+		return r.toArray(new SearchMode[r.size()]);
+	}
+	static OpenListType[] parseOpenLists(String s) {
+		List<OpenListType> r = new ArrayList<>();
+		for (String p : s.split(",")) r.add(OpenListType.valueOf(p.trim()));
+		return r.toArray(new OpenListType[r.size()]);
+	}
+}
@@ -0,0 +1,288 @@
+/**
+ * A* path finding over a Grid, with its own SearchState and open list.
+ * The Grid is only read, so any number of AStarSearch objects, one per
+ * thread, can search the same Grid at once.
+ * @author Michael A. Long
+ *
+ */
+public class AStarSearch {
+	//results of runAStar(maxExpansions)
+	public static final int RUNNING = 0;//stopped at the limit, can be resumed
+	public static final int FOUND = 1;
+	public static final int NO_PATH = 2;
+
+	public final Grid grid;
+	public final SearchState state;//bookkeeping for each vertex
+	public OpenList open;
+	public OpenListType openListType;
+	public Connectivity connectivity;//which moves A* may make
+	public Heuristic heuristicType;//estimate of the remaining distance
+	public SearchMode mode;//algorithm used by run
+	public int start;
+	public int goal;
+	public int expanded;//vertices removed from the open list by the last run
+	public SearchStats stats;//runAStar adds its counts to this if not null
+	public int closest;//expanded vertex with the lowest H so far, the end of the best partial path
+	public boolean tieBreaking = true;//among equal F, runAStar expands the highest G first
+	/**
+	 * runAStar keeps G in whole 1/1024ths (Connectivity.FIXED_UNITS), in a
+	 * long per vertex allocated by the first such search, so equal F are
+	 * exactly equal however long the path. Read by init.
+	 */
+	public boolean fixedPoint;
+	public Landmarks landmarks;//if not null, heuristic also takes the ALT bound while they match the grid
+	private Landmarks alt;//landmarks, if usable for the current search
+	private int goalX;
+	private int goalY;
+	private int[] neighborOffsets;//index offset of each move in connectivity
+	private long[] fixedG;//G in 1/1024ths, for fixedPoint, allocated on its first search
+	private boolean fixed;//fixedPoint, as of init
+	private JumpPointSearch jumpPointSearch;//created on first use
+	private BidirectionalSearch bidirectionalSearch;//created on first use
+
+	public AStarSearch(Grid _grid) {
+		grid = _grid;
+		state = new SearchState(grid.size());
+		setOpenListType(OpenListType.INDEXED_HEAP);
+		setConnectivity(Connectivity.FOUR);
+		mode = SearchMode.ASTAR;
+		start = goal = -1;
+	}
+	public void setOpenListType(OpenListType type) {
+		if (type != openListType) {
+			openListType = type;
+			open = type.create(state);
+		}
+	}
+	/**
+	 * Sets which moves A* may make, along with the heuristic which best
+	 * fits them. heuristicType can be changed afterwards.
+	 */
+	public void setConnectivity(Connectivity c) {
+		if (c != connectivity) {
+			connectivity = c;
+			neighborOffsets = c.offsets(grid.width);
+		}
+		heuristicType = c.defaultHeuristic();
+	}
+	/**
+	 * Picks the algorithm run uses. The Jump Point Search modes
+	 * switch connectivity to EIGHT_NO_CORNER_CUTTING, which they require.
+	 */
+	public void setMode(SearchMode _mode) {
+		mode = _mode;
+		if (mode.isJumpPoint() && connectivity != Connectivity.EIGHT_NO_CORNER_CUTTING) {
+			setConnectivity(Connectivity.EIGHT_NO_CORNER_CUTTING);
+		}
+	}
+	public JumpPointSearch jumpPointSearch() {
+		if (jumpPointSearch == null) jumpPointSearch = new JumpPointSearch(this);
+		return jumpPointSearch;
+	}
+	public BidirectionalSearch bidirectionalSearch() {
+		if (bidirectionalSearch == null) bidirectionalSearch = new BidirectionalSearch(this);
+		return bidirectionalSearch;
+	}
+	/**
+	 * Distance estimation heuristic, from heuristicType, or the landmark
+	 * bound if that is larger.
+	 */
+	public float heuristic(int idx) {
+		if (fixedPoint) return heuristicUnits(idx) / 1024.0f;
+		int xdiff = Math.abs(idx % grid.width - goalX);
+		int ydiff = Math.abs(idx / grid.width - goalY);
+		float h = heuristicType.estimate(xdiff, ydiff);
+		if (alt != null) {
+			float l = alt.estimate(idx, goal);
+			if (l > h) h = l;
+		}
+		return h;
+	}
+	/**
+	 * heuristic for fixedPoint, in whole 1/1024ths.
+	 */
+	private long heuristicUnits(int idx) {
+		long h = heuristicType.estimateUnits(Math.abs(idx % grid.width - goalX), Math.abs(idx / grid.width - goalY));
+		if (alt != null) h = Math.max(h, alt.estimateUnits(idx, goal));
+		return h;
+	}
+	/**
+	 * Prepares a search from vertex _start to vertex _goal. Only the open
+	 * list and a generation counter are reset, so this does not depend
+	 * on the grid size.
+	 */
+	public void init(int _start, int _goal) {
+		start = _start;
+		goal = _goal;
+		goalX = grid.xOf(goal);
+		goalY = grid.yOf(goal);
+		alt = landmarks != null && landmarks.grid == grid && landmarks.isCurrent()
+				&& landmarks.connectivity == connectivity ? landmarks : null;
+		expanded = 0;
+		closest = _start;
+		open.clear();
+		state.reset();
+		state.touch(start);
+		state.H[start] = heuristic(start);
+		state.status[start] = SearchState.OPEN;
+		fixed = fixedPoint;
+		if (fixed) {
+			if (fixedG == null) fixedG = new long[grid.size()];
+			fixedG[start] = 0;
+			open.add(start, heuristicUnits(start) / 1024.0, 0.0);
+		} else {
+			open.add(start, state.F(start), 0.0);
+		}
+	}
+	/**
+	 * Runs the search chosen by mode, returning true if the goal was reached.
+	 */
+	public boolean run() {
+		switch (mode) {
+		case JPS:
+			return jumpPointSearch().run(false);
+		case JPS_PLUS:
+			return jumpPointSearch().run(true);
+		case BIDIRECTIONAL:
+			return bidirectionalSearch().run();
+		default:
+			return runAStar();
+		}
+	}
+	public boolean runAStar() {
+		return runAStar(-1) == FOUND;
+	}
+	/**
+	 * Runs A* for at most maxExpansions expansions (-1 for no limit).
+	 * A move costs its length times the terrain cost of the vertex moved onto.
+	 * With fixedPoint, diagonal lengths are rounded to 1448/1024, so paths
+	 * may be up to 0.015% longer than the shortest, but ties in F are exact
+	 * and tieBreaking can head straight for the goal along them.
+	 * Returns RUNNING if it stopped at the limit, in which case calling it
+	 * again carries on where it left off, or else FOUND or NO_PATH.
+	 */
+	public int runAStar(int maxExpansions) {
+		Grid grid = this.grid;
+		OpenList open = this.open;
+		int width = grid.width;
+		int height = grid.height;
+		int end = goal;
+		int[] stamp = state.stamp;
+		int generation = state.generation;
+		byte[] status = state.status;
+		float[] G = state.G;
+		float[] H = state.H;
+		int[] parent = state.parent;
+		int directions = connectivity.directions;
+		boolean cutsCorners = connectivity.cutsCorners;
+		int[] dx = Connectivity.DX;
+		int[] dy = Connectivity.DY;
+		float[] cost = Connectivity.COST;
+		int[] units = Connectivity.FIXED_UNITS;
+		long[] fixedG = fixed ? this.fixedG : null;
+		boolean tieBreaking = this.tieBreaking;
+		int[] offset = neighborOffsets;
+		boolean weighted = grid.hasCosts();//uniform grids skip the cost lookup
+		//counted in locals, which cost next to nothing, and only stored if stats are wanted
+		int pushed = 0, reopened = 0, decreaseKeys = 0, touched = 0;
+		int openSize = open.size(), peakOpen = openSize;
+		int result = NO_PATH;
+		int left = maxExpansions;
+		int closest = this.closest;
+		float closestH = H[closest];
+		while (!open.isEmpty()) {
+			if (left-- == 0) {
+				result = RUNNING;
+				break;
+			}
+			int cur = open.remove();
+			openSize--;
+			expanded++;
+			if (H[cur] < closestH) {
+				closest = cur;
+				closestH = H[cur];
+			}
+			if (cur == end) {
+				result = FOUND;
+				break;
+			}
+			status[cur] = SearchState.CLOSED;
+			int curx = cur % width;
+			int cury = cur / width;
+			//check all accessible adjacent vertices
+			for (int d=0; d<directions; d++) {
+				int nx = curx + dx[d];
+				int ny = cury + dy[d];
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+				int n = cur + offset[d];
+				if (grid.isBlocked(n)) continue;
+				if (d >= 4 && !cutsCorners) {//diagonal, both vertices beside it must be open
+					if (grid.isBlocked(cur + dx[d]) || grid.isBlocked(cur + offset[d] - dx[d])) continue;
+				}
+				if (stamp[n] != generation) {//first time this search reached n
+					state.touch(n);
+					H[n] = heuristic(n);
+					touched++;
+				}
+				float dist;
+				double f, k2;
+				if (fixedG != null) {//exact sums, G and H are only rounded for display
+					long g = fixedG[cur] + (weighted ? units[d] * grid.cost(n) : units[d]);
+					if (status[n] != SearchState.UNSEEN && g >= fixedG[n]) continue;
+					fixedG[n] = g;
+					dist = g / 1024.0f;
+					f = (g + heuristicUnits(n)) / 1024.0;
+					k2 = tieBreaking ? -g : 0.0;
+				} else {
+					dist = G[cur] + (weighted ? cost[d] * grid.cost(n) : cost[d]);
+					if (status[n] != SearchState.UNSEEN && dist + H[n] >= state.F(n)) continue;
+					f = dist + H[n];
+					k2 = tieBreaking ? -dist : 0.0;
+				}
+				if (status[n] == SearchState.UNSEEN) {
+					status[n] = SearchState.OPEN;
+					G[n] = dist;
+					parent[n] = cur;
+					open.add(n, f, k2);
+					pushed++;
+					if (++openSize > peakOpen) peakOpen = openSize;
+				} else { //node previously visited (closed), or queued (open), and the new cost is lower
+					G[n] = dist;
+					parent[n] = cur;
+					if (status[n] == SearchState.CLOSED) {
+						status[n] = SearchState.OPEN;
+						open.add(n, f, k2);
+						pushed++;
+						reopened++;
+						if (++openSize > peakOpen) peakOpen = openSize;
+					} else {//node is currently queued
+						open.decreaseKey(n, f, k2);
+						decreaseKeys++;
+					}
+				}
+			}
+		}
+		if (stats != null) {
+			stats.pushed += pushed;
+			stats.reopened += reopened;
+			stats.decreaseKeys += decreaseKeys;
+			stats.touched += touched;
+			stats.peakOpen = Math.max(stats.peakOpen, peakOpen);
+		}
+		this.closest = closest;
+		return result;
+	}
+	/**
+	 * The vertices of the path found by the last run, from start to goal,
+	 * or null if the goal wasn't reached.
+	 */
+	public int[] path() {
+		if (state.statusOf(goal) == SearchState.UNSEEN) return null;
+		int length = 0;
+		for (int cur = goal; cur != -1; cur = state.parentOf(cur)) length++;
+		int[] path = new int[length];
+		for (int cur = goal; cur != -1; cur = state.parentOf(cur)) path[--length] = cur;
+		if (path[0] != start) return null;
+		return path;
+	}
+}
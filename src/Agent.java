@@ -0,0 +1,43 @@
+/**
+ * One moving agent for AgentScheduler: where it is, where it is going, and
+ * how it means to get there, either a path of its own or a DistanceField
+ * it shares with every other agent heading for the same goal.
+ * @author Michael A. Long
+ *
+ */
+public class Agent {
+	public final int id;
+	public int position;//vertex the agent is on
+	public int goal;
+	public int priority;//higher priority replans are served first, see AgentScheduler.setPriority
+	public int[] path;//own path from A*, start first, or null
+	public int step;//index of position in path
+	public DistanceField field;//shared field for goal, or null
+	public boolean unreachable;//the last replan found no path
+	int unreachableVersion;//grid version when that replan ran, it is retried once the grid changes
+	boolean queued;//waiting in the scheduler's replan queue
+	long requestSeq;//order the replan was requested in, for fairness among equal priorities
+	long requestTick;//tick the replan was requested on
+	int[] nextPath;//written by a worker thread while replanning
+
+	Agent(int _id, int _position, int _goal) {
+		id = _id;
+		position = _position;
+		goal = _goal;
+	}
+	public boolean arrived() {
+		return position == goal;
+	}
+	/**
+	 * The vertex this agent moves to next, or -1 if it has no plan.
+	 */
+	public int next() {
+		if (field != null) return field.next(position);
+		if (path != null && step + 1 < path.length) return path[step + 1];
+		return -1;
+	}
+	@Override
+	public String toString() {
+		return "Agent "+id+" at "+position+" to "+goal;
+	}
+}
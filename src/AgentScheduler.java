@@ -0,0 +1,374 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Moves many agents over a World's grid, one step each per tick, and
+ * replans their paths within a fixed time budget per tick.
+ *
+ * An agent needing a path (new, given a new goal, or finding its next step
+ * blocked) waits in a queue, highest priority first and then oldest first.
+ * Each tick takes batches from the queue until the budget is spent, and
+ * whatever is left waits for the next tick: that is the backlog. Batches
+ * are sized from how long recent replans took, so the last one ends near
+ * the budget rather than well past it. Agents whose goal has a cached
+ * DistanceField, or is wanted by enough waiting agents that finding its
+ * field is quicker than their A* searches (and not too slow for the
+ * budget), all follow that goal's field at once, wherever they are in the
+ * queue. The rest each get an A* path, spread across the worker threads
+ * with an AStarSearch per thread as in BatchRouter.
+ *
+ * An agent whose field is dropped from the cache (evicted, or the grid
+ * changed under it) carries on along the path the field gave it, so only
+ * cached fields are kept.
+ *
+ * A tick always replans at least one agent, so a budget shorter than one
+ * A* search or field overruns by that much.
+ *
+ * Keeps the time taken by each of the last HISTORY ticks for latency
+ * percentiles, and the backlog after each tick. Agents don't get in each
+ * other's way. The grid must only be changed between ticks.
+ * @author Michael A. Long
+ *
+ */
+public class AgentScheduler {
+	public static final int SHARED_GOAL = 4;//fewest waiting agents for one goal which share a field for it
+	private static final int CHUNK = 8;//agents per task once a batch is split up
+	private static final int HISTORY = 1024;//ticks kept for percentiles
+
+	public final World world;
+	public long budgetNanos;//replanning time per tick; a batch started inside it is always finished
+	private final int threads;
+	private final ForkJoinPool pool;
+	private final ThreadLocal<AStarSearch> searches;
+	private Connectivity connectivity;//copied from world for each batch, for the worker threads
+	private Heuristic heuristic;
+	private Landmarks landmarks;
+	private boolean tieBreaking;
+	private boolean fixedPoint;
+	private final ArrayList<Agent> agents = new ArrayList<>();
+	private final PriorityQueue<Agent> queue;
+	private final HashMap<Integer, HashSet<Agent>> waiting = new HashMap<>();//queued agents by goal
+	private long nanosPerPath;//recent A* time per agent in a batch, 0 until timed
+	private long nanosPerField;//recent time to find a DistanceField, 0 until timed
+	private long requests;
+	private final long[] tickNanos = new long[HISTORY];
+	public long ticks;
+	public long replans;//A* paths found
+	public long sharedReplans;//agents sent along a shared DistanceField
+	public long fieldsBuilt;//fields found for them, the rest came from the cache
+	public long unreachableReplans;//replans which found no path
+	public int lastReplans;//agents replanned by the last tick
+	public int backlog;//agents still waiting for a replan after the last tick
+	public int maxBacklog;
+	public long maxWaitTicks;//longest an agent has waited in the queue
+
+	public AgentScheduler(World _world, long _budgetNanos, int _threads) {
+		world = _world;
+		budgetNanos = _budgetNanos;
+		threads = Math.max(1, _threads);
+		pool = new ForkJoinPool(threads);
+		searches = new ThreadLocal<AStarSearch>() {
+			@Override
+			protected AStarSearch initialValue() {
+				return new AStarSearch(world.grid);
+			}
+		};
+		queue = new PriorityQueue<Agent>(64, new Comparator<Agent>() {
+			@Override
+			public int compare(Agent a, Agent b) {
+				if (a.priority != b.priority) return a.priority > b.priority ? -1 : 1;
+				return Long.compare(a.requestSeq, b.requestSeq);
+			}
+		});
+	}
+	/**
+	 * Stops the worker threads.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+	/**
+	 * Adds an agent at vertex position heading for vertex goal. It waits
+	 * for a path like any other replan.
+	 */
+	public Agent add(int position, int goal) {
+		Agent a = new Agent(agents.size(), position, goal);
+		agents.add(a);
+		request(a);
+		return a;
+	}
+	public void remove(Agent a) {
+		agents.remove(a);
+		if (a.queued) {
+			queue.remove(a);
+			unwait(a);
+		}
+		a.queued = false;
+	}
+	public void setGoal(Agent a, int goal) {
+		if (a.queued) unwait(a);
+		a.goal = goal;
+		if (a.queued) wait(a);
+		request(a);
+	}
+	/**
+	 * Changes a's priority, moving it up or down the queue if it is waiting.
+	 */
+	public void setPriority(Agent a, int priority) {
+		if (a.queued) queue.remove(a);
+		a.priority = priority;
+		if (a.queued) queue.add(a);
+	}
+	/**
+	 * Queues a replan for a, if it isn't already waiting for one.
+	 */
+	public void request(Agent a) {
+		if (a.queued) return;
+		a.queued = true;
+		a.requestSeq = requests++;
+		a.requestTick = ticks;
+		queue.add(a);
+		wait(a);
+	}
+	private void wait(Agent a) {
+		HashSet<Agent> group = waiting.get(a.goal);
+		if (group == null) waiting.put(a.goal, group = new HashSet<Agent>());
+		group.add(a);
+	}
+	private void unwait(Agent a) {
+		HashSet<Agent> group = waiting.get(a.goal);
+		group.remove(a);
+		if (group.isEmpty()) waiting.remove(a.goal);
+	}
+	public int agents() {
+		return agents.size();
+	}
+	public Agent agent(int i) {
+		return agents.get(i);
+	}
+	/**
+	 * Replans queued agents until the budget is spent, then moves every
+	 * agent one step.
+	 */
+	public void tick() {
+		long t0 = System.nanoTime();
+		long deadline = t0 + budgetNanos;
+		lastReplans = 0;
+		while (!queue.isEmpty()) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0 && lastReplans > 0) break;
+			int n = Math.min(queue.size(), threads * CHUNK);
+			if (nanosPerPath > 0) n = (int)Math.max(1, Math.min(n, left / nanosPerPath));
+			else n = Math.min(n, threads);//one each until A* has been timed
+			Agent[] batch = new Agent[n];
+			for (int i=0; i<n; i++) batch[i] = queue.poll();
+			if (!replan(batch, deadline)) break;
+		}
+		for (int i=0; i<agents.size(); i++) move(agents.get(i));
+		backlog = queue.size();
+		maxBacklog = Math.max(maxBacklog, backlog);
+		tickNanos[(int)(ticks % HISTORY)] = System.nanoTime() - t0;
+		ticks++;
+	}
+	/**
+	 * Replans the batch, taken from the queue in order. A field which
+	 * doesn't fit before deadline is left for a later tick, along with the
+	 * rest of the batch, unless nothing has been replanned yet this tick;
+	 * returns false if that happened.
+	 */
+	private boolean replan(Agent[] batch, long deadline) {
+		Agent[] own = new Agent[batch.length];
+		int ownCount = 0;
+		boolean finished = true;
+		for (int i=0; i<batch.length; i++) {
+			Agent a = batch[i];
+			if (!a.queued) continue;//already given a field along with others for its goal
+			DistanceField field = world.fields != null ? world.fields.peek(a.goal) : null;
+			if (field != null || share(waiting.get(a.goal).size())) {
+				if (field == null && lastReplans + ownCount > 0 && System.nanoTime() + nanosPerField > deadline) {
+					for (int j=i; j<batch.length; j++) if (batch[j].queued) queue.add(batch[j]);//keeping their place
+					finished = false;
+					break;
+				}
+				field = world.distanceField(a.goal);
+				if (world.fields.lastBuilt) {
+					fieldsBuilt++;
+					nanosPerField = average(nanosPerField, field.buildNanos);
+				}
+				follow(a.goal, field);
+				continue;
+			}
+			dequeue(a);
+			if (a.arrived()) continue;
+			if (!world.components.connected(a.position, a.goal)) {
+				unreachable(a);
+			} else {
+				own[ownCount++] = a;
+			}
+		}
+		if (ownCount > 0) {
+			connectivity = world.connectivity;
+			heuristic = world.heuristicType;
+			AStarSearch settings = world.search;//null until the world searches, leaving the defaults
+			landmarks = settings != null ? settings.landmarks : null;
+			tieBreaking = settings == null || settings.tieBreaking;
+			fixedPoint = settings != null && settings.fixedPoint;
+			long t0 = System.nanoTime();
+			pool.invoke(new ReplanTask(own, 0, ownCount));
+			nanosPerPath = average(nanosPerPath, (System.nanoTime() - t0) / ownCount);
+			for (int i=0; i<ownCount; i++) {
+				Agent a = own[i];
+				a.path = a.nextPath;
+				a.nextPath = null;
+				if (a.path != null) replans++;
+				else unreachable(a);
+			}
+		}
+		return finished;
+	}
+	/**
+	 * Sends every agent waiting for goal along field, whether or not it
+	 * has reached the front of the queue.
+	 */
+	private void follow(int goal, DistanceField field) {
+		HashSet<Agent> group = waiting.get(goal);
+		if (group.size() > 1) queue.removeAll(group);
+		for (Agent a : group.toArray(new Agent[group.size()])) {
+			dequeue(a);
+			if (a.arrived()) continue;
+			if (field.reaches(a.position)) {
+				a.field = field;
+				sharedReplans++;
+			} else {
+				unreachable(a);
+			}
+		}
+	}
+	/**
+	 * Takes a, already out of the queue, off the waiting lists and clears
+	 * its old plan.
+	 */
+	private void dequeue(Agent a) {
+		a.queued = false;
+		unwait(a);
+		maxWaitTicks = Math.max(maxWaitTicks, ticks - a.requestTick);
+		lastReplans++;
+		a.path = null;
+		a.field = null;
+		a.step = 0;
+		a.unreachable = false;
+	}
+	private void unreachable(Agent a) {
+		a.unreachable = true;
+		a.unreachableVersion = world.grid.version;
+		unreachableReplans++;
+	}
+	/**
+	 * True if agents waiting for one goal should share a DistanceField for it
+	 * rather than each run A*: there are at least SHARED_GOAL of them, A*
+	 * has been timed, and once a field has been timed too, finding one takes
+	 * less time than their A* searches and no longer than the budget or two
+	 * A* searches, so it doesn't stretch a tick much more than A* would.
+	 */
+	private boolean share(int agentsForGoal) {
+		if (agentsForGoal < SHARED_GOAL || nanosPerPath == 0) return false;
+		if (nanosPerField == 0) return true;
+		return agentsForGoal * nanosPerPath >= nanosPerField && nanosPerField <= Math.max(budgetNanos, 2 * nanosPerPath);
+	}
+	private static long average(long average, long sample) {
+		return average == 0 ? sample : (3*average + sample) / 4;
+	}
+	/**
+	 * Takes a's next step, or queues a replan if it can't.
+	 */
+	private void move(Agent a) {
+		if (a.queued || a.arrived()) return;
+		if (a.unreachable) {
+			if (a.unreachableVersion != world.grid.version) request(a);
+			return;
+		}
+		if (a.field != null && world.fields.peek(a.goal) != a.field) {//dropped from the cache, keep only the path it gave
+			a.path = a.field.path(a.position);
+			a.step = 0;
+			a.field = null;
+		}
+		int next = a.next();
+		if (next < 0 || !canMove(a.position, next)) {
+			request(a);
+			return;
+		}
+		a.position = next;
+		a.step++;
+	}
+	/**
+	 * True if the grid still allows the move from one vertex to the next.
+	 */
+	private boolean canMove(int from, int to) {
+		Grid grid = world.grid;
+		if (grid.isBlocked(to)) return false;
+		int dx = to % grid.width - from % grid.width;
+		int dy = to / grid.width - from / grid.width;
+		if (dx != 0 && dy != 0 && !world.connectivity.cutsCorners) {//diagonal, both vertices beside it must be open
+			return !grid.isBlocked(from + dx) && !grid.isBlocked(to - dx);
+		}
+		return true;
+	}
+	/**
+	 * Time taken by a tick, in nanoseconds, at percentile p (0 to 100)
+	 * of the last HISTORY ticks.
+	 */
+	public long percentile(double p) {
+		int n = (int)Math.min(ticks, HISTORY);
+		if (n == 0) return 0;
+		long[] sorted = Arrays.copyOf(tickNanos, n);
+		Arrays.sort(sorted);
+		int i = (int)Math.ceil(p / 100.0 * n) - 1;
+		return sorted[Math.max(0, Math.min(n - 1, i))];
+	}
+	@Override
+	public String toString() {
+		return "AgentScheduler "+agents.size()+" agents, "+ticks+" ticks, tick us p50 "+percentile(50) / 1000
+				+" p95 "+percentile(95) / 1000+" p99 "+percentile(99) / 1000+" max "+percentile(100) / 1000
+				+", backlog "+backlog+" (max "+maxBacklog+", longest wait "+maxWaitTicks+" ticks)"
+				+", A* paths "+replans+", on shared fields "+sharedReplans+" ("+fieldsBuilt+" found)"
+				+", unreachable "+unreachableReplans;
+	}
+
+	private class ReplanTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Agent[] agents;
+		private final int lo;
+		private final int hi;
+
+		ReplanTask(Agent[] _agents, int _lo, int _hi) {
+			agents = _agents;
+			lo = _lo;
+			hi = _hi;
+		}
+		@Override
+		protected void compute() {
+			if (hi - lo <= CHUNK) {
+				AStarSearch search = searches.get();
+				search.setConnectivity(connectivity);
+				search.heuristicType = heuristic;
+				search.landmarks = landmarks;
+				search.tieBreaking = tieBreaking;
+				search.fixedPoint = fixedPoint;
+				for (int i=lo; i<hi; i++) {
+					Agent a = agents[i];
+					search.init(a.position, a.goal);
+					a.nextPath = search.runAStar() ? search.path() : null;
+				}
+			} else {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new ReplanTask(agents, lo, mid), new ReplanTask(agents, mid, hi));
+			}
+		}
+	}
+}
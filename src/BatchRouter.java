@@ -0,0 +1,122 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers batches of path queries in parallel over one read-only Grid.
+ * Each worker thread keeps its own AStarSearch (SearchState and open list),
+ * so the only thing the threads share is the map itself.
+ * Paths are returned as arrays of vertex indices, from start to goal.
+ * Only the modes AStarSearch runs by itself are supported: ASTAR, JPS,
+ * JPS_PLUS and BIDIRECTIONAL. How batches scale over several cores has
+ * not been measured, only that they give the same paths as one thread.
+ * @author Michael A. Long
+ *
+ */
+public class BatchRouter {
+	private static final int CHUNK = 8;//queries per task once a batch is split up
+
+	public final Grid map;//read-only copy of the grid given to the constructor
+	public final Connectivity connectivity;
+	public final Heuristic heuristic;
+	public final SearchMode mode;
+	private final JumpTable jumpTable;//shared by every thread in JPS_PLUS mode
+	private final ForkJoinPool pool;
+	private final ThreadLocal<AStarSearch> searches;
+
+	/**
+	 * Uses the heuristic which best fits the moves searched, which are
+	 * EIGHT_NO_CORNER_CUTTING rather than c in the jump point modes.
+	 */
+	public BatchRouter(Grid grid, Connectivity c, SearchMode _mode) {
+		this(grid, c, (_mode.isJumpPoint() ? Connectivity.EIGHT_NO_CORNER_CUTTING : c).defaultHeuristic(), _mode,
+				Runtime.getRuntime().availableProcessors());
+	}
+	/**
+	 * @param grid map to search, copied if it isn't already read-only
+	 * @param threads number of worker threads for batches
+	 * @throws IllegalArgumentException if the mode isn't supported
+	 */
+	public BatchRouter(Grid grid, Connectivity c, Heuristic h, SearchMode _mode, int threads) {
+		if (!supports(_mode)) throw new IllegalArgumentException(_mode+" is not supported by BatchRouter");
+		map = grid.freeze();
+		mode = _mode;
+		connectivity = mode.isJumpPoint() ? Connectivity.EIGHT_NO_CORNER_CUTTING : c;
+		heuristic = h;
+		jumpTable = mode == SearchMode.JPS_PLUS ? new JumpTable(map) : null;
+		pool = new ForkJoinPool(threads);
+		searches = new ThreadLocal<AStarSearch>() {
+			@Override
+			protected AStarSearch initialValue() {
+				AStarSearch search = new AStarSearch(map);
+				search.setConnectivity(connectivity);
+				search.heuristicType = heuristic;
+				search.setMode(mode);
+				if (jumpTable != null) search.jumpPointSearch().setJumpTable(jumpTable);
+				return search;
+			}
+		};
+	}
+	/**
+	 * True for the modes an AStarSearch runs by itself; the others keep
+	 * state between searches which World manages.
+	 */
+	public static boolean supports(SearchMode mode) {
+		return mode == SearchMode.ASTAR || mode == SearchMode.BIDIRECTIONAL || mode.isJumpPoint();
+	}
+	/**
+	 * Finds one path on the calling thread.
+	 * Returns null if there is no path.
+	 */
+	public int[] route(int start, int goal) {
+		return route(searches.get(), start, goal);
+	}
+	/**
+	 * Finds the path for each (starts[i], goals[i]) pair, spread across
+	 * the worker threads. Entries are null where there is no path.
+	 */
+	public int[][] route(int[] starts, int[] goals) {
+		int[][] paths = new int[starts.length][];
+		pool.invoke(new RouteTask(starts, goals, paths, 0, starts.length));
+		return paths;
+	}
+	/**
+	 * Stops the worker threads. The router can't run batches afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+	private int[] route(AStarSearch search, int start, int goal) {
+		if (map.isBlocked(start) || map.isBlocked(goal)) return null;
+		search.init(start, goal);
+		if (!search.run()) return null;
+		return search.path();
+	}
+
+	private class RouteTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] starts;
+		private final int[] goals;
+		private final int[][] paths;
+		private final int lo;
+		private final int hi;
+
+		RouteTask(int[] _starts, int[] _goals, int[][] _paths, int _lo, int _hi) {
+			starts = _starts;
+			goals = _goals;
+			paths = _paths;
+			lo = _lo;
+			hi = _hi;
+		}
+		@Override
+		protected void compute() {
+			if (hi - lo <= CHUNK) {
+				AStarSearch search = searches.get();
+				for (int i=lo; i<hi; i++) paths[i] = route(search, starts[i], goals[i]);
+			} else {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new RouteTask(starts, goals, paths, lo, mid),
+						new RouteTask(starts, goals, paths, mid, hi));
+			}
+		}
+	}
+}
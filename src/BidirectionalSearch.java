@@ -0,0 +1,172 @@
+import java.util.Arrays;
+
+/**
+ * Bidirectional A* over a Grid. One search runs forward from the start,
+ * using the SearchState and open list of an AStarSearch after its init,
+ * and another runs backward from the goal with its own. Each step expands
+ * whichever side has the shorter open list.
+ *
+ * Each side's H is half its estimate to the far end less half the estimate
+ * to its own end (the average of the two heuristics). Whenever one side
+ * reaches a vertex the other has reached, the two halves make a path. With
+ * these H values, the best of those is the shortest path once the F last
+ * removed by each side add up to no less than its cost.
+ *
+ * The backward half is then copied into the forward parent chain, so the
+ * result reads like a normal A* path from start to goal.
+ * @author Michael A. Long
+ *
+ */
+public class BidirectionalSearch {
+	private static final float INF = Float.POSITIVE_INFINITY;
+
+	private final AStarSearch search;
+	private final Grid grid;
+	private final int width;
+	private final int height;
+	public final SearchState back;//bookkeeping for the search from the goal
+	private final IndexedHeap backOpen;
+	private int[] backTouched = new int[64];//vertices the backward search reached, for display
+	private int backTouchedCount;
+	private float best;//cost of the shortest path found so far
+	private int meet;//vertex where that path's two halves join, -1 if none
+
+	public BidirectionalSearch(AStarSearch _search) {
+		search = _search;
+		grid = search.grid;
+		width = grid.width;
+		height = grid.height;
+		back = new SearchState(grid.size());
+		backOpen = new IndexedHeap(grid.size());
+	}
+	/**
+	 * Runs the search, returning true if the end vertex was reached.
+	 */
+	public boolean run() {
+		SearchState state = search.state;
+		OpenList open = search.open;
+		int start = search.start;
+		int goal = search.goal;
+		if (start == goal) return true;
+		back.reset();
+		backOpen.clear();
+		backTouchedCount = 0;
+		touchBack(goal);
+		back.H[goal] = potential(goal, start, goal);
+		back.status[goal] = SearchState.OPEN;
+		backOpen.add(goal, back.F(goal));
+		open.clear();
+		state.H[start] = potential(start, goal, start);
+		open.add(start, state.F(start));
+		best = INF;
+		meet = -1;
+		float lastF = state.F(start), lastB = back.F(goal);//keys last removed by each side, never decreasing
+		while (!open.isEmpty() && !backOpen.isEmpty()) {
+			if (open.size() <= backOpen.size()) {
+				int cur = open.remove();
+				lastF = state.F(cur);
+				if (lastF + lastB >= best) break;
+				state.status[cur] = SearchState.CLOSED;
+				if (back.statusOf(cur) == SearchState.CLOSED) continue;//paths through it are already counted
+				search.expanded++;
+				expand(cur, state, open, back, goal, false);
+			} else {
+				int cur = backOpen.remove();
+				lastB = back.F(cur);
+				if (lastF + lastB >= best) break;
+				back.status[cur] = SearchState.CLOSED;
+				if (state.statusOf(cur) == SearchState.CLOSED) continue;
+				search.expanded++;
+				expand(cur, back, backOpen, state, start, true);
+			}
+		}
+		if (meet >= 0) join();
+		showBackward();
+		return meet >= 0;
+	}
+	private float heuristic(int idx, int target) {
+		return search.heuristicType.estimate(Math.abs(idx % width - target % width),
+				Math.abs(idx / width - target / width));
+	}
+	/**
+	 * H for one side: half the estimate to its target, less half the
+	 * estimate back to where it came from. The two sides' values cancel,
+	 * so they agree on every path's cost, and stay consistent.
+	 */
+	private float potential(int idx, int target, int source) {
+		return 0.5f * (heuristic(idx, target) - heuristic(idx, source));
+	}
+	private void touchBack(int idx) {
+		back.touch(idx);
+		if (backTouchedCount == backTouched.length) backTouched = Arrays.copyOf(backTouched, backTouchedCount*2);
+		backTouched[backTouchedCount++] = idx;
+	}
+	/**
+	 * Expands cur for one side, heading for target. Each neighbor that gets
+	 * a shorter cost is checked against the other side for a better path.
+	 */
+	private void expand(int cur, SearchState s, OpenList o, SearchState other, int target, boolean backward) {
+		Connectivity connectivity = search.connectivity;
+		int curx = cur % width;
+		int cury = cur / width;
+		for (int d=0; d<connectivity.directions; d++) {
+			int nx = curx + Connectivity.DX[d];
+			int ny = cury + Connectivity.DY[d];
+			if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+			int n = ny*width + nx;
+			if (grid.isBlocked(n)) continue;
+			if (d >= 4 && !connectivity.cutsCorners) {//diagonal, both vertices beside it must be open
+				if (grid.isBlocked(cur + Connectivity.DX[d]) || grid.isBlocked(n - Connectivity.DX[d])) continue;
+			}
+			//the backward side's move from cur to n is the forward move from n onto cur
+			float dist = s.G[cur] + Connectivity.COST[d] * grid.cost(backward ? cur : n);
+			if (other.statusOf(n) != SearchState.UNSEEN && dist + other.G[n] < best) {
+				best = dist + other.G[n];
+				meet = n;
+			}
+			if (!s.isCurrent(n)) {
+				if (backward) touchBack(n);
+				else s.touch(n);
+				s.H[n] = potential(n, target, backward ? search.goal : search.start);
+			}
+			if (s.status[n] == SearchState.UNSEEN) {
+				s.status[n] = SearchState.OPEN;
+				s.G[n] = dist;
+				s.parent[n] = cur;
+				o.add(n, dist + s.H[n]);
+			} else if (s.status[n] == SearchState.OPEN && dist < s.G[n]) {
+				s.G[n] = dist;
+				s.parent[n] = cur;
+				o.decreaseKey(n, dist + s.H[n]);
+			}
+		}
+	}
+	/**
+	 * Continues the forward parent chain from the meeting vertex to the goal
+	 * along the backward search's parents.
+	 */
+	private void join() {
+		SearchState state = search.state;
+		int cur = meet;
+		for (int next = back.parent[cur]; next != -1; next = back.parent[cur]) {
+			if (!state.isCurrent(next)) state.touch(next);
+			if (state.status[next] == SearchState.UNSEEN) state.status[next] = SearchState.CLOSED;
+			state.parent[next] = cur;
+			state.G[next] = state.G[cur] + back.G[cur] - back.G[next];
+			cur = next;
+		}
+	}
+	/**
+	 * Marks the vertices only the backward search reached in the forward
+	 * state too, so both frontiers are drawn.
+	 */
+	private void showBackward() {
+		SearchState state = search.state;
+		for (int i=0; i<backTouchedCount; i++) {
+			int v = backTouched[i];
+			if (state.isCurrent(v) || back.status[v] == SearchState.UNSEEN) continue;
+			state.touch(v);
+			state.status[v] = back.status[v];
+		}
+	}
+}
@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * Open list of buckets, one per 1/BUCKETS_PER_UNIT of F (Dial's algorithm),
+ * so add, decrease-key and remove are O(1) instead of O(log n). Each bucket
+ * is a linked list threaded through per-vertex arrays.
+ *
+ * A* never removes a lower F than the last one removed (with a consistent
+ * heuristic), so remove only ever scans forward from the last bucket, and
+ * the buckets form a ring which grows when an F lands too far ahead.
+ * When every F is a whole number, e.g. FOUR connectivity with integer
+ * terrain costs, vertices come out in exactly F order. Otherwise vertices
+ * in the same bucket come out newest first, and a path may be up to
+ * 1/BUCKETS_PER_UNIT longer than the shortest. F must stay below about
+ * 100 million (Integer.MAX_VALUE / BUCKETS_PER_UNIT).
+ * @author Michael A. Long
+ *
+ */
+public class BucketQueue implements OpenList {
+	public static final int BUCKETS_PER_UNIT = 16;
+
+	private int[] head;//first vertex of each bucket, -1 if empty
+	private final int[] next;//next vertex in the same bucket, -1 at the end
+	private final int[] prev;//previous vertex in the same bucket, -1 at the start
+	private final int[] bucket;//absolute bucket number of each vertex, -1 if not queued
+	private int mask;//head.length - 1, head.length being a power of 2
+	private int base = Integer.MAX_VALUE;//lowest absolute bucket which may be non-empty, MAX_VALUE until the first add
+	private int size;
+
+	public BucketQueue(int vertices) {
+		head = new int[64];
+		Arrays.fill(head, -1);
+		mask = head.length - 1;
+		next = new int[vertices];
+		prev = new int[vertices];
+		bucket = new int[vertices];
+		Arrays.fill(bucket, -1);
+	}
+	/**
+	 * Absolute bucket for f. An F below the last one removed goes in the
+	 * current bucket, which can only happen with an inconsistent heuristic.
+	 * base is kept when the list empties, as the vertices added next
+	 * needn't come lowest F first; only clear lets it start again.
+	 */
+	private int bucketFor(double f) {
+		int b = (int)(f * BUCKETS_PER_UNIT);
+		if (size == 0 && b < base) base = b;
+		return b < base ? base : b;
+	}
+	@Override
+	public void add(int idx, double f) {
+		int b = bucketFor(f);
+		if (b - base > mask) grow(b - base);
+		link(idx, b);
+		size++;
+	}
+	/**
+	 * A bucket is already newest first, which favors the deepest vertex,
+	 * so k2 is ignored.
+	 */
+	@Override
+	public void add(int idx, double f, double k2) {
+		add(idx, f);
+	}
+	@Override
+	public void decreaseKey(int idx, double f, double k2) {
+		decreaseKey(idx, f);
+	}
+	@Override
+	public void decreaseKey(int idx, double f) {
+		int b = bucketFor(f);
+		if (b == bucket[idx]) return;
+		unlink(idx);
+		link(idx, b);
+	}
+	@Override
+	public int remove() {
+		int slot = base & mask;
+		while (head[slot] == -1) {
+			base++;
+			slot = base & mask;
+		}
+		int idx = head[slot];
+		unlink(idx);
+		bucket[idx] = -1;
+		size--;
+		return idx;
+	}
+	@Override
+	public boolean contains(int idx) {
+		return bucket[idx] != -1;
+	}
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	@Override
+	public int size() {
+		return size;
+	}
+	@Override
+	public int[] toArray() {
+		int[] a = new int[size];
+		int n = 0;
+		for (int slot=0; slot<head.length; slot++) {
+			for (int v = head[slot]; v != -1; v = next[v]) a[n++] = v;
+		}
+		return a;
+	}
+	/**
+	 * Only touches the buckets and the vertices currently queued.
+	 */
+	@Override
+	public void clear() {
+		for (int slot=0; slot<head.length; slot++) {
+			for (int v = head[slot]; v != -1; v = next[v]) bucket[v] = -1;
+			head[slot] = -1;
+		}
+		size = 0;
+		base = Integer.MAX_VALUE;
+	}
+	private void link(int idx, int b) {
+		int slot = b & mask;
+		int first = head[slot];
+		next[idx] = first;
+		prev[idx] = -1;
+		if (first != -1) prev[first] = idx;
+		head[slot] = idx;
+		bucket[idx] = b;
+	}
+	private void unlink(int idx) {
+		int p = prev[idx], n = next[idx];
+		if (p != -1) next[p] = n;
+		else head[bucket[idx] & mask] = n;
+		if (n != -1) prev[n] = p;
+	}
+	/**
+	 * Doubles the ring until it spans span buckets past base, moving each
+	 * queued vertex to its slot in the bigger ring.
+	 */
+	private void grow(int span) {
+		int length = head.length;
+		while (length <= span) length *= 2;
+		int[] old = head;
+		head = new int[length];
+		Arrays.fill(head, -1);
+		mask = length - 1;
+		for (int slot=0; slot<old.length; slot++) {
+			int v = old[slot];
+			while (v != -1) {
+				int n = next[v];
+				link(v, bucket[v]);
+				v = n;
+			}
+		}
+	}
+}
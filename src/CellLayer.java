@@ -0,0 +1,85 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.ImageBuffer;
+import org.newdawn.slick.SlickException;
+
+/**
+ * Offscreen image of a grid with one texel per vertex, for Demo to draw
+ * scaled in one call instead of a rectangle per vertex. Texels are set in
+ * a buffer kept in memory, and only the rows changed since the last draw
+ * are uploaded to the texture.
+ * Needs a GL context, so create it in init.
+ * @author Michael A. Long
+ *
+ */
+public class CellLayer {
+	public final int width;
+	public final int height;
+	private final Image image;
+	private final ByteBuffer texels;//RGBA, row after row
+	private int dirtyMin;//rows which need uploading, none if dirtyMin > dirtyMax
+	private int dirtyMax;
+
+	public CellLayer(int _width, int _height) {
+		width = _width;
+		height = _height;
+		image = new ImageBuffer(width, height).getImage(Image.FILTER_NEAREST);
+		texels = BufferUtils.createByteBuffer(width * height * 4).order(ByteOrder.BIG_ENDIAN);//so putInt writes R,G,B,A
+		dirtyMin = 0;
+		dirtyMax = height - 1;
+	}
+	/**
+	 * Packs a color as RGBA for set.
+	 */
+	public static int rgba(Color c) {
+		return c.getRedByte() << 24 | c.getGreenByte() << 16 | c.getBlueByte() << 8 | c.getAlphaByte();
+	}
+	/**
+	 * Sets the texel of vertex idx to a packed RGBA color.
+	 */
+	public void set(int idx, int rgba) {
+		texels.putInt(idx * 4, rgba);
+		int y = idx / width;
+		if (y < dirtyMin) dirtyMin = y;
+		if (y > dirtyMax) dirtyMax = y;
+	}
+	/**
+	 * Sets every texel to a packed RGBA color.
+	 */
+	public void fill(int rgba) {
+		for (int i=0; i<width*height; i++) texels.putInt(i * 4, rgba);
+		dirtyMin = 0;
+		dirtyMax = height - 1;
+	}
+	/**
+	 * Draws the layer with its top left at (x, y), cell pixels per vertex,
+	 * uploading any changed rows first.
+	 */
+	public void draw(float x, float y, float cell) {
+		if (dirtyMin <= dirtyMax) {
+			image.getTexture().bind();
+			texels.position(dirtyMin * width * 4);
+			GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, dirtyMin, width, dirtyMax - dirtyMin + 1,
+					GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, texels);
+			texels.position(0);
+			dirtyMin = height;
+			dirtyMax = -1;
+		}
+		image.draw(x, y, width * cell, height * cell);
+	}
+	/**
+	 * Frees the texture.
+	 */
+	public void destroy() {
+		try {
+			image.destroy();
+		} catch (SlickException e) {
+			//already gone with the GL context
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Which adjacent vertices A* may move to.
+ * FOUR allows up, down, left and right.
+ * EIGHT adds the diagonals, which may squeeze between two blocked vertices.
+ * EIGHT_NO_CORNER_CUTTING only allows a diagonal move when both vertices
+ * it passes beside are open.
+ * 
+ * Moves are precomputed as tables: the orthogonal moves come first,
+ * then the diagonal ones.
+ * @author Michael A. Long
+ *
+ */
+public enum Connectivity {
+	FOUR(4, true), EIGHT(8, true), EIGHT_NO_CORNER_CUTTING(8, false);
+	
+	public static final float SQRT2 = (float)Math.sqrt(2.0);
+	//up, down, left, right, up-left, up-right, down-left, down-right
+	public static final int[] DX = {0, 0, -1, 1, -1, 1, -1, 1};
+	public static final int[] DY = {-1, 1, 0, 0, -1, -1, 1, 1};
+	public static final float[] COST = {1, 1, 1, 1, SQRT2, SQRT2, SQRT2, SQRT2};
+	public static final int[] FIXED_UNITS = {1024, 1024, 1024, 1024, 1448, 1448, 1448, 1448};//fixed point costs, in whole 1/1024ths
+	public static final int[] OPPOSITE = {1, 0, 3, 2, 7, 6, 5, 4};//the move back again
+	
+	public final int directions;//number of moves to check, from the start of the tables
+	public final boolean cutsCorners;//diagonal moves ignore the vertices beside them
+	
+	private Connectivity(int _directions, boolean _cutsCorners) {
+		directions = _directions;
+		cutsCorners = _cutsCorners;
+	}
+	/**
+	 * Index offset of each move on a grid of the given width.
+	 */
+	public int[] offsets(int width) {
+		int[] off = new int[directions];
+		for (int d=0; d<directions; d++) off[d] = DY[d]*width + DX[d];
+		return off;
+	}
+	/**
+	 * Admissible heuristic which best fits these moves.
+	 */
+	public Heuristic defaultHeuristic() {
+		return this == FOUR ? Heuristic.MANHATTAN : Heuristic.OCTILE;
+	}
+}
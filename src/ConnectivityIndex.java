@@ -0,0 +1,214 @@
+import java.util.Arrays;
+
+/**
+ * Labels the connected groups of open vertices of a Grid, so a query
+ * between two groups can be answered "no path" without searching.
+ *
+ * Each open vertex has a label, and labels are merged with union-find when
+ * a cleared vertex joins groups together. Blocking a vertex can split its
+ * group, which union-find can't undo, so unless the vertices around it
+ * are still joined locally, the group is marked split-pending. A group
+ * which is split-pending is flood filled with fresh labels the next time
+ * a query needs it, one piece at a time. Listens to the grid for changes.
+ * @author Michael A. Long
+ *
+ */
+public class ConnectivityIndex implements GridListener {
+	//ring of 8 neighbors, in order around the vertex, each next to the one before
+	private static final int[] RING_DX = {0, 1, 1, 1, 0, -1, -1, -1};
+	private static final int[] RING_DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+	public final Grid grid;
+	private final int width;
+	private final int height;
+	private boolean diagonal;//groups join diagonally, across blocked corners
+	private int[] label;//group label of each open vertex, allocated by the first build
+	private int[] labelParent;//union-find over labels
+	private boolean[] pending;//group may have split since it was labeled
+	private int labels;
+	private boolean rebuild = true;
+	private int[] queue = new int[64];
+	private int[] mark;//flood fill stamps, allocated by the first build
+	private int markGeneration;
+	public int floodFills;//groups flood filled since construction
+
+	public ConnectivityIndex(Grid _grid, Connectivity c) {
+		grid = _grid;
+		width = grid.width;
+		height = grid.height;
+		labelParent = new int[64];
+		pending = new boolean[64];
+		setConnectivity(c);
+		grid.addListener(this);
+	}
+	/**
+	 * Only EIGHT connectivity joins vertices which touch at a corner alone.
+	 * Otherwise a diagonal move needs both vertices beside it open, so
+	 * groups are the same as with FOUR.
+	 */
+	public void setConnectivity(Connectivity c) {
+		boolean d = c.directions == 8 && c.cutsCorners;
+		if (d != diagonal) rebuild = true;
+		diagonal = d;
+	}
+	/**
+	 * Stops listening to the grid.
+	 */
+	public void dispose() {
+		grid.removeListener(this);
+	}
+	/**
+	 * True if a path may exist from a to b, false only if there is none.
+	 * O(1) unless the group of a was split-pending.
+	 */
+	public boolean connected(int a, int b) {
+		if (grid.isBlocked(a) || grid.isBlocked(b)) return false;
+		if (rebuild) build();
+		int la = find(label[a]);
+		if (la != find(label[b])) return false;
+		if (!pending[la]) return true;
+		return flood(a, b);
+	}
+	@Override
+	public void cellChanged(Grid _grid, int idx, boolean blocked) {
+		if (rebuild) return;
+		if (blocked) {
+			if (!joinedAround(idx)) pending[find(label[idx])] = true;
+			return;
+		}
+		int l = -1;
+		int x = idx % width, y = idx / width;
+		int directions = diagonal ? 8 : 4;
+		for (int d=0; d<directions; d++) {
+			int nx = x + Connectivity.DX[d], ny = y + Connectivity.DY[d];
+			if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+			int n = ny*width + nx;
+			if (grid.isBlocked(n)) continue;
+			int ln = find(label[n]);
+			if (l == -1) {
+				l = ln;
+			} else if (ln != l) {
+				labelParent[ln] = l;
+				pending[l] |= pending[ln];
+			}
+		}
+		label[idx] = l == -1 ? newLabel() : l;
+	}
+	@Override
+	public void gridChanged(Grid _grid) {
+		rebuild = true;
+	}
+	/**
+	 * True if the open neighbors of idx are all joined to each other through
+	 * the ring of vertices around it, so blocking idx can't split its group.
+	 */
+	private boolean joinedAround(int idx) {
+		int x = idx % width, y = idx / width;
+		int open = 0;//bit i set if ring vertex i is open
+		for (int i=0; i<8; i++) {
+			int nx = x + RING_DX[i], ny = y + RING_DY[i];
+			if (nx >= 0 && nx < width && ny >= 0 && ny < height && !grid.isBlocked(ny*width + nx)) open |= 1 << i;
+		}
+		if (open == 0xFF) return true;
+		int closed = Integer.numberOfTrailingZeros(~open);
+		int run = 0, neighborRun = -1;
+		boolean prev = false;
+		for (int k=1; k<=8; k++) {//once around, starting after a blocked vertex
+			int i = (closed + k) & 7;
+			boolean o = (open >> i & 1) != 0;
+			if (o && !prev) run++;
+			if (o && (diagonal || (i & 1) == 0)) {//a neighbor, not just a ring vertex
+				if (neighborRun == -1) neighborRun = run;
+				else if (neighborRun != run) return false;
+			}
+			prev = o;
+		}
+		return true;
+	}
+	private int find(int l) {
+		while (labelParent[l] != l) {
+			labelParent[l] = labelParent[labelParent[l]];
+			l = labelParent[l];
+		}
+		return l;
+	}
+	private int newLabel() {
+		if (labels == labelParent.length) {
+			labelParent = Arrays.copyOf(labelParent, labels*2);
+			pending = Arrays.copyOf(pending, labels*2);
+		}
+		labelParent[labels] = labels;
+		pending[labels] = false;
+		return labels++;
+	}
+	/**
+	 * Labels every group from scratch.
+	 */
+	private void build() {
+		if (label == null) {
+			label = new int[grid.size()];
+			mark = new int[grid.size()];
+		}
+		labels = 0;
+		nextMark();
+		for (int i=0; i<label.length; i++) {
+			if (mark[i] != markGeneration && !grid.isBlocked(i)) fill(i, newLabel(), -1);
+		}
+		rebuild = false;
+	}
+	/**
+	 * Gives the piece of a's split-pending group which a is in a fresh label,
+	 * returning true if b is in that piece.
+	 */
+	private boolean flood(int a, int b) {
+		if (labels > 2*label.length) {//labels are never reused, so start over now and then
+			build();
+			return find(label[a]) == find(label[b]);
+		}
+		nextMark();
+		floodFills++;
+		return fill(a, newLabel(), b);
+	}
+	private void nextMark() {
+		markGeneration++;
+		if (markGeneration == 0) {
+			Arrays.fill(mark, 0);
+			markGeneration = 1;
+		}
+	}
+	/**
+	 * Flood fills the open vertices joined to from with label l,
+	 * returning true if target was reached.
+	 */
+	private boolean fill(int from, int l, int target) {
+		boolean found = false;
+		int directions = diagonal ? 8 : 4;
+		int head = 0, tail = 0;
+		queue[tail++] = from;
+		mark[from] = markGeneration;
+		while (head < tail) {
+			int cur = queue[head++];
+			label[cur] = l;
+			if (cur == target) found = true;
+			int x = cur % width, y = cur / width;
+			for (int d=0; d<directions; d++) {
+				int nx = x + Connectivity.DX[d], ny = y + Connectivity.DY[d];
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+				int n = ny*width + nx;
+				if (mark[n] == markGeneration || grid.isBlocked(n)) continue;
+				mark[n] = markGeneration;
+				if (tail == queue.length) {
+					if (head > queue.length / 2) {//slide the unread part down instead of growing
+						System.arraycopy(queue, head, queue, 0, tail - head);
+						tail -= head;
+						head = 0;
+					} else {
+						queue = Arrays.copyOf(queue, queue.length*2);
+					}
+				}
+				queue[tail++] = n;
+			}
+		}
+		return found;
+	}
+}
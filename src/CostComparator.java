@@ -1,15 +1,23 @@
 import java.util.Comparator;
 
 /**
- * Returns 1 if Node 1's cost (F) is larger than Node 2's
+ * Returns 1 if vertex 1's cost (F) is larger than vertex 2's.
+ * Equal costs are ordered by the lower tie-break key first, if k2 is set.
  * @author Michael A. Long
  *
  */
-public class CostComparator implements Comparator<Node> {
+public class CostComparator implements Comparator<Integer> {
+	public final double[] f;//F of each vertex, as given to OpenList.add
+	public double[] k2;//tie-break key of each vertex, as given to OpenList.add; null orders by F alone
+	
+	public CostComparator(int vertices) {
+		f = new double[vertices];
+	}
 
 	@Override
-	public int compare(Node n1, Node n2) {
-		int ret = Double.compare(n1.F, n2.F);
+	public int compare(Integer n1, Integer n2) {
+		int ret = Double.compare(f[n1], f[n2]);
+		if (ret == 0 && k2 != null) ret = Double.compare(k2[n1], k2[n2]);
 		if (ret > 0) return 1;
 		else if (ret < 0) return -1;
 		else return 0;
@@ -0,0 +1,274 @@
+import java.util.Arrays;
+
+/**
+ * Incremental path planner (D* Lite). Searches backward from the goal and
+ * keeps its search between calls to replan. When vertices are blocked or
+ * cleared, or the start moves, only the part of the search those changes
+ * affect is repaired, instead of searching again from scratch.
+ *
+ * Registers itself as a GridListener to hear about changed vertices.
+ * Changing the goal, or a batch change such as a new maze, starts over.
+ * @author Michael A. Long
+ *
+ */
+public class DStarLite implements GridListener {
+	private static final float INF = Float.POSITIVE_INFINITY;
+	private static final int MAX_PENDING = 4096;//more changes than this start over instead
+	private static final float KEY_SLACK = 1e-4f;//relative, see computeShortestPath
+
+	public final Grid grid;
+	private final int width;
+	private final int height;
+	private Connectivity connectivity;
+	private Heuristic heuristic;
+	private int[] offsets;
+	private final float[] g;//cost to the goal
+	private final float[] rhs;//one step lookahead of g
+	private final int[] stamp;//g and rhs are infinite unless stamp matches generation
+	private int generation;
+	private final IndexedHeap open;
+	private int[] touched = new int[64];//vertices given a stamp this generation
+	private int touchedCount;
+	private int start = -1;
+	private int goal = -1;
+	private int last;//start when the keys were last adjusted
+	private float km;//total heuristic change from moving the start
+	private int[] pending = new int[16];//vertices changed since the last replan
+	private int pendingCount;
+	private boolean restart = true;
+	public int expanded;//vertices expanded by the last replan
+
+	public DStarLite(Grid _grid, Connectivity c) {
+		grid = _grid;
+		width = grid.width;
+		height = grid.height;
+		g = new float[grid.size()];
+		rhs = new float[grid.size()];
+		stamp = new int[grid.size()];
+		open = new IndexedHeap(grid.size());
+		setConnectivity(c);
+		grid.addListener(this);
+	}
+	public void setConnectivity(Connectivity c) {
+		if (c != connectivity) {
+			connectivity = c;
+			heuristic = c.defaultHeuristic();
+			offsets = c.offsets(width);
+			restart = true;
+		}
+	}
+	/**
+	 * Stops listening to the grid.
+	 */
+	public void dispose() {
+		grid.removeListener(this);
+	}
+	public void setStart(int idx) {
+		start = idx;
+	}
+	public void setGoal(int idx) {
+		if (idx != goal) {
+			goal = idx;
+			restart = true;
+		}
+	}
+	@Override
+	public void cellChanged(Grid _grid, int idx, boolean blocked) {
+		if (restart) return;
+		if (pendingCount == MAX_PENDING) {
+			restart = true;
+			return;
+		}
+		if (pendingCount == pending.length) pending = Arrays.copyOf(pending, pendingCount*2);
+		pending[pendingCount++] = idx;
+	}
+	@Override
+	public void gridChanged(Grid _grid) {
+		restart = true;
+	}
+	/**
+	 * Brings the search up to date with the start, goal and grid,
+	 * returning true if there is a path.
+	 */
+	public boolean replan() {
+		expanded = 0;
+		if (restart) {
+			initialize();
+		} else {
+			if (start != last) {
+				km += h(last, start);
+				last = start;
+			}
+			for (int i=0; i<pendingCount; i++) {
+				int c = pending[i];
+				updateVertex(c);
+				int cx = c % width;
+				int cy = c / width;
+				for (int d=0; d<8; d++) {//all 8, as diagonal edges pass beside c too
+					int nx = cx + Connectivity.DX[d];
+					int ny = cy + Connectivity.DY[d];
+					if (nx >= 0 && nx < width && ny >= 0 && ny < height) updateVertex(ny*width + nx);
+				}
+			}
+		}
+		pendingCount = 0;
+		computeShortestPath();
+		return getG(start) < INF;
+	}
+	private void initialize() {
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		touchedCount = 0;
+		open.clear();
+		km = 0;
+		last = start;
+		touch(goal);
+		rhs[goal] = 0;
+		open.add(goal, h(start, goal), 0);
+		restart = false;
+	}
+	private void touch(int idx) {
+		if (stamp[idx] == generation) return;
+		stamp[idx] = generation;
+		g[idx] = INF;
+		rhs[idx] = INF;
+		if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount*2);
+		touched[touchedCount++] = idx;
+	}
+	private float getG(int idx) {
+		return stamp[idx] == generation ? g[idx] : INF;
+	}
+	private float h(int a, int b) {
+		return heuristic.estimate(Math.abs(a % width - b % width), Math.abs(a / width - b / width));
+	}
+	/**
+	 * Cost of moving from u in direction d, times the terrain cost of the
+	 * vertex moved onto, or INF if the move isn't allowed.
+	 */
+	private float cost(int u, int d) {
+		int nx = u % width + Connectivity.DX[d];
+		int ny = u / width + Connectivity.DY[d];
+		if (nx < 0 || nx >= width || ny < 0 || ny >= height) return INF;
+		int v = u + offsets[d];
+		if (grid.isBlocked(u) || grid.isBlocked(v)) return INF;
+		if (d >= 4 && !connectivity.cutsCorners) {
+			if (grid.isBlocked(u + Connectivity.DX[d]) || grid.isBlocked(v - Connectivity.DX[d])) return INF;
+		}
+		return Connectivity.COST[d] * grid.cost(v);
+	}
+	private boolean keyLess(float a1, float a2, float b1, float b2) {
+		return a1 < b1 || (a1 == b1 && a2 < b2);
+	}
+	private void updateVertex(int u) {
+		touch(u);
+		if (u != goal) {
+			float best = INF;
+			for (int d=0; d<connectivity.directions; d++) {
+				float c = cost(u, d);
+				if (c == INF) continue;
+				float v = c + getG(u + offsets[d]);
+				if (v < best) best = v;
+			}
+			rhs[u] = best;
+		}
+		if (g[u] != rhs[u]) {
+			float m = Math.min(g[u], rhs[u]);
+			if (open.contains(u)) open.changeKey(u, m + h(start, u) + km, m);
+			else open.add(u, m + h(start, u) + km, m);
+		} else {
+			open.remove(u);
+		}
+	}
+	private void computeShortestPath() {
+		touch(start);
+		while (!open.isEmpty()) {
+			float ms = Math.min(g[start], rhs[start]);
+			float k1 = (float)open.peekKey();//keys are floats here, widened by the heap
+			float k2 = (float)open.peekKey2();
+			float ks = ms + km;//start key is ms + h(start,start) + km
+			//Keys are float sums added up in different orders, so one which is
+			//really no more than the start's can round to a little above it,
+			//leaving a stale g on the path. Expanding a vertex early is always
+			//safe, so only stop once the top key is clearly above the start's.
+			if (k1 > ks + ks*KEY_SLACK && rhs[start] == g[start]) break;
+			int u = open.peek();
+			float m = Math.min(g[u], rhs[u]);
+			float new1 = m + h(start, u) + km;
+			if (keyLess(k1, k2, new1, m)) {
+				open.changeKey(u, new1, m);
+			} else if (g[u] > rhs[u]) {
+				expanded++;
+				g[u] = rhs[u];
+				open.remove(u);
+				updateNeighbors(u);
+			} else {
+				expanded++;
+				g[u] = INF;
+				updateVertex(u);
+				updateNeighbors(u);
+			}
+		}
+	}
+	private void updateNeighbors(int u) {
+		int ux = u % width;
+		int uy = u / width;
+		for (int d=0; d<connectivity.directions; d++) {
+			int nx = ux + Connectivity.DX[d];
+			int ny = uy + Connectivity.DY[d];
+			if (nx >= 0 && nx < width && ny >= 0 && ny < height) updateVertex(u + offsets[d]);
+		}
+	}
+	/**
+	 * The vertex after idx on the current best path to the goal, or -1.
+	 */
+	public int next(int idx) {
+		int best = -1;
+		float bestCost = INF;
+		for (int d=0; d<connectivity.directions; d++) {
+			float c = cost(idx, d);
+			if (c == INF) continue;
+			float v = c + getG(idx + offsets[d]);
+			if (v < bestCost) {
+				bestCost = v;
+				best = idx + offsets[d];
+			}
+		}
+		return best;
+	}
+	/**
+	 * The current path from start to goal as vertex indices, or null if none.
+	 */
+	public int[] path() {
+		if (getG(start) == INF) return null;
+		int[] path = new int[16];
+		int length = 0;
+		int cur = start;
+		path[length++] = cur;
+		while (cur != goal) {
+			cur = next(cur);
+			if (cur == -1 || length > grid.size()) return null;
+			if (length == path.length) path = Arrays.copyOf(path, length*2);
+			path[length++] = cur;
+		}
+		return Arrays.copyOf(path, length);
+	}
+	/**
+	 * Copies the search into state for display, as if A* had run: vertices
+	 * the planner has touched are OPEN or CLOSED, and the path is a parent
+	 * chain from goal back to start with G measured from the start.
+	 */
+	public void exportTo(SearchState state) {
+		state.reset();
+		for (int i=0; i<touchedCount; i++) {
+			int v = touched[i];
+			state.touch(v);
+			state.status[v] = open.contains(v) ? SearchState.OPEN : SearchState.CLOSED;
+			state.H[v] = h(v, goal);
+		}
+		int[] path = path();
+		if (path != null) state.writePath(path, grid);
+	}
+}
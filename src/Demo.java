@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 import org.newdawn.slick.BasicGame;
 import org.newdawn.slick.Color;
 import org.newdawn.slick.GameContainer;
@@ -13,22 +15,59 @@ import org.newdawn.slick.gui.MouseOverArea;
 /**
  * GUI container for A* project.
  * Built with Slick2D/LWJGL. http://slick.ninjacave.com/
+ *
+ * The walls and the vertices the search visited are kept in offscreen
+ * layers (see CellLayer), one texel per vertex, updated only when they
+ * change and drawn scaled in one call each. Grid lines and the path are
+ * drawn over them for the part of the map in view. The mouse wheel or
+ * +/- zoom, the right mouse button or the arrow keys pan, F fits the map.
  * @author Michael A. Long
  *
  */
-public class Demo extends BasicGame implements ComponentListener, MouseListener {
+public class Demo extends BasicGame implements ComponentListener, MouseListener, GridListener {
+	static final int VIEW_X = 20;//map viewport on screen
+	static final int VIEW_Y = 20;
+	static final int VIEW_SIZE = 540;
+	static final float MAX_CELL = 64;//most pixels per vertex when zoomed in
+	static final float MIN_LINE_CELL = 6;//grid lines are left out below this many pixels per vertex
+	static final Color LIGHT_STEEL_BLUE = new Color(176, 196, 222);
+	static final Color FIRE_BRICK = new Color(178, 34, 34);
+	static final Color SEA_GREEN = new Color(46, 139, 87);
+	static final Color MEDIUM_BLUE = new Color(0, 0, 205);
+	static final int OPEN_RGBA = CellLayer.rgba(Color.white);
+	static final int WALL_RGBA = CellLayer.rgba(Color.darkGray);
+	static final int VISITED_RGBA = CellLayer.rgba(LIGHT_STEEL_BLUE);
+	static final int CLEAR_RGBA = 0;
 	World world;//our graph, a 2D grid of vertices.
 	MouseOverArea[] areas = new MouseOverArea[7];//clickable "buttons"
 	Image[] buttonImages = new Image[14];//images for the buttons
 	int activeButton;//tracks which action to perform on the graph when a click occurs
 	Input input;
 	private String message = "";//words drawn onto bottom of window
-	final int nodewidth = 20;//drawing width of vertices (Nodes) in our graph
+	private boolean messageStale = true;//message needs working out again
+	final int nodewidth = 20;//drawing width of vertices (Nodes) in the legend
+	static final long FRAME_BUDGET = 4000000;//nanoseconds of searching per frame
+	static final int ANIMATION_STEPS = 2;//expansions per frame when animating
+	SteppedSearch stepping;//ASTAR mode search in progress, run a slice per frame
+	boolean animate;//step slowly enough to watch, toggled with A
+	CellLayer walls;//open and blocked vertices
+	CellLayer visited;//vertices the last search reached
+	private boolean wallsStale = true;//walls need filling in again from the grid
+	private int shownGeneration = -1;//search which visited shows
+	private int shownTouched;//entries of the search's touched log drawn so far
+	private int[] shown = new int[64];//vertices drawn as visited, to clear when the search changes
+	private int shownCount;
+	float cell;//pixels per vertex
+	float panX;//position of the map's top left within the viewport
+	float panY;
 	
 
 	public Demo() throws SlickException {
+		this(27, 27);
+	}
+	public Demo(int width, int height) throws SlickException {
 		super("A Star Demonstration by Michael A. Long");
-		world = new World(27,27);
+		world = new World(width, height);
 		activeButton = 0;
 	}
 	/**
@@ -38,18 +77,27 @@ public class Demo extends BasicGame implements ComponentListener, MouseListener
 	public void render(GameContainer gc, Graphics g) throws SlickException {
 		g.setBackground(Color.white);
 		g.clear();
-		g.setColor(Color.black);
-		for (int y=0; y<world.height; y++) {
-			for (int x=0; x<world.width; x++) {
-				g.drawRect(10+(nodewidth/2)+x*nodewidth, 10+(nodewidth/2)+y*nodewidth,
-					nodewidth, nodewidth);
-			}
+		float ox = VIEW_X + panX, oy = VIEW_Y + panY;
+		g.setClip(VIEW_X, VIEW_Y, VIEW_SIZE, VIEW_SIZE);
+		updateLayers();
+		walls.draw(ox, oy, cell);
+		visited.draw(ox, oy, cell);
+		if (cell >= MIN_LINE_CELL) {
+			//only the lines in view
+			int x0 = Math.max(0, (int)(-panX / cell)), x1 = Math.min(world.width, (int)((VIEW_SIZE - panX) / cell) + 1);
+			int y0 = Math.max(0, (int)(-panY / cell)), y1 = Math.min(world.height, (int)((VIEW_SIZE - panY) / cell) + 1);
+			g.setColor(Color.black);
+			for (int x=x0; x<=x1; x++) g.drawLine(ox + x*cell, oy + y0*cell, ox + x*cell, oy + y1*cell);
+			for (int y=y0; y<=y1; y++) g.drawLine(ox + x0*cell, oy + y*cell, ox + x1*cell, oy + y*cell);
 		}
+		drawSolution(gc, g);
+		g.clearClip();
+		g.setColor(Color.black);
+		g.drawRect(VIEW_X, VIEW_Y, VIEW_SIZE, VIEW_SIZE);
 		
 		for (int i=0;i<areas.length;i++) {
 			areas[i].render(gc, g);
 		}
-		drawSolution(gc, g);
 		if (world.hasSolution) g.setColor(Color.blue);
 		else g.setColor(Color.red);
 		g.drawString(message, 240, 570);
@@ -62,31 +110,63 @@ public class Demo extends BasicGame implements ComponentListener, MouseListener
 		g.setColor(Color.black);
 		g.drawString("Checked vertex", 570, 450);
 		g.drawRect(705, 450, nodewidth, nodewidth);
-		Color LightSteelBlue = new Color(176, 196, 222);
-		g.setColor(LightSteelBlue);
+		g.setColor(LIGHT_STEEL_BLUE);
 		g.fillRect(705+3, 450+3, nodewidth-5, nodewidth-5);
 		
 		g.setColor(Color.black);
 		g.drawString("Path vertex", 570, 480);
 		g.drawRect(705, 480, nodewidth, nodewidth);
-		Color FireBrick = new Color(178, 34, 34);
-		g.setColor(FireBrick);
+		g.setColor(FIRE_BRICK);
 		g.fillRect(705+3, 480+3, nodewidth-5, nodewidth-5);
 		
 		g.setColor(Color.black);
 		g.drawString("Start vertex", 570, 510);
 		g.drawRect(705, 510, nodewidth, nodewidth);
-		Color SeaGreen = new Color(46, 139, 87);
-		g.setColor(SeaGreen);
+		g.setColor(SEA_GREEN);
 		g.fillRect(705+3, 510+3, nodewidth-5, nodewidth-5);
 		
 		g.setColor(Color.black);
 		g.drawString("End vertex", 570, 540);
 		g.drawRect(705,  540, nodewidth, nodewidth);
-		Color MediumBlue = new Color(0, 0, 205);
-		g.setColor(MediumBlue);
+		g.setColor(MEDIUM_BLUE);
 		g.fillRect(705+3, 540+3, nodewidth-5, nodewidth-5);
 	}
+	/**
+	 * Brings the offscreen layers up to date with the grid and the search.
+	 * Single vertex edits reach walls through cellChanged as they happen.
+	 * Only the vertices the search touched since the last frame are drawn,
+	 * from its touched log, and only those drawn are cleared for a new one.
+	 */
+	private void updateLayers() {
+		Grid grid = world.grid;
+		if (wallsStale) {
+			for (int i=0; i<grid.size(); i++) walls.set(i, grid.isBlocked(i) ? WALL_RGBA : OPEN_RGBA);
+			wallsStale = false;
+		}
+		SearchState state = world.state;
+		if (state.generation != shownGeneration) {
+			for (int i=0; i<shownCount; i++) visited.set(shown[i], CLEAR_RGBA);
+			shownCount = 0;
+			shownTouched = 0;
+			shownGeneration = state.generation;
+		}
+		for (; shownTouched<state.touchedCount; shownTouched++) {
+			int v = state.touched(shownTouched);
+			byte status = state.status[v];
+			if (status != SearchState.CLOSED && status != SearchState.OPEN) continue;
+			visited.set(v, VISITED_RGBA);
+			if (shownCount == shown.length) shown = Arrays.copyOf(shown, shownCount*2);
+			shown[shownCount++] = v;
+		}
+	}
+	@Override
+	public void cellChanged(Grid grid, int idx, boolean blocked) {
+		if (walls != null) walls.set(idx, blocked ? WALL_RGBA : OPEN_RGBA);
+	}
+	@Override
+	public void gridChanged(Grid grid) {
+		wallsStale = true;
+	}
 
 	/**
 	 * Initialize the GUI. Loads images from folder.
@@ -95,15 +175,21 @@ public class Demo extends BasicGame implements ComponentListener, MouseListener
 	@Override
 	public void init(GameContainer gc) throws SlickException {
 		gc.setShowFPS(false);
+		input = gc.getInput();
+		walls = new CellLayer(world.width, world.height);
+		visited = new CellLayer(world.width, world.height);
+		world.grid.addListener(this);
+		world.aStarSearch().state.logTouched();
+		fit();
 		
 		world.startX = 0;
 		world.startY = 0;
-		world.endX = 26;
-		world.endY = 26;
+		world.endX = world.width-1;
+		world.endY = world.height-1;
+		world.setSearchMode(SearchMode.ASTAR);//M switches to INCREMENTAL, where edits and drags only repair the search
 		world.initAStar();
 		world.randomizeWalls();
-		world.reinitAStar();
-		world.runAStar();
+		search();
 		//world.writeSolution();
 		buttonImages[0] = new Image("assets\\set_start1.png");
 		buttonImages[1] = new Image("assets\\set_end1.png");
@@ -131,74 +217,140 @@ public class Demo extends BasicGame implements ComponentListener, MouseListener
 		}
 	}
 
+	/**
+	 * Advances an ASTAR search in progress by one frame's slice.
+	 */
 	@Override
 	public void update(GameContainer gc, int arg1) throws SlickException {
+		if (stepping != null && !stepping.isDone()) {
+			if (animate) stepping.step(ANIMATION_STEPS);
+			else stepping.runFor(FRAME_BUDGET);
+			world.hasSolution = stepping.found();
+			messageStale = true;
+		}
+		if (messageStale) {
+			updateMessage();
+			messageStale = false;
+		}
+	}
+	/**
+	 * Searches again after a change. ASTAR mode searches a slice per frame
+	 * in update, the other modes search here all at once.
+	 */
+	private void search() {
+		if (world.searchMode == SearchMode.ASTAR) {
+			stepping = world.beginSteppedSearch();
+		} else {
+			stepping = null;
+			world.reinitAStar();
+			world.runSearch();
+		}
+		messageStale = true;
+	}
+	/**
+	 * M cycles through the search modes and searches again.
+	 * A toggles animating ASTAR searches.
+	 * +/- zoom, the arrow keys pan and F fits the map into view.
+	 */
+	@Override
+	public void keyPressed(int key, char c) {
+		if (key == Input.KEY_M) {
+			SearchMode[] modes = SearchMode.values();
+			world.setSearchMode(modes[(world.searchMode.ordinal() + 1) % modes.length]);
+			search();
+		} else if (key == Input.KEY_A) {
+			animate = !animate;
+			if (world.searchMode == SearchMode.ASTAR) search();
+		} else if (key == Input.KEY_EQUALS || key == Input.KEY_ADD) {
+			zoom(VIEW_X + VIEW_SIZE/2, VIEW_Y + VIEW_SIZE/2, 1.25f);
+		} else if (key == Input.KEY_MINUS || key == Input.KEY_SUBTRACT) {
+			zoom(VIEW_X + VIEW_SIZE/2, VIEW_Y + VIEW_SIZE/2, 0.8f);
+		} else if (key == Input.KEY_LEFT) {
+			panX += VIEW_SIZE / 10;
+		} else if (key == Input.KEY_RIGHT) {
+			panX -= VIEW_SIZE / 10;
+		} else if (key == Input.KEY_UP) {
+			panY += VIEW_SIZE / 10;
+		} else if (key == Input.KEY_DOWN) {
+			panY -= VIEW_SIZE / 10;
+		} else if (key == Input.KEY_F) {
+			fit();
+		}
+	}
+	@Override
+	public void mouseWheelMoved(int change) {
+		zoom(input.getMouseX(), input.getMouseY(), change > 0 ? 1.25f : 0.8f);
+	}
+	/**
+	 * Scales the view by factor, keeping the point under (x, y) still.
+	 */
+	private void zoom(int x, int y, float factor) {
+		float fitted = (float)VIEW_SIZE / Math.max(world.width, world.height);
+		float c = Math.max(Math.min(fitted, 1.0f), Math.min(MAX_CELL, cell * factor));
+		float mx = x - VIEW_X, my = y - VIEW_Y;
+		panX = mx - (mx - panX) * c / cell;
+		panY = my - (my - panY) * c / cell;
+		cell = c;
+	}
+	/**
+	 * Zooms and pans so the whole map is in view, centered.
+	 */
+	private void fit() {
+		cell = (float)VIEW_SIZE / Math.max(world.width, world.height);
+		panX = (VIEW_SIZE - world.width*cell) / 2;
+		panY = (VIEW_SIZE - world.height*cell) / 2;
+	}
+	private void updateMessage() {
+		if (stepping != null && !stepping.isDone()) {
+			message = "Searching "+(int)(stepping.progress()*100)+"%";
+		} else if (world.hasSolution) {
+			message = "Solution found";
+		} else {
+			message = "No solution";
+		}
+		message += " ("+world.searchMode+", M to change)";
 	}
 	
 	/**
-	 * Draws the solution path, which was found using A*, onto the screen.
+	 * Draws the solution path, which was found using A*, onto the screen,
+	 * or the best partial path while an ASTAR search is running.
 	 * @param gc
 	 * @param g
 	 */
 	public void drawSolution(GameContainer gc, Graphics g) {
-		int adjwidth = nodewidth-5;
-		Node cur = world.grid[world.endY][world.endX];
-		for (int y=0; y<world.height; y++) {
-			for (int x=0; x<world.width; x++) {
-				//draw vertices which A* visited
-				if (world.grid[y][x].status == NodeStatus.CLOSED ||
-						world.grid[y][x].status == NodeStatus.OPEN) {
-					Color LightSteelBlue = new Color(176, 196, 222);
-					g.setColor(LightSteelBlue);
-					g.fillRect(10+(nodewidth/2)+x*nodewidth+3,
-							10+(nodewidth/2)+y*nodewidth+3, adjwidth, adjwidth);
-				}
-				if (world.grid[y][x].blocked) {
-					g.setColor(Color.darkGray);
-					//g.fillRect(10+(nodewidth/2)+x*nodewidth+3
-					//		,10+(nodewidth/2)+y*nodewidth+3, adjwidth, adjwidth);
-					g.fillRect(10+(nodewidth/2)+x*nodewidth
-							,10+(nodewidth/2)+y*nodewidth, nodewidth, nodewidth);
-				}
-			}
-		}
+		Grid grid = world.grid;
+		SearchState state = world.state;
+		float ox = VIEW_X + panX, oy = VIEW_Y + panY;
+		float inset = cell * 0.15f;
+		float adjwidth = cell - 2*inset;
+		boolean searching = stepping != null && !stepping.isDone();
+		int pathEnd = searching ? world.search.closest : grid.index(world.endX, world.endY);
 		//draw vertices in solution path
-		Color FireBrick = new Color(178, 34, 34);
-		g.setColor(FireBrick);
-		while (cur != null) {
-			g.fillRect(10+(nodewidth/2)+cur.xloc*nodewidth+3,
-					10+(nodewidth/2)+cur.yloc*nodewidth+3, adjwidth, adjwidth);
-			cur = cur.parent;
+		g.setColor(FIRE_BRICK);
+		if (cell >= MIN_LINE_CELL) {
+			for (int cur = pathEnd; cur != -1; cur = state.parentOf(cur)) {
+				g.fillRect(ox + grid.xOf(cur)*cell + inset, oy + grid.yOf(cur)*cell + inset, adjwidth, adjwidth);
+			}
 		}
 		//draw connecting line over solution path
-		cur = world.grid[world.endY][world.endX];
-		while (cur.parent != null) {
-			g.setColor(FireBrick);
-			g.setLineWidth(6.0f);
-			if (cur.parent.xloc != cur.xloc && cur.parent.yloc != cur.yloc)
-				g.setLineWidth(9.0f);//thicker width for diagonal lines
-			g.drawLine(10+(nodewidth/2)+cur.xloc*nodewidth + (nodewidth/2),
-					10+(nodewidth/2)+cur.yloc*nodewidth + (nodewidth/2), 
-					10+(nodewidth/2)+cur.parent.xloc*nodewidth + (nodewidth/2), 
-					10+(nodewidth/2)+cur.parent.yloc*nodewidth + (nodewidth/2));
-			g.setLineWidth(1.0f);
-			cur = cur.parent;
-		}
-		//draw start and end vertices
-		Color SeaGreen = new Color(46, 139, 87);
-		g.setColor(SeaGreen);
-		g.fillRect(10+(nodewidth/2)+world.startX*nodewidth+3,
-				10+(nodewidth/2)+world.startY*nodewidth+3, adjwidth, adjwidth);
-		Color MediumBlue = new Color(0, 0, 205);
-		//Color DodgerBlue = new Color(30, 144, 255);
-		g.setColor(MediumBlue);
-		g.fillRect(10+(nodewidth/2)+world.endX*nodewidth+3,
-				10+(nodewidth/2)+world.endY*nodewidth+3, adjwidth, adjwidth);
-		if (world.hasSolution) {
-			message = "Solution found";
-		} else {
-			message = "No solution";
+		float half = cell / 2;
+		float lineWidth = Math.max(1.0f, cell * 0.3f);
+		for (int cur = pathEnd; state.parentOf(cur) != -1; cur = state.parentOf(cur)) {
+			int par = state.parentOf(cur);
+			int curx = grid.xOf(cur), cury = grid.yOf(cur);
+			int parx = grid.xOf(par), pary = grid.yOf(par);
+			//thicker width for diagonal lines
+			g.setLineWidth(parx != curx && pary != cury ? lineWidth * 1.5f : lineWidth);
+			g.drawLine(ox + curx*cell + half, oy + cury*cell + half, ox + parx*cell + half, oy + pary*cell + half);
 		}
+		g.setLineWidth(1.0f);
+		//draw start and end vertices, at least a few pixels wide however far out
+		float mark = Math.max(adjwidth, 4.0f);
+		float markInset = (cell - mark) / 2;
+		g.setColor(SEA_GREEN);
+		g.fillRect(ox + world.startX*cell + markInset, oy + world.startY*cell + markInset, mark, mark);
+		g.setColor(MEDIUM_BLUE);
+		g.fillRect(ox + world.endX*cell + markInset, oy + world.endY*cell + markInset, mark, mark);
 	}
 	/**
 	 * Changes button images, detects which button received a click,
@@ -218,16 +370,13 @@ public class Demo extends BasicGame implements ComponentListener, MouseListener
 				
 				if (i == 4) {
 					world.randomizeWalls();
-					world.reinitAStar();
-					world.runAStar();
+					search();
 				} else if (i == 5) {
 					world.randomizeWalls2();
-					world.reinitAStar();
-					world.runAStar();
+					search();
 				} else if (i == 6) {
 					world.randomizeWalls3();
-					world.reinitAStar();
-					world.runAStar();
+					search();
 				}
 				//if (areas[activeButton].isAcceptingInput())
 				//	System.out.println("mouse  areas["+i+"]");
@@ -235,31 +384,32 @@ public class Demo extends BasicGame implements ComponentListener, MouseListener
 		}
 	}
 	
+	/**
+	 * The vertex under screen position (x, y), or -1 if none.
+	 */
+	private int vertexAt(int x, int y) {
+		if (x < VIEW_X || x >= VIEW_X + VIEW_SIZE || y < VIEW_Y || y >= VIEW_Y + VIEW_SIZE) return -1;
+		int col = (int)Math.floor((x - VIEW_X - panX) / cell);
+		int row = (int)Math.floor((y - VIEW_Y - panY) / cell);
+		if (col < 0 || col >= world.width || row < 0 || row >= world.height) return -1;
+		return world.grid.index(col, row);
+	}
 	public void mouseClicked(int button, int x, int y, int clickCount) {
-		int gridminx = 10+(nodewidth/2);
-		int gridminy = 10+(nodewidth/2);
-		int gridmaxx = 10+(nodewidth/2)+world.width*nodewidth;
-		int gridmaxy = 10+(nodewidth/2)+world.height*nodewidth;
-		
-		if (x>=gridminx && x<gridmaxx && y>=gridminy && y<gridmaxy) {
-			int col = (x - gridminx) / nodewidth;
-			int row = (y - gridminy) / nodewidth;
-			//System.out.println("inside grid ("+col+","+row+")");
-			gridClicked(col, row);
-		}
+		if (button != Input.MOUSE_LEFT_BUTTON) return;
+		int idx = vertexAt(x, y);
+		if (idx >= 0) gridClicked(world.grid.xOf(idx), world.grid.yOf(idx));
 	}
+	/**
+	 * Dragging with the right button pans, with the left it acts on each vertex passed.
+	 */
 	public void mouseDragged(int oldx, int oldy, int newx, int newy) {
-		int gridminx = 10+(nodewidth/2);
-		int gridminy = 10+(nodewidth/2);
-		int gridmaxx = 10+(nodewidth/2)+world.width*nodewidth;
-		int gridmaxy = 10+(nodewidth/2)+world.height*nodewidth;
-		
-		if (newx>=gridminx && newx<gridmaxx && newy>=gridminy && newy<gridmaxy) {
-			int col = (newx - gridminx) / nodewidth;
-			int row = (newy - gridminy) / nodewidth;
-			//System.out.println("dragged at grid ("+col+","+row+")");
-			gridClicked(col, row);
+		if (input.isMouseButtonDown(Input.MOUSE_RIGHT_BUTTON)) {
+			panX += newx - oldx;
+			panY += newy - oldy;
+			return;
 		}
+		int idx = vertexAt(newx, newy);
+		if (idx >= 0) gridClicked(world.grid.xOf(idx), world.grid.yOf(idx));
 	}
 	/**
 	 * Performs action when user clicks on the graph, based on
@@ -271,28 +421,27 @@ public class Demo extends BasicGame implements ComponentListener, MouseListener
 		//activeButton: 0: set start, 1:set end, 2:make block, 3:clear block 
 		switch (activeButton) {
 		case 0://set start
-			if (!world.grid[row][col].blocked) {
+			if (!world.grid.isBlocked(col, row)) {
 				world.startX = col;
 				world.startY = row;				
 			}
 			break;
 		case 1://set end
-			if (!world.grid[row][col].blocked) {
+			if (!world.grid.isBlocked(col, row)) {
 				world.endX = col;
 				world.endY = row;
 			}
 			break;
 		case 2://make block
 			if (!(world.endX==col && world.endY==row) && !(world.startX==col && world.startY==row)) {
-				world.grid[row][col].blocked = true;
+				world.grid.setBlocked(col, row, true);
 			}
 			break;
 		case 3://clear block
-			world.grid[row][col].blocked = false;
+			world.grid.setBlocked(col, row, false);
 			break;
 		}
-		world.reinitAStar();
-		world.runAStar();
+		search();
 	}
 
 }
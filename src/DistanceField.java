@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Distance from every vertex to one goal, with the first move of a shortest
+ * path from each (a flow field). Found once by Dijkstra's algorithm run
+ * backward from the goal, after which any number of agents heading for the
+ * goal read their next step in O(1) instead of each running A*.
+ *
+ * The grid can be split into stripes of rows, searched on separate threads.
+ * Each stripe runs Dijkstra over its own rows, and passes the distances it
+ * finds for vertices across its edges on to the stripe they belong to,
+ * which carries on from them in the next round. Rounds repeat until no
+ * stripe has anything to pass on, when every distance is exact.
+ *
+ * Distances are whole 1/1024ths (Connectivity.FIXED_UNITS), so fields are
+ * the same whatever the number of stripes. A move costs its length times
+ * the terrain cost of the vertex moved onto, as in AStarSearch.
+ * Built for one Grid version and Connectivity; see DistanceFieldCache.
+ * @author Michael A. Long
+ *
+ */
+public class DistanceField {
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	private static final int MAX_DISTANCE = UNREACHABLE - 1;
+
+	public final Grid grid;
+	public final Connectivity connectivity;
+	public final int goal;
+	public final int version;//Grid version the field was found at
+	private final int[] dist;//distance to the goal in 1/1024ths, UNREACHABLE if there is no path
+	private final byte[] flow;//move to make from each vertex, -1 at the goal or if there is no path
+	private final int[] offset;
+	public int settled;//vertices whose distance was settled, counting each time a later round lowered it
+	public int rounds;//rounds of passing distances between stripes
+	public long buildNanos;
+
+	/**
+	 * Finds the field on the calling thread.
+	 */
+	public DistanceField(Grid _grid, Connectivity c, int _goal) {
+		this(_grid, c, _goal, null, 1);
+	}
+	/**
+	 * Finds the field over the given number of stripes, run on pool
+	 * (only used if there is more than one stripe).
+	 */
+	public DistanceField(Grid _grid, Connectivity c, int _goal, ForkJoinPool pool, int stripes) {
+		long t0 = System.nanoTime();
+		grid = _grid;
+		connectivity = c;
+		goal = _goal;
+		version = grid.version;
+		offset = c.offsets(grid.width);
+		dist = new int[grid.size()];
+		flow = new byte[grid.size()];
+		Arrays.fill(dist, UNREACHABLE);
+		Arrays.fill(flow, (byte)-1);
+		if (grid.isBlocked(goal)) {
+			buildNanos = System.nanoTime() - t0;
+			return;
+		}
+		if (pool == null) stripes = 1;
+		int rowsPer = (grid.height + stripes - 1) / stripes;
+		Stripe[] all = new Stripe[(grid.height + rowsPer - 1) / rowsPer];
+		for (int s=0; s<all.length; s++) all[s] = new Stripe(s*rowsPer*grid.width, Math.min(grid.height, (s+1)*rowsPer)*grid.width);
+		int stripeSize = rowsPer*grid.width;
+		all[goal / stripeSize].post(goal, 0, -1);
+		while (true) {
+			boolean work = false;
+			for (Stripe s : all) {
+				s.swap();
+				work |= s.inCount > 0;
+			}
+			if (!work) break;
+			rounds++;
+			if (all.length == 1) {
+				all[0].call();
+			} else {
+				try {
+					List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(Arrays.asList(all));
+					for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("interrupted while finding a distance field", e);
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("finding a distance field failed", e.getCause());
+				}
+			}
+			for (Stripe s : all) {//hand each stripe's outgoing distances to the stripe they belong to
+				for (int i=0; i<s.outCount; i+=3) all[s.out[i] / stripeSize].post(s.out[i], s.out[i+1], s.out[i+2]);
+				s.outCount = 0;
+				settled += s.settled;
+				s.settled = 0;
+			}
+		}
+		buildNanos = System.nanoTime() - t0;
+	}
+	/**
+	 * True if the field still matches the grid.
+	 */
+	public boolean isCurrent() {
+		return version == grid.version;
+	}
+	public boolean reaches(int v) {
+		return dist[v] != UNREACHABLE;
+	}
+	/**
+	 * Cost of the shortest path from v to the goal, or infinity if there is none.
+	 */
+	public float distance(int v) {
+		return dist[v] == UNREACHABLE ? Float.POSITIVE_INFINITY : dist[v] / 1024.0f;
+	}
+	/**
+	 * The vertex to move to from v, or -1 at the goal or if there is no path.
+	 */
+	public int next(int v) {
+		int d = flow[v];
+		return d < 0 ? -1 : v + offset[d];
+	}
+	/**
+	 * The path from start to the goal, start first, or null if there is none.
+	 */
+	public int[] path(int start) {
+		if (!reaches(start)) return null;
+		int length = 1;
+		for (int v = start; v != goal; v = next(v)) length++;
+		int[] path = new int[length];
+		int i = 0;
+		for (int v = start; v != goal; v = next(v)) path[i++] = v;
+		path[i] = goal;
+		return path;
+	}
+	/**
+	 * True if changing vertex idx could change the field: it was on it, or
+	 * opening it joins it to the field.
+	 */
+	public boolean dependsOn(int idx) {
+		if (dist[idx] != UNREACHABLE) return true;
+		int x = idx % grid.width, y = idx / grid.width;
+		for (int d=0; d<connectivity.directions; d++) {
+			int nx = x + Connectivity.DX[d], ny = y + Connectivity.DY[d];
+			if (nx >= 0 && nx < grid.width && ny >= 0 && ny < grid.height && dist[idx + offset[d]] != UNREACHABLE) return true;
+		}
+		return false;
+	}
+	public long bytes() {
+		return 5L * dist.length;
+	}
+
+	/**
+	 * Rows [first, end) of the grid, as vertex indices. Only its own thread
+	 * writes their distances while a round runs; distances for vertices
+	 * outside go to out as (vertex, distance, move) triples.
+	 */
+	private class Stripe implements Callable<Void> {
+		final int first;
+		final int end;
+		final LongHeap heap = new LongHeap();
+		int[] in = new int[48];//triples to start the next round from
+		int inCount;
+		int[] pending = new int[48];//triples posted for the round after this one
+		int pendingCount;
+		int[] out = new int[48];
+		int outCount;
+		int settled;
+
+		Stripe(int _first, int _end) {
+			first = _first;
+			end = _end;
+		}
+		void post(int v, int d, int move) {
+			if (pendingCount + 3 > pending.length) pending = Arrays.copyOf(pending, pending.length*2);
+			pending[pendingCount++] = v;
+			pending[pendingCount++] = d;
+			pending[pendingCount++] = move;
+		}
+		/**
+		 * Makes what was posted the input to the next round.
+		 */
+		void swap() {
+			int[] t = in;
+			in = pending;
+			inCount = pendingCount;
+			pending = t;
+			pendingCount = 0;
+		}
+		@Override
+		public Void call() {
+			int width = grid.width, height = grid.height;
+			int directions = connectivity.directions;
+			boolean cutsCorners = connectivity.cutsCorners;
+			boolean weighted = grid.hasCosts();
+			int[] units = Connectivity.FIXED_UNITS;
+			for (int i=0; i<inCount; i+=3) {
+				int v = in[i], d = in[i+1];
+				if (d < dist[v]) {
+					dist[v] = d;
+					flow[v] = (byte)in[i+2];
+					heap.add((long)d << 32 | v);
+				}
+			}
+			inCount = 0;
+			while (!heap.isEmpty()) {
+				long top = heap.remove();
+				int cur = (int)top;
+				int dc = (int)(top >>> 32);
+				if (dc != dist[cur]) continue;//already reached more cheaply
+				settled++;
+				int curx = cur % width, cury = cur / width;
+				long onto = weighted ? grid.cost(cur) : 1;//every move into cur costs this much extra
+				for (int d=0; d<directions; d++) {//n is a vertex one move d away, which reaches cur by the opposite move
+					int nx = curx + Connectivity.DX[d], ny = cury + Connectivity.DY[d];
+					if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+					int n = cur + offset[d];
+					if (grid.isBlocked(n)) continue;
+					if (d >= 4 && !cutsCorners) {
+						if (grid.isBlocked(cur + Connectivity.DX[d]) || grid.isBlocked(n - Connectivity.DX[d])) continue;
+					}
+					int nd = (int)Math.min(MAX_DISTANCE, dc + units[d] * onto);
+					int move = Connectivity.OPPOSITE[d];
+					if (n < first || n >= end) {
+						if (outCount + 3 > out.length) out = Arrays.copyOf(out, out.length*2);
+						out[outCount++] = n;
+						out[outCount++] = nd;
+						out[outCount++] = move;
+					} else if (nd < dist[n]) {
+						dist[n] = nd;
+						flow[n] = (byte)move;
+						heap.add((long)nd << 32 | n);
+					}
+				}
+			}
+			return null;
+		}
+	}
+}
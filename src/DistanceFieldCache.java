@@ -0,0 +1,108 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Distance fields for the most recently used goals, at most capacity of
+ * them. Listens to the grid: a changed vertex drops only the fields it
+ * could change (those which reach it or one of its neighbors), and a bulk
+ * change drops them all. Fields are found over stripes of rows on a pool
+ * of worker threads.
+ * @author Michael A. Long
+ *
+ */
+public class DistanceFieldCache implements GridListener {
+	public final Grid grid;
+	public final int capacity;
+	private Connectivity connectivity;
+	private final ForkJoinPool pool;//null if fields are found on the calling thread
+	private final int stripes;
+	private final LinkedHashMap<Integer, DistanceField> fields;
+	public DistanceField last;//field returned by the last get
+	public boolean lastBuilt;//the last get had to find its field
+	public long hits;
+	public long misses;
+	public long evictions;//dropped to make room
+	public long invalidations;//dropped because the grid changed
+
+	public DistanceFieldCache(Grid _grid, Connectivity c, int _capacity, int threads) {
+		grid = _grid;
+		connectivity = c;
+		capacity = _capacity;
+		pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		stripes = threads > 1 ? 2*threads : 1;//a few more stripes than threads, as the wavefront crosses them unevenly
+		fields = new LinkedHashMap<Integer, DistanceField>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, DistanceField> eldest) {
+				if (size() <= capacity) return false;
+				evictions++;
+				return true;
+			}
+		};
+		grid.addListener(this);
+	}
+	/**
+	 * Stops listening to the grid and shuts the worker threads down.
+	 */
+	public void dispose() {
+		grid.removeListener(this);
+		if (pool != null) pool.shutdown();
+	}
+	public void setConnectivity(Connectivity c) {
+		if (c != connectivity) {
+			connectivity = c;
+			clear();
+		}
+	}
+	/**
+	 * The field for goal, found now if it isn't cached.
+	 */
+	public DistanceField get(int goal) {
+		DistanceField f = fields.get(goal);
+		lastBuilt = f == null;
+		if (f == null) {
+			misses++;
+			f = new DistanceField(grid, connectivity, goal, pool, stripes);
+			fields.put(goal, f);
+		} else {
+			hits++;
+		}
+		last = f;
+		return f;
+	}
+	/**
+	 * The field for goal if it is cached, else null. Neither finds it nor
+	 * counts as a hit, but does keep it from being evicted soon.
+	 */
+	public DistanceField peek(int goal) {
+		return fields.get(goal);
+	}
+	public int size() {
+		return fields.size();
+	}
+	public void clear() {
+		invalidations += fields.size();
+		fields.clear();
+	}
+	@Override
+	public void cellChanged(Grid _grid, int idx, boolean blocked) {
+		for (Iterator<DistanceField> it = fields.values().iterator(); it.hasNext(); ) {
+			if (it.next().dependsOn(idx)) {
+				it.remove();
+				invalidations++;
+			}
+		}
+	}
+	@Override
+	public void gridChanged(Grid _grid) {
+		clear();
+	}
+	@Override
+	public String toString() {
+		return "DistanceFieldCache size "+fields.size()+"/"+capacity+", hits "+hits+", misses "+misses
+				+", evictions "+evictions+", invalidations "+invalidations;
+	}
+}
@@ -0,0 +1,155 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Maze generator which makes one row at a time with Eller's algorithm,
+ * keeping only O(width) state, so mazes of any height can be streamed
+ * straight to a file (see MapFile.RowWriter and TiledGrid) as they are made.
+ *
+ * Laid out like randomizeWalls: maze cells are the vertices at even x and
+ * even y, and the vertices between two cells are open if the cells are
+ * joined. The result is a perfect maze, with exactly one path between any
+ * two open vertices. The same seed always gives the same maze.
+ *
+ * Each cell of a row belongs to a set, the cells already joined through
+ * the rows above. Neighboring cells in different sets are joined at
+ * random, then each set is carved down into the next row at least once,
+ * at random places. The last row joins every set left.
+ * @author Michael A. Long
+ *
+ */
+public class EllerMaze {
+	public final int width;
+	public final int height;
+	private final Random rand;
+	private final int cells;//maze cells per row
+	private final int rows;//rows of maze cells
+	private final int[] set;//set label of each cell in the current row, -1 if none yet
+	private final int[] parent;//union-find over labels, within one row
+	private final int[] members;//cells of each set still to decide in the down pass
+	private final boolean[] wentDown;//set has been carved down into the next row
+	private final boolean[] used;//label belongs to a cell of the current row
+	private final int[] free;//labels not in use
+	private final long[] line;//map row being made
+	private long coins;//random bits not used yet
+	private int coinsLeft;
+
+	public EllerMaze(int _width, int _height, long seed) {
+		width = _width;
+		height = _height;
+		rand = new MazeRandom(seed);
+		cells = (width + 1) / 2;
+		rows = (height + 1) / 2;
+		set = new int[cells];
+		parent = new int[cells];
+		members = new int[cells];
+		wentDown = new boolean[cells];
+		used = new boolean[cells];
+		free = new int[cells];
+		line = new long[(width + 63) >>> 6];
+	}
+	/**
+	 * Makes the maze, handing each of its height rows to sink in order.
+	 */
+	public void generate(RowSink sink) {
+		Arrays.fill(set, -1);
+		for (int r=0; r<rows; r++) {
+			boolean last = r == rows - 1;
+			newSets();
+			//row of cells: join neighbors in different sets
+			blockAll();
+			for (int c=0; c<cells; c++) open(2*c);
+			for (int c=0; c<cells-1; c++) {
+				int a = find(set[c]), b = find(set[c+1]);
+				if (a != b && (last || coin())) {
+					parent[b] = a;
+					open(2*c + 1);
+				}
+			}
+			for (int c=0; c<cells; c++) set[c] = find(set[c]);
+			sink.row(2*r, line);
+			if (last) break;
+			//row below: carve each set down at least once
+			blockAll();
+			for (int c=0; c<cells; c++) {
+				members[set[c]]++;
+				wentDown[set[c]] = false;
+			}
+			for (int c=0; c<cells; c++) {
+				int l = set[c];
+				boolean down = coin() || (members[l] == 1 && !wentDown[l]);
+				members[l]--;
+				if (down) {
+					wentDown[l] = true;
+					open(2*c);
+				} else {
+					set[c] = -1;
+				}
+			}
+			sink.row(2*r + 1, line);
+		}
+		if (height % 2 == 0) {//even height leaves a row of wall along the bottom
+			blockAll();
+			sink.row(height - 1, line);
+		}
+	}
+	/**
+	 * Gives each cell without a set a label of its own, from those not in use.
+	 */
+	private void newSets() {
+		Arrays.fill(used, false);
+		for (int c=0; c<cells; c++) {
+			if (set[c] >= 0) used[set[c]] = true;
+		}
+		int freeCount = 0;
+		for (int l=0; l<cells; l++) {
+			parent[l] = l;
+			if (!used[l]) free[freeCount++] = l;
+		}
+		for (int c=0; c<cells; c++) {
+			if (set[c] < 0) set[c] = free[--freeCount];
+		}
+	}
+	/**
+	 * A random true or false, 64 to each random number drawn.
+	 */
+	private boolean coin() {
+		if (coinsLeft == 0) {
+			coins = rand.nextLong();
+			coinsLeft = 64;
+		}
+		coinsLeft--;
+		boolean b = (coins & 1) != 0;
+		coins >>>= 1;
+		return b;
+	}
+	private int find(int l) {
+		while (parent[l] != l) {
+			parent[l] = parent[parent[l]];
+			l = parent[l];
+		}
+		return l;
+	}
+	private void blockAll() {
+		Arrays.fill(line, -1L);
+		if ((width & 63) != 0) line[line.length - 1] = (1L << width) - 1;//no bits past the width
+	}
+	private void open(int x) {
+		line[x >>> 6] &= ~(1L << x);
+	}
+	/**
+	 * Sink which sets the rows into grid, e.g. a World's grid. Wrap the
+	 * generate call in grid.beginChanges and endChanges so listeners
+	 * aren't told about every vertex.
+	 */
+	public static RowSink into(final Grid grid) {
+		return new RowSink() {
+			@Override
+			public void row(int y, long[] blocked) {
+				for (int x=0; x<grid.width; x++) {
+					grid.setBlocked(y*grid.width + x, (blocked[x >>> 6] & (1L << x)) != 0);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,46 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Frontier for the maze generators: a growable array of long entries,
+ * from which a random entry is removed in O(1) by moving the last entry
+ * into its place. No boxing, so large mazes generate quickly.
+ * @author Michael A. Long
+ *
+ */
+public class Frontier {
+	private long[] entries = new long[64];
+	private int size;
+
+	public void add(long e) {
+		if (size == entries.length) entries = Arrays.copyOf(entries, size*2);
+		entries[size++] = e;
+	}
+	/**
+	 * Adds e if add is 1 and not if it is 0, without branching on add,
+	 * for callers whose choice the processor can't predict.
+	 */
+	public void addIf(long e, int add) {
+		if (size == entries.length) entries = Arrays.copyOf(entries, size*2);
+		entries[size] = e;
+		size += add;
+	}
+	/**
+	 * Removes and returns an entry chosen uniformly at random.
+	 */
+	public long removeRandom(Random rand) {
+		int i = rand.nextInt(size);
+		long e = entries[i];
+		entries[i] = entries[--size];
+		return e;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public int size() {
+		return size;
+	}
+	public void clear() {
+		size = 0;
+	}
+}
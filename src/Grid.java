@@ -0,0 +1,217 @@
+import java.util.Arrays;
+
+/**
+ * Stores which vertices of the graph are blocked, packed one bit per vertex.
+ * Vertices are addressed by their index, y*width+x.
+ * Open vertices can also have a terrain cost, 1 to 255, which multiplies
+ * the cost of moving onto them. The cost plane is only allocated once a
+ * cost other than 1 is set, so uniform grids stay one bit per vertex.
+ * Subclasses can keep the bits somewhere other than the heap, e.g. MappedGrid.
+ * @author Michael A. Long
+ *
+ */
+public class Grid implements RowSink {
+	public final int width;
+	public final int height;
+	private final long[] blocked;//bit (idx & 63) of word (idx >>> 6) is set if vertex idx is blocked
+	private byte[] costs;//unsigned terrain cost of each vertex, 0 meaning 1, null until one is set
+	public int version;//incremented whenever a vertex changes, so precomputed data can tell it is stale
+	private final boolean readOnly;
+	private GridListener[] listeners = new GridListener[0];
+	private int batchDepth;//inside beginChanges/endChanges when > 0
+	private boolean batchChanged;//a vertex changed during the current batch
+	
+	public Grid(int _width, int _height) {
+		width = _width;
+		height = _height;
+		blocked = new long[(size() + 63) >>> 6];
+		readOnly = false;
+	}
+	private Grid(Grid src) {
+		width = src.width;
+		height = src.height;
+		blocked = new long[(size() + 63) >>> 6];
+		for (int i=0; i<blocked.length; i++) blocked[i] = src.word(i);
+		if (src.hasCosts()) {
+			costs = new byte[size()];
+			for (int i=0; i<costs.length; i++) costs[i] = (byte)src.cost(i);
+		}
+		version = src.version;
+		readOnly = true;
+	}
+	/**
+	 * For subclasses which keep the blocked bits themselves. They override
+	 * word, isBlocked, setBlocked and fill, and cost, hasCosts and setCost
+	 * if they have terrain costs.
+	 */
+	protected Grid(int _width, int _height, boolean _readOnly) {
+		width = _width;
+		height = _height;
+		blocked = null;
+		readOnly = _readOnly;
+	}
+	/**
+	 * Returns a read-only copy of this grid, which any number of
+	 * threads can search at once.
+	 */
+	public Grid freeze() {
+		return readOnly ? this : new Grid(this);
+	}
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+	public void addListener(GridListener l) {
+		listeners = Arrays.copyOf(listeners, listeners.length + 1);
+		listeners[listeners.length - 1] = l;
+	}
+	public void removeListener(GridListener l) {
+		for (int i=0; i<listeners.length; i++) {
+			if (listeners[i] == l) {
+				GridListener[] rest = new GridListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, rest, 0, i);
+				System.arraycopy(listeners, i + 1, rest, i, rest.length - i);
+				listeners = rest;
+				return;
+			}
+		}
+	}
+	/**
+	 * Starts a batch of changes, e.g. generating a maze. Listeners get no
+	 * per-vertex events until the matching endChanges, which tells them
+	 * once that the grid changed.
+	 */
+	public void beginChanges() {
+		batchDepth++;
+	}
+	public void endChanges() {
+		if (--batchDepth == 0 && batchChanged) {
+			batchChanged = false;
+			fireGridChanged();
+		}
+	}
+	protected void fireGridChanged() {
+		if (batchDepth > 0) {
+			batchChanged = true;
+			return;
+		}
+		for (GridListener l : listeners) l.gridChanged(this);
+	}
+	/**
+	 * Number of vertices in the grid.
+	 */
+	public int size() {
+		return width * height;
+	}
+	/**
+	 * Packed word i of the blocked bits: bit (idx & 63) of word (idx >>> 6)
+	 * is set if vertex idx is blocked.
+	 */
+	public long word(int i) {
+		return blocked[i];
+	}
+	public int index(int x, int y) {
+		return y*width + x;
+	}
+	public int xOf(int idx) {
+		return idx % width;
+	}
+	public int yOf(int idx) {
+		return idx / width;
+	}
+	public boolean isBlocked(int idx) {
+		return (blocked[idx >>> 6] & (1L << idx)) != 0;
+	}
+	public boolean isBlocked(int x, int y) {
+		return isBlocked(y*width + x);
+	}
+	public void setBlocked(int idx, boolean b) {
+		if (readOnly) throw new UnsupportedOperationException("Grid is read-only");
+		long word = blocked[idx >>> 6];
+		long changed = b ? word | (1L << idx) : word & ~(1L << idx);
+		if (changed != word) {
+			blocked[idx >>> 6] = changed;
+			fireCellChanged(idx, b);
+		}
+	}
+	/**
+	 * Records that vertex idx changed, telling listeners unless in a batch.
+	 */
+	protected void fireCellChanged(int idx, boolean b) {
+		version++;
+		if (batchDepth > 0) batchChanged = true;
+		else for (GridListener l : listeners) l.cellChanged(this, idx, b);
+	}
+	public void setBlocked(int x, int y, boolean b) {
+		setBlocked(y*width + x, b);
+	}
+	/**
+	 * True if any vertex may cost more than 1, so searches need to read cost.
+	 */
+	public boolean hasCosts() {
+		return costs != null;
+	}
+	/**
+	 * Terrain cost of moving onto vertex idx, 1 to 255.
+	 */
+	public int cost(int idx) {
+		if (costs == null) return 1;
+		int c = costs[idx] & 0xFF;
+		return c == 0 ? 1 : c;
+	}
+	/**
+	 * Sets the terrain cost of vertex idx, 1 to 255. Listeners are told
+	 * the vertex changed, as paths through it may have.
+	 */
+	public void setCost(int idx, int c) {
+		if (readOnly) throw new UnsupportedOperationException("Grid is read-only");
+		if (c < 1 || c > 255) throw new IllegalArgumentException("cost "+c+" is not between 1 and 255");
+		if (cost(idx) == c) return;
+		if (blocked == null) throw new UnsupportedOperationException(getClass().getName()+" has no cost plane");
+		if (costs == null) costs = new byte[size()];
+		costs[idx] = (byte)c;
+		fireCellChanged(idx, isBlocked(idx));
+	}
+	/**
+	 * Copy of the cost plane in MapFile's layout, or null if every vertex costs 1.
+	 */
+	public byte[] costPlane() {
+		if (!hasCosts()) return null;
+		byte[] plane = new byte[size()];
+		for (int i=0; i<plane.length; i++) plane[i] = (byte)cost(i);
+		return plane;
+	}
+	/**
+	 * Sets row y from packed bits, bit (x & 63) of word (x >>> 6) set if
+	 * vertex x is blocked, a word at a time. Listeners are told the grid
+	 * changed rather than about each vertex.
+	 */
+	@Override
+	public void row(int y, long[] bits) {
+		if (readOnly) throw new UnsupportedOperationException("Grid is read-only");
+		if (blocked == null) {//a subclass keeps the bits
+			beginChanges();
+			for (int x=0; x<width; x++) setBlocked(y*width + x, (bits[x >>> 6] & (1L << x)) != 0);
+			endChanges();
+			return;
+		}
+		for (int x=0; x<width; x+=64) {
+			int n = Math.min(64, width - x);
+			long mask = n == 64 ? -1L : (1L << n) - 1;
+			long w = bits[x >>> 6] & mask;
+			int i = y*width + x, k = i >>> 6, s = i & 63;
+			blocked[k] = blocked[k] & ~(mask << s) | w << s;
+			if (s != 0 && n > 64 - s) blocked[k+1] = blocked[k+1] & ~(mask >>> (64 - s)) | w >>> (64 - s);
+		}
+		version++;
+		fireGridChanged();
+	}
+	/**
+	 * Sets every vertex to blocked or open, one word at a time.
+	 */
+	public void fill(boolean b) {
+		if (readOnly) throw new UnsupportedOperationException("Grid is read-only");
+		Arrays.fill(blocked, b ? -1L : 0L);
+		version++;
+		fireGridChanged();
+	}
+}
@@ -0,0 +1,16 @@
+/**
+ * Told about changes to a Grid, so anything precomputed from it can be
+ * repaired instead of thrown away.
+ * @author Michael A. Long
+ *
+ */
+public interface GridListener {
+	/**
+	 * A single vertex became blocked or open.
+	 */
+	public void cellChanged(Grid grid, int idx, boolean blocked);
+	/**
+	 * Many vertices may have changed at once, e.g. a new maze was generated.
+	 */
+	public void gridChanged(Grid grid);
+}
@@ -0,0 +1,70 @@
+/**
+ * Read-only view of a rectangle of another Grid, which can be moved.
+ * Vertex (x, y) of the window is vertex (x0 + x, y0 + y) of the source.
+ * @author Michael A. Long
+ *
+ */
+public class GridWindow extends Grid {
+	public final Grid source;
+	public int x0;
+	public int y0;
+
+	public GridWindow(Grid _source, int _width, int _height) {
+		super(_width, _height, true);
+		source = _source;
+	}
+	/**
+	 * Moves the window so its top left is vertex (x, y) of the source.
+	 * The window must fit inside the source.
+	 */
+	public void moveTo(int x, int y) {
+		if (x < 0 || y < 0 || x + width > source.width || y + height > source.height) {
+			throw new IllegalArgumentException("window "+width+"x"+height+" at "+x+","+y+" is outside the source");
+		}
+		x0 = x;
+		y0 = y;
+	}
+	/**
+	 * Index in the source of window vertex idx.
+	 */
+	public int toSource(int idx) {
+		return (y0 + idx / width) * source.width + x0 + idx % width;
+	}
+	/**
+	 * Index in the window of source vertex idx, or -1 if it is outside.
+	 */
+	public int fromSource(int idx) {
+		return fromSource(idx % source.width, idx / source.width);
+	}
+	/**
+	 * Index in the window of source vertex (x, y), or -1 if it is outside.
+	 * Unlike the index, works on sources too big for int indices.
+	 */
+	public int fromSource(int x, int y) {
+		x -= x0;
+		y -= y0;
+		if (x < 0 || x >= width || y < 0 || y >= height) return -1;
+		return y*width + x;
+	}
+	@Override
+	public boolean isBlocked(int idx) {
+		return source.isBlocked(x0 + idx % width, y0 + idx / width);
+	}
+	@Override
+	public boolean hasCosts() {
+		return source.hasCosts();
+	}
+	@Override
+	public int cost(int idx) {
+		return source.cost(toSource(idx));
+	}
+	@Override
+	public long word(int i) {
+		long w = 0;
+		int end = Math.min(size(), (i + 1) << 6);
+		for (int idx=i << 6; idx<end; idx++) {
+			if (isBlocked(idx)) w |= 1L << idx;
+		}
+		return w;
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Distance estimation heuristics, given the horizontal and vertical
+ * distance to the goal.
+ * MANHATTAN is exact on an open grid with FOUR connectivity, OCTILE is
+ * exact with EIGHT connectivity, and EUCLIDEAN is admissible for both.
+ * @author Michael A. Long
+ *
+ */
+public enum Heuristic {
+	MANHATTAN, OCTILE, EUCLIDEAN;
+	
+	private static final float DIAGONAL_EXTRA = Connectivity.SQRT2 - 1.0f;
+	
+	public float estimate(int xdiff, int ydiff) {
+		switch (this) {
+		case OCTILE:
+			return xdiff > ydiff ? xdiff + DIAGONAL_EXTRA*ydiff : ydiff + DIAGONAL_EXTRA*xdiff;
+		case EUCLIDEAN:
+			return (float)Math.sqrt((double)xdiff*xdiff + (double)ydiff*ydiff);
+		default:
+			return xdiff + ydiff;
+		}
+	}
+	/**
+	 * Estimate for moves costing Connectivity.FIXED_UNITS, in whole 1/1024ths.
+	 */
+	public long estimateUnits(int xdiff, int ydiff) {
+		switch (this) {
+		case OCTILE:
+			return xdiff > ydiff ? 1024L*xdiff + 424L*ydiff : 1024L*ydiff + 424L*xdiff;
+		case EUCLIDEAN://no more than the fixed point octile distance, which a straight line can exceed
+			return Math.min((long)(1024*Math.sqrt((double)xdiff*xdiff + (double)ydiff*ydiff)), OCTILE.estimateUnits(xdiff, ydiff));
+		default:
+			return 1024L*(xdiff + ydiff);
+		}
+	}
+}
@@ -0,0 +1,464 @@
+import java.util.Arrays;
+
+/**
+ * Hierarchical path finding (HPA*) for large grids.
+ *
+ * The grid is split into square clusters. Wherever two neighboring clusters
+ * share a run of open vertices along their border, one or two entrances are
+ * placed on it, and the distances between the entrances inside each cluster
+ * are precomputed. A query first searches this small abstract graph for a
+ * list of waypoints, then refines each leg between waypoints to vertices
+ * with a search confined to one cluster, only when that leg is asked for.
+ *
+ * Paths may be longer than optimal, as they must cross cluster borders
+ * at entrances: by at most MAX_DETOUR times clusterSize for each border a
+ * shortest path crosses, the walk along the border to an entrance and
+ * back. On the benchmark maps they average under 3% longer. Terrain
+ * costs are ignored. Registers itself as a GridListener, and only
+ * rebuilds the clusters around changed vertices before the next query.
+ * @author Michael A. Long
+ *
+ */
+public class HierarchicalSearch implements GridListener {
+	private static final float INF = Float.POSITIVE_INFINITY;
+	public static final int MAX_DETOUR = 2;//bound on the extra cost per border crossed, in cluster sizes
+	private static final int SPLIT_RUN = 6;//runs this long get an entrance at each end, not one in the middle
+
+	public final Grid grid;
+	public final int clusterSize;
+	public final int clustersX;
+	public final int clustersY;
+	private Connectivity connectivity;
+	private Heuristic heuristic;
+	//entrances of each cluster: a vertex inside it, the vertex across the border
+	//it connects to, and the distances between entrances as a count*count matrix
+	private final int[][] entryCell;
+	private final int[][] entryPartner;
+	private final float[][] entryDist;
+	private final int[] entryCount;
+	private final boolean[] dirty;//cluster must be rebuilt before the next query
+	private int[] dirtyList;
+	private int dirtyCount;
+	private boolean allDirty = true;
+	private final int[] tmpCell;
+	private final int[] tmpPartner;
+	//search confined to one cluster, indexed by position within the cluster
+	private final float[] localG;
+	private final int[] localParent;
+	private final IndexedHeap localOpen;
+	private final float[] startDist;
+	private final float[] goalDist;
+	//abstract search, node = cluster*stride + entrance, then the start and goal
+	private int stride;
+	private float[] g;
+	private int[] parent;
+	private int[] stamp;
+	private int generation;
+	private IndexedHeap open;
+	private AStarSearch fallback;//created on first use, see findPath
+	private int start;
+	private int goal;
+	private int[] waypoints = new int[16];
+	private int waypointCount;
+	private int[] path;//refined by path(), kept until the next findPath
+	public float cost;//length of the path found by the last findPath
+	public int expanded;//abstract nodes plus cluster vertices expanded by the last findPath
+
+	public HierarchicalSearch(Grid _grid, Connectivity c, int _clusterSize) {
+		grid = _grid;
+		clusterSize = _clusterSize;
+		clustersX = (grid.width + clusterSize - 1) / clusterSize;
+		clustersY = (grid.height + clusterSize - 1) / clusterSize;
+		int clusters = clustersX * clustersY;
+		entryCell = new int[clusters][];
+		entryPartner = new int[clusters][];
+		entryDist = new float[clusters][];
+		entryCount = new int[clusters];
+		dirty = new boolean[clusters];
+		dirtyList = new int[16];
+		tmpCell = new int[4*clusterSize];
+		tmpPartner = new int[4*clusterSize];
+		int area = clusterSize * clusterSize;
+		localG = new float[area];
+		localParent = new int[area];
+		localOpen = new IndexedHeap(area);
+		startDist = new float[area];
+		goalDist = new float[area];
+		setConnectivity(c);
+		grid.addListener(this);
+	}
+	public HierarchicalSearch(Grid _grid, Connectivity c) {
+		this(_grid, c, 32);
+	}
+	public void setConnectivity(Connectivity c) {
+		if (c != connectivity) {
+			connectivity = c;
+			heuristic = c.defaultHeuristic();
+			allDirty = true;
+		}
+	}
+	/**
+	 * Stops listening to the grid.
+	 */
+	public void dispose() {
+		grid.removeListener(this);
+	}
+	@Override
+	public void cellChanged(Grid _grid, int idx, boolean blocked) {
+		if (allDirty) return;
+		int c = clusterOf(idx);
+		if (dirty[c]) return;
+		dirty[c] = true;
+		if (dirtyCount == dirtyList.length) dirtyList = Arrays.copyOf(dirtyList, dirtyCount*2);
+		dirtyList[dirtyCount++] = c;
+	}
+	@Override
+	public void gridChanged(Grid _grid) {
+		allDirty = true;
+	}
+	public int clusterOf(int idx) {
+		return (idx / grid.width / clusterSize) * clustersX + (idx % grid.width) / clusterSize;
+	}
+	/**
+	 * Rebuilds the clusters with changed vertices, and their neighbors,
+	 * whose entrances on the shared borders may have moved.
+	 */
+	private void update() {
+		if (allDirty) {
+			for (int c=0; c<entryCount.length; c++) buildCluster(c);
+			for (int i=0; i<dirtyCount; i++) dirty[dirtyList[i]] = false;
+			dirtyCount = 0;
+			allDirty = false;
+		} else if (dirtyCount > 0) {
+			int changed = dirtyCount;
+			for (int i=0; i<changed; i++) {
+				int c = dirtyList[i];
+				int cx = c % clustersX, cy = c / clustersX;
+				if (cx > 0) markDirty(c - 1);
+				if (cx < clustersX-1) markDirty(c + 1);
+				if (cy > 0) markDirty(c - clustersX);
+				if (cy < clustersY-1) markDirty(c + clustersX);
+			}
+			for (int i=0; i<dirtyCount; i++) {
+				buildCluster(dirtyList[i]);
+				dirty[dirtyList[i]] = false;
+			}
+			dirtyCount = 0;
+		} else {
+			return;
+		}
+		int max = 1;
+		for (int c=0; c<entryCount.length; c++) max = Math.max(max, entryCount[c]);
+		if (max > stride || g == null) {
+			stride = Math.max(max, 2*stride);
+			int nodes = entryCount.length * stride + 2;
+			g = new float[nodes];
+			parent = new int[nodes];
+			stamp = new int[nodes];
+			generation = 0;
+			open = new IndexedHeap(nodes);
+		}
+	}
+	private void markDirty(int c) {
+		if (dirty[c]) return;
+		dirty[c] = true;
+		if (dirtyCount == dirtyList.length) dirtyList = Arrays.copyOf(dirtyList, dirtyCount*2);
+		dirtyList[dirtyCount++] = c;
+	}
+	/**
+	 * Finds the entrances on each border of cluster c, then the
+	 * distances between them inside the cluster.
+	 */
+	private void buildCluster(int c) {
+		int width = grid.width;
+		int x0 = (c % clustersX) * clusterSize, y0 = (c / clustersX) * clusterSize;
+		int x1 = Math.min(x0 + clusterSize, width), y1 = Math.min(y0 + clusterSize, grid.height);
+		int count = 0;
+		if (x0 > 0) count = scanBorder(count, y0*width + x0, width, y1 - y0, -1);
+		if (x1 < width) count = scanBorder(count, y0*width + x1-1, width, y1 - y0, 1);
+		if (y0 > 0) count = scanBorder(count, y0*width + x0, 1, x1 - x0, -width);
+		if (y1 < grid.height) count = scanBorder(count, (y1-1)*width + x0, 1, x1 - x0, width);
+		int[] cells = Arrays.copyOf(tmpCell, count);
+		float[] dist = new float[count*count];
+		for (int i=0; i<count; i++) {
+			int same = -1;
+			for (int j=0; j<i; j++) {
+				if (cells[j] == cells[i]) same = j;
+			}
+			if (same >= 0) {
+				System.arraycopy(dist, same*count, dist, i*count, count);
+				continue;
+			}
+			localSearch(c, cells[i], -1, localG);
+			for (int j=0; j<count; j++) dist[i*count + j] = localG[local(c, cells[j])];
+		}
+		entryCell[c] = cells;
+		entryPartner[c] = Arrays.copyOf(tmpPartner, count);
+		entryDist[c] = dist;
+		entryCount[c] = count;
+	}
+	/**
+	 * Adds entrances along one border, starting at vertex first inside the
+	 * cluster and moving by step, where across leads to the other side.
+	 * Both clusters sharing a border place the same entrances on it.
+	 */
+	private int scanBorder(int count, int first, int step, int length, int across) {
+		int run = 0;
+		for (int i=0; i<=length; i++) {
+			int cell = first + i*step;
+			if (i < length && !grid.isBlocked(cell) && !grid.isBlocked(cell + across)) {
+				run++;
+				continue;
+			}
+			if (run > 0) {
+				int begin = i - run, end = i - 1;
+				if (run < SPLIT_RUN) {
+					int mid = first + ((begin + end) / 2) * step;
+					tmpCell[count] = mid;
+					tmpPartner[count++] = mid + across;
+				} else {
+					tmpCell[count] = first + begin*step;
+					tmpPartner[count++] = first + begin*step + across;
+					tmpCell[count] = first + end*step;
+					tmpPartner[count++] = first + end*step + across;
+				}
+				run = 0;
+			}
+		}
+		return count;
+	}
+	/**
+	 * Position of vertex idx within cluster c.
+	 */
+	private int local(int c, int idx) {
+		int x0 = (c % clustersX) * clusterSize, y0 = (c / clustersX) * clusterSize;
+		int cw = Math.min(clusterSize, grid.width - x0);
+		return (idx / grid.width - y0) * cw + idx % grid.width - x0;
+	}
+	/**
+	 * Searches from source without leaving cluster c, writing distances into
+	 * dist and parents into localParent, both by position in the cluster.
+	 * Stops at target if it is not -1, otherwise finds every distance.
+	 */
+	private void localSearch(int c, int source, int target, float[] dist) {
+		int width = grid.width;
+		int x0 = (c % clustersX) * clusterSize, y0 = (c / clustersX) * clusterSize;
+		int cw = Math.min(clusterSize, width - x0), ch = Math.min(clusterSize, grid.height - y0);
+		Arrays.fill(dist, 0, cw*ch, INF);
+		localOpen.clear();
+		int t = target >= 0 ? local(c, target) : -1;
+		int tx = t % cw, ty = t / cw;
+		int s = local(c, source);
+		dist[s] = 0.0f;
+		localParent[s] = -1;
+		localOpen.add(s, 0.0f);
+		while (!localOpen.isEmpty()) {
+			int u = localOpen.remove();
+			expanded++;
+			if (u == t) return;
+			int ux = u % cw, uy = u / cw;
+			int cell = (y0 + uy)*width + x0 + ux;
+			for (int d=0; d<connectivity.directions; d++) {
+				int nx = ux + Connectivity.DX[d], ny = uy + Connectivity.DY[d];
+				if (nx < 0 || nx >= cw || ny < 0 || ny >= ch) continue;
+				int next = cell + Connectivity.DY[d]*width + Connectivity.DX[d];
+				if (grid.isBlocked(next)) continue;
+				if (d >= 4 && !connectivity.cutsCorners
+						&& (grid.isBlocked(cell + Connectivity.DX[d]) || grid.isBlocked(next - Connectivity.DX[d]))) {
+					continue;
+				}
+				int v = ny*cw + nx;
+				float nd = dist[u] + Connectivity.COST[d];
+				if (localOpen.contains(v)) {
+					if (nd < dist[v]) {
+						dist[v] = nd;
+						localParent[v] = u;
+						localOpen.decreaseKey(v, nd + (t < 0 ? 0 : heuristic.estimate(Math.abs(nx - tx), Math.abs(ny - ty))), -nd);
+					}
+				} else if (dist[v] == INF) {
+					dist[v] = nd;
+					localParent[v] = u;
+					localOpen.add(v, nd + (t < 0 ? 0 : heuristic.estimate(Math.abs(nx - tx), Math.abs(ny - ty))), -nd);
+				}
+			}
+		}
+	}
+	private float h(int idx) {
+		return heuristic.estimate(Math.abs(idx % grid.width - goal % grid.width),
+				Math.abs(idx / grid.width - goal / grid.width));
+	}
+	private int cellOf(int node) {
+		int startNode = entryCount.length * stride;
+		if (node == startNode) return start;
+		if (node == startNode + 1) return goal;
+		return entryCell[node / stride][node % stride];
+	}
+	/**
+	 * Reaches abstract node v from u at cost nd. Ties in F go to the node
+	 * furthest from the start, as there are many on open maps.
+	 */
+	private void relax(int v, float nd, int u) {
+		if (stamp[v] != generation) {
+			stamp[v] = generation;
+			g[v] = nd;
+			parent[v] = u;
+			open.add(v, nd + h(cellOf(v)), -nd);
+		} else if (nd < g[v] && open.contains(v)) {
+			g[v] = nd;
+			parent[v] = u;
+			open.decreaseKey(v, nd + h(cellOf(v)), -nd);
+		}
+	}
+	/**
+	 * Searches the abstract graph for waypoints from _start to _goal,
+	 * returning true if there is a path. Call refine or path for vertices.
+	 */
+	public boolean findPath(int _start, int _goal) {
+		update();
+		start = _start;
+		goal = _goal;
+		expanded = 0;
+		waypointCount = 0;
+		path = null;
+		cost = INF;
+		if (grid.isBlocked(start) || grid.isBlocked(goal)) return false;
+		int sc = clusterOf(start), gc = clusterOf(goal);
+		localSearch(sc, start, -1, startDist);
+		localSearch(gc, goal, -1, goalDist);
+		int startNode = entryCount.length * stride, goalNode = startNode + 1;
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		open.clear();
+		stamp[startNode] = generation;
+		g[startNode] = 0.0f;
+		parent[startNode] = -1;
+		open.add(startNode, h(start));
+		boolean found = false;
+		while (!open.isEmpty()) {
+			int u = open.remove();
+			if (u == goalNode) {
+				found = true;
+				break;
+			}
+			expanded++;
+			if (u == startNode) {
+				int[] cells = entryCell[sc];
+				for (int e=0; e<entryCount[sc]; e++) {
+					float d = startDist[local(sc, cells[e])];
+					if (d < INF) relax(sc*stride + e, d, u);
+				}
+				if (sc == gc && startDist[local(sc, goal)] < INF) relax(goalNode, startDist[local(sc, goal)], u);
+				continue;
+			}
+			int c = u / stride, e = u % stride;
+			int cell = entryCell[c][e];
+			int partner = entryPartner[c][e];
+			int pc = clusterOf(partner);
+			int[] pcells = entryCell[pc];
+			for (int f=0; f<entryCount[pc]; f++) {
+				if (pcells[f] == partner && entryPartner[pc][f] == cell) {
+					relax(pc*stride + f, g[u] + 1.0f, u);
+					break;
+				}
+			}
+			int k = entryCount[c];
+			float[] dist = entryDist[c];
+			for (int j=0; j<k; j++) {
+				if (j != e && dist[e*k + j] < INF) relax(c*stride + j, g[u] + dist[e*k + j], u);
+			}
+			if (c == gc && goalDist[local(gc, cell)] < INF) relax(goalNode, g[u] + goalDist[local(gc, cell)], u);
+		}
+		if (found) {
+			cost = g[goalNode];
+			for (int v=goalNode; v!=-1; v=parent[v]) {
+				int cell = cellOf(v);
+				if (waypointCount > 0 && waypoints[waypointCount-1] == cell) continue;
+				if (waypointCount == waypoints.length) waypoints = Arrays.copyOf(waypoints, waypointCount*2);
+				waypoints[waypointCount++] = cell;
+			}
+			for (int i=0, j=waypointCount-1; i<j; i++, j--) {
+				int tmp = waypoints[i];
+				waypoints[i] = waypoints[j];
+				waypoints[j] = tmp;
+			}
+			return true;
+		}
+		//with corner cutting, a diagonal squeeze across a border has no entrance
+		if (connectivity.directions == 8 && connectivity.cutsCorners) return searchFallback();
+		return false;
+	}
+	/**
+	 * Plain A* over the whole grid, for paths the abstract graph can't see.
+	 */
+	private boolean searchFallback() {
+		if (fallback == null) fallback = new AStarSearch(grid);
+		fallback.setConnectivity(connectivity);
+		fallback.init(start, goal);
+		boolean found = fallback.runAStar();
+		expanded += fallback.expanded;
+		if (!found) return false;
+		int[] path = fallback.path();
+		waypoints = path;
+		waypointCount = path.length;
+		cost = fallback.state.G[goal];
+		return true;
+	}
+	/**
+	 * Number of legs between waypoints in the last path found.
+	 */
+	public int legs() {
+		return Math.max(0, waypointCount - 1);
+	}
+	/**
+	 * Abstract path of the last findPath: start, the entrances it crosses
+	 * clusters at, then goal.
+	 */
+	public int[] waypoints() {
+		return Arrays.copyOf(waypoints, waypointCount);
+	}
+	/**
+	 * Vertices of one leg, after its first waypoint up to and including the
+	 * next, found by a search inside the cluster the leg lies in.
+	 */
+	public int[] refine(int leg) {
+		int a = waypoints[leg], b = waypoints[leg+1];
+		int dx = Math.abs(a % grid.width - b % grid.width), dy = Math.abs(a / grid.width - b / grid.width);
+		if (dx + dy == 1 || (dx == 1 && dy == 1 && connectivity.cutsCorners && connectivity.directions == 8)) {
+			return new int[] {b};//across a border, or a fallback path which is already complete
+		}
+		int c = clusterOf(a);
+		localSearch(c, a, b, localG);
+		int x0 = (c % clustersX) * clusterSize, y0 = (c / clustersX) * clusterSize;
+		int cw = Math.min(clusterSize, grid.width - x0);
+		int length = 0;
+		for (int v=local(c, b); localParent[v] != -1; v=localParent[v]) length++;
+		int[] cells = new int[length];
+		for (int v=local(c, b); localParent[v] != -1; v=localParent[v]) {
+			cells[--length] = (y0 + v / cw)*grid.width + x0 + v % cw;
+		}
+		return cells;
+	}
+	/**
+	 * The whole path of the last findPath from start to goal, or null.
+	 * Every leg is refined on the first call; later calls return the same
+	 * array until the next findPath.
+	 */
+	public int[] path() {
+		if (waypointCount == 0) return null;
+		if (path != null) return path;
+		int[] cells = new int[64];
+		int length = 0;
+		cells[length++] = waypoints[0];
+		for (int leg=0; leg<legs(); leg++) {
+			int[] legCells = refine(leg);
+			if (length + legCells.length > cells.length) cells = Arrays.copyOf(cells, Math.max(cells.length*2, length + legCells.length));
+			System.arraycopy(legCells, 0, cells, length, legCells.length);
+			length += legCells.length;
+		}
+		path = Arrays.copyOf(cells, length);
+		return path;
+	}
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of vertex indices which records where each vertex sits
+ * in the heap. Membership checks are O(1), and add, remove and
+ * decrease-key are O(log n).
+ * Vertices are ordered by a primary key, then by a secondary key when
+ * the primary keys are equal.
+ * @author Michael A. Long
+ *
+ */
+public class IndexedHeap implements OpenList {
+	private int[] heap;//vertex at each heap slot
+	private double[] keys;//primary key of the vertex at each heap slot
+	private double[] keys2;//secondary key of the vertex at each heap slot
+	private final int[] pos;//heap slot of each vertex, -1 if not queued
+	private int size;
+
+	public IndexedHeap(int vertices) {
+		heap = new int[64];
+		keys = new double[64];
+		keys2 = new double[64];
+		pos = new int[vertices];
+		Arrays.fill(pos, -1);
+		size = 0;
+	}
+	@Override
+	public void add(int idx, double f) {
+		add(idx, f, 0.0);
+	}
+	@Override
+	public void add(int idx, double k1, double k2) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size*2);
+			keys = Arrays.copyOf(keys, size*2);
+			keys2 = Arrays.copyOf(keys2, size*2);
+		}
+		siftUp(size++, idx, k1, k2);
+	}
+	@Override
+	public void decreaseKey(int idx, double f) {
+		siftUp(pos[idx], idx, f, 0.0);
+	}
+	@Override
+	public void decreaseKey(int idx, double k1, double k2) {
+		siftUp(pos[idx], idx, k1, k2);
+	}
+	/**
+	 * Gives a queued vertex new keys, which may be higher or lower.
+	 */
+	public void changeKey(int idx, double k1, double k2) {
+		int i = pos[idx];
+		if (k1 < keys[i] || (k1 == keys[i] && k2 < keys2[i])) siftUp(i, idx, k1, k2);
+		else siftDown(i, idx, k1, k2);
+	}
+	@Override
+	public int remove() {
+		int top = heap[0];
+		pos[top] = -1;
+		size--;
+		if (size > 0) {
+			siftDown(0, heap[size], keys[size], keys2[size]);
+		}
+		return top;
+	}
+	/**
+	 * Removes a vertex from anywhere in the heap, if it is queued.
+	 */
+	public void remove(int idx) {
+		int i = pos[idx];
+		if (i < 0) return;
+		pos[idx] = -1;
+		size--;
+		if (i < size) {
+			int last = heap[size];
+			double k1 = keys[size];
+			double k2 = keys2[size];
+			siftDown(i, last, k1, k2);
+			if (heap[i] == last) siftUp(i, last, k1, k2);
+		}
+	}
+	/**
+	 * Vertex which remove() would return next.
+	 */
+	public int peek() {
+		return heap[0];
+	}
+	/**
+	 * Primary key of the vertex which remove() would return next.
+	 */
+	public double peekKey() {
+		return keys[0];
+	}
+	/**
+	 * Secondary key of the vertex which remove() would return next.
+	 */
+	public double peekKey2() {
+		return keys2[0];
+	}
+	@Override
+	public boolean contains(int idx) {
+		return pos[idx] >= 0;
+	}
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	@Override
+	public int size() {
+		return size;
+	}
+	@Override
+	public int[] toArray() {
+		return Arrays.copyOf(heap, size);
+	}
+	/**
+	 * Only touches the vertices currently queued.
+	 */
+	@Override
+	public void clear() {
+		for (int i=0; i<size; i++) pos[heap[i]] = -1;
+		size = 0;
+	}
+	/**
+	 * Moves a hole at slot i up until keys (k1,k2) fit, then places idx there.
+	 */
+	private void siftUp(int i, int idx, double k1, double k2) {
+		while (i > 0) {
+			int p = (i - 1) >>> 1;
+			if (keys[p] < k1 || (keys[p] == k1 && keys2[p] <= k2)) break;
+			heap[i] = heap[p];
+			keys[i] = keys[p];
+			keys2[i] = keys2[p];
+			pos[heap[i]] = i;
+			i = p;
+		}
+		heap[i] = idx;
+		keys[i] = k1;
+		keys2[i] = k2;
+		pos[idx] = i;
+	}
+	/**
+	 * Moves a hole at slot i down until keys (k1,k2) fit, then places idx there.
+	 */
+	private void siftDown(int i, int idx, double k1, double k2) {
+		int half = size >>> 1;
+		while (i < half) {
+			int c = 2*i + 1;
+			if (c+1 < size && (keys[c+1] < keys[c] || (keys[c+1] == keys[c] && keys2[c+1] < keys2[c]))) c++;
+			if (k1 < keys[c] || (k1 == keys[c] && k2 <= keys2[c])) break;
+			heap[i] = heap[c];
+			keys[i] = keys[c];
+			keys2[i] = keys2[c];
+			pos[heap[i]] = i;
+			i = c;
+		}
+		heap[i] = idx;
+		keys[i] = k1;
+		keys2[i] = k2;
+		pos[idx] = i;
+	}
+}
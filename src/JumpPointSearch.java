@@ -0,0 +1,239 @@
+/**
+ * Jump Point Search over a Grid. Runs A* on jump points only:
+ * from each vertex it scans straight and diagonal lines, skipping the
+ * vertices whose shortest paths are symmetric with ones already covered.
+ * Moves follow EIGHT_NO_CORNER_CUTTING rules with octile costs.
+ *
+ * Uses the SearchState and open list of an AStarSearch, after its init.
+ * Once the goal is found, the vertices between jump points are given
+ * parents too, so the parent chain is a normal step-by-step path.
+ * @author Michael A. Long
+ *
+ */
+public class JumpPointSearch {
+	private final AStarSearch search;
+	private final Grid grid;
+	private final int width;
+	private final int height;
+	private JumpTable table;//JPS+ jump distances, built on first use
+	private final int[] dirs = new int[8];//directions to scan from the current vertex
+	private int goalX;
+	private int goalY;
+
+	public JumpPointSearch(AStarSearch _search) {
+		search = _search;
+		grid = search.grid;
+		width = grid.width;
+		height = grid.height;
+	}
+	/**
+	 * Shares an already built table, e.g. between threads searching
+	 * the same Grid. Replaced if it goes stale.
+	 */
+	public void setJumpTable(JumpTable _table) {
+		table = _table;
+	}
+	/**
+	 * Runs the search, returning true if the end vertex was reached.
+	 * @param plus use the precomputed JPS+ jump distances instead of scanning
+	 */
+	public boolean run(boolean plus) {
+		SearchState state = search.state;
+		OpenList open = search.open;
+		int goal = search.goal;
+		goalX = grid.xOf(goal);
+		goalY = grid.yOf(goal);
+		if (plus && (table == null || table.grid != grid || !table.isCurrent())) {
+			table = new JumpTable(grid);
+		}
+		int[] stamp = state.stamp;
+		int generation = state.generation;
+		byte[] status = state.status;
+		float[] G = state.G;
+		float[] H = state.H;
+		int[] parent = state.parent;
+		while (!open.isEmpty()) {
+			int cur = open.remove();
+			search.expanded++;
+			if (cur == goal) {
+				fillPath(goal);
+				return true;
+			}
+			status[cur] = SearchState.CLOSED;
+			int x = cur % width;
+			int y = cur / width;
+			int count = prunedDirections(cur, x, y);
+			for (int i=0; i<count; i++) {
+				int d = dirs[i];
+				int steps = plus ? jumpPlus(cur, x, y, d) : jump(x, y, d);
+				if (steps <= 0) continue;
+				int n = cur + steps*(Connectivity.DY[d]*width + Connectivity.DX[d]);
+				float dist = G[cur] + steps*Connectivity.COST[d];
+				if (stamp[n] != generation) {
+					state.touch(n);
+					H[n] = search.heuristic(n);
+				}
+				if (status[n] == SearchState.UNSEEN) {
+					status[n] = SearchState.OPEN;
+					G[n] = dist;
+					parent[n] = cur;
+					open.add(n, dist + H[n]);
+				} else if (dist < G[n]) {
+					G[n] = dist;
+					parent[n] = cur;
+					if (status[n] == SearchState.CLOSED) {
+						status[n] = SearchState.OPEN;
+						open.add(n, dist + H[n]);
+					} else {
+						open.decreaseKey(n, dist + H[n]);
+					}
+				}
+			}
+		}
+		return false;
+	}
+	//move index in the Connectivity tables, by (dy+1)*3 + (dx+1)
+	private static final int[] DIRECTION = {4, 0, 5, 2, -1, 3, 6, 1, 7};
+	
+	private boolean walkable(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height && !grid.isBlocked(y*width + x);
+	}
+	private static int direction(int dx, int dy) {
+		return DIRECTION[(dy+1)*3 + (dx+1)];
+	}
+	/**
+	 * Fills dirs with the directions worth scanning from (x,y), given the
+	 * direction we arrived from. Returns how many there are.
+	 */
+	private int prunedDirections(int cur, int x, int y) {
+		int count = 0;
+		int par = search.state.parent[cur];
+		if (par == -1) {//start vertex, scan everything reachable
+			for (int d=0; d<8; d++) {
+				int dx = Connectivity.DX[d];
+				int dy = Connectivity.DY[d];
+				if (!walkable(x+dx, y+dy)) continue;
+				if (d >= 4 && (!walkable(x+dx, y) || !walkable(x, y+dy))) continue;
+				dirs[count++] = d;
+			}
+			return count;
+		}
+		int dx = Integer.signum(x - par % width);
+		int dy = Integer.signum(y - par / width);
+		if (dx != 0 && dy != 0) {
+			boolean vert = walkable(x, y+dy);
+			boolean horiz = walkable(x+dx, y);
+			if (vert) dirs[count++] = direction(0, dy);
+			if (horiz) dirs[count++] = direction(dx, 0);
+			if (vert && horiz && walkable(x+dx, y+dy)) dirs[count++] = direction(dx, dy);
+		} else if (dx != 0) {
+			boolean next = walkable(x+dx, y);
+			boolean below = walkable(x, y+1);
+			boolean above = walkable(x, y-1);
+			if (next) {
+				dirs[count++] = direction(dx, 0);
+				if (below && walkable(x+dx, y+1)) dirs[count++] = direction(dx, 1);
+				if (above && walkable(x+dx, y-1)) dirs[count++] = direction(dx, -1);
+			}
+			if (below) dirs[count++] = direction(0, 1);
+			if (above) dirs[count++] = direction(0, -1);
+		} else {
+			boolean next = walkable(x, y+dy);
+			boolean right = walkable(x+1, y);
+			boolean left = walkable(x-1, y);
+			if (next) {
+				dirs[count++] = direction(0, dy);
+				if (right && walkable(x+1, y+dy)) dirs[count++] = direction(1, dy);
+				if (left && walkable(x-1, y+dy)) dirs[count++] = direction(-1, dy);
+			}
+			if (right) dirs[count++] = direction(1, 0);
+			if (left) dirs[count++] = direction(-1, 0);
+		}
+		return count;
+	}
+	/**
+	 * Scans from (x,y) in direction d, returning the number of steps
+	 * to the next jump point, or 0 if the scan hits a wall first.
+	 */
+	private int jump(int x, int y, int d) {
+		int dx = Connectivity.DX[d];
+		int dy = Connectivity.DY[d];
+		if (d < 4) return jumpStraight(x, y, dx, dy);
+		int steps = 0;
+		while (true) {
+			x += dx;
+			y += dy;
+			steps++;
+			if (!walkable(x, y)) return 0;
+			if (x == goalX && y == goalY) return steps;
+			if (jumpStraight(x, y, dx, 0) > 0 || jumpStraight(x, y, 0, dy) > 0) return steps;
+			if (!walkable(x+dx, y) || !walkable(x, y+dy)) return 0;
+		}
+	}
+	private int jumpStraight(int x, int y, int dx, int dy) {
+		int steps = 0;
+		while (true) {
+			x += dx;
+			y += dy;
+			steps++;
+			if (!walkable(x, y)) return 0;
+			if (x == goalX && y == goalY) return steps;
+			if (dx != 0) {
+				if ((walkable(x, y-1) && !walkable(x-dx, y-1))
+						|| (walkable(x, y+1) && !walkable(x-dx, y+1))) return steps;
+			} else {
+				if ((walkable(x-1, y) && !walkable(x-1, y-dy))
+						|| (walkable(x+1, y) && !walkable(x+1, y-dy))) return steps;
+			}
+		}
+	}
+	/**
+	 * JPS+ version of jump(), reading the distance from the table.
+	 * Stops early where the goal, or the line through it, is crossed.
+	 */
+	private int jumpPlus(int cur, int x, int y, int d) {
+		int dist = table.dist[d][cur];
+		int dx = Connectivity.DX[d];
+		int dy = Connectivity.DY[d];
+		int absDist = Math.abs(dist);
+		int xdiff = goalX - x;
+		int ydiff = goalY - y;
+		if (d < 4) {
+			if (dx != 0 && ydiff == 0 && Integer.signum(xdiff) == dx && Math.abs(xdiff) <= absDist) {
+				return Math.abs(xdiff);
+			}
+			if (dy != 0 && xdiff == 0 && Integer.signum(ydiff) == dy && Math.abs(ydiff) <= absDist) {
+				return Math.abs(ydiff);
+			}
+		} else if (Integer.signum(xdiff) == dx && Integer.signum(ydiff) == dy) {
+			int minDiff = Math.min(Math.abs(xdiff), Math.abs(ydiff));
+			if (minDiff <= absDist) return minDiff;
+		}
+		return dist > 0 ? dist : 0;
+	}
+	/**
+	 * Gives every vertex between consecutive jump points on the path
+	 * a parent and G cost, so the path can be walked one step at a time.
+	 */
+	private void fillPath(int goal) {
+		SearchState state = search.state;
+		int cur = goal;
+		while (state.parent[cur] != -1) {
+			int par = state.parent[cur];
+			int dx = Integer.signum(par % width - cur % width);
+			int dy = Integer.signum(par / width - cur / width);
+			int step = dy*width + dx;
+			float stepCost = (dx != 0 && dy != 0) ? Connectivity.SQRT2 : 1.0f;
+			int prev = cur;
+			for (int n = cur + step; n != par; n += step) {
+				if (!state.isCurrent(n)) state.touch(n);
+				state.parent[prev] = n;
+				state.G[n] = state.G[prev] - stepCost;
+				state.H[n] = search.heuristic(n);
+				prev = n;
+			}
+			state.parent[prev] = par;
+			cur = par;
+		}
+	}
+}
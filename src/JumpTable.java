@@ -0,0 +1,104 @@
+/**
+ * Precomputed jump distances for JPS+.
+ * For every open vertex and each of the 8 moves (in Connectivity table order)
+ * dist holds how far a Jump Point Search scan in that direction would go:
+ * a positive value is the number of steps to the next jump point, and zero
+ * or a negative value is minus the number of steps before a wall.
+ * Uses the EIGHT_NO_CORNER_CUTTING movement rules.
+ * @author Michael A. Long
+ *
+ */
+public class JumpTable {
+	public final int[][] dist;
+	public final int version;//Grid version the table was built from
+	public final Grid grid;
+	private final int width;
+	private final int height;
+
+	public JumpTable(Grid _grid) {
+		grid = _grid;
+		width = grid.width;
+		height = grid.height;
+		version = grid.version;
+		dist = new int[8][grid.size()];
+		for (int d=0; d<4; d++) buildStraight(d);
+		for (int d=4; d<8; d++) buildDiagonal(d);
+	}
+	/**
+	 * True if the table still matches the grid.
+	 */
+	public boolean isCurrent() {
+		return version == grid.version;
+	}
+	private boolean walkable(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height && !grid.isBlocked(y*width + x);
+	}
+	/**
+	 * True if a straight scan moving (dx,dy) has to stop at (x,y),
+	 * because a vertex beside it can't be reached any better another way.
+	 */
+	boolean isStraightJumpPoint(int x, int y, int dx, int dy) {
+		if (dx != 0) {
+			return (walkable(x, y-1) && !walkable(x-dx, y-1))
+					|| (walkable(x, y+1) && !walkable(x-dx, y+1));
+		} else {
+			return (walkable(x-1, y) && !walkable(x-1, y-dy))
+					|| (walkable(x+1, y) && !walkable(x+1, y-dy));
+		}
+	}
+	/**
+	 * Visits vertices against the direction of travel, so the next vertex
+	 * along is always filled in first.
+	 */
+	private void buildStraight(int d) {
+		int dx = Connectivity.DX[d];
+		int dy = Connectivity.DY[d];
+		int[] table = dist[d];
+		for (int i=0; i<height; i++) {
+			int y = dy > 0 ? height-1-i : i;
+			for (int j=0; j<width; j++) {
+				int x = dx > 0 ? width-1-j : j;
+				int idx = y*width + x;
+				if (grid.isBlocked(idx)) continue;
+				int nx = x + dx;
+				int ny = y + dy;
+				if (!walkable(nx, ny)) {
+					table[idx] = 0;
+				} else if (isStraightJumpPoint(nx, ny, dx, dy)) {
+					table[idx] = 1;
+				} else {
+					int next = table[ny*width + nx];
+					table[idx] = next > 0 ? next + 1 : next - 1;
+				}
+			}
+		}
+	}
+	private void buildDiagonal(int d) {
+		int dx = Connectivity.DX[d];
+		int dy = Connectivity.DY[d];
+		int[] horizontal = dist[dx > 0 ? 3 : 2];
+		int[] vertical = dist[dy > 0 ? 1 : 0];
+		int[] table = dist[d];
+		for (int i=0; i<height; i++) {
+			int y = dy > 0 ? height-1-i : i;
+			for (int j=0; j<width; j++) {
+				int x = dx > 0 ? width-1-j : j;
+				int idx = y*width + x;
+				if (grid.isBlocked(idx)) continue;
+				int nx = x + dx;
+				int ny = y + dy;
+				if (!walkable(nx, ny) || !walkable(nx, y) || !walkable(x, ny)) {
+					table[idx] = 0;
+					continue;
+				}
+				int nidx = ny*width + nx;
+				if (horizontal[nidx] > 0 || vertical[nidx] > 0) {
+					table[idx] = 1;
+				} else {
+					int next = table[nidx];
+					table[idx] = next > 0 ? next + 1 : next - 1;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,339 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ALT heuristic (A*, landmarks, triangle inequality). Holds the exact
+ * distance between every vertex and each of a few landmark vertices, which
+ * bound the distance between any two vertices v and t from below:
+ * d(v,t) >= |d(L,v) - d(L,t)| for every landmark L. On mazes, where the
+ * straight line heuristics badly underestimate, the largest of these
+ * bounds is often close to the real distance.
+ *
+ * Landmarks are spread evenly around the edge of the map, so most vertices
+ * lie between two of them. The distances from each landmark are found by
+ * Dijkstra's algorithm on a thread of its own. They are kept as whole
+ * 1/1024ths (Connectivity.FIXED_UNITS), one int per vertex per landmark,
+ * with each vertex's landmarks side by side so an estimate reads one cache
+ * line. With terrain costs a move is counted at the cheaper of its two
+ * ends, so distances are the same both ways and never exceed real costs.
+ *
+ * Built for one Grid version and Connectivity, like JumpTable. save and
+ * load keep them in a file, which only loads for the same map.
+ * @author Michael A. Long
+ *
+ */
+public class Landmarks {
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	private static final int MAX_DISTANCE = UNREACHABLE - 1;//longer distances are cut to this, which still bounds from below
+	private static final int MAGIC = 0x544c4141;//"AALT" read little-endian
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final long MAX_ENTRIES = Integer.MAX_VALUE - 8;//largest int[] the JVM will allocate
+
+	public final Grid grid;
+	public final Connectivity connectivity;
+	public final int[] vertices;//the landmarks
+	public final int count;
+	public final int version;//Grid version the distances were found at
+	private final int[] dist;//dist[v*count + i] is the distance between vertex v and landmark i
+	public long buildNanos;//time taken to find the distances, or to load them
+
+	/**
+	 * Picks up to count landmarks and finds their distances, spread across
+	 * threads worker threads.
+	 */
+	public Landmarks(Grid _grid, Connectivity c, int count, int threads) {
+		long t0 = System.nanoTime();
+		grid = _grid;
+		connectivity = c;
+		version = grid.version;
+		vertices = pick(grid, count);
+		this.count = vertices.length;
+		dist = new int[tableSize(grid, this.count)];
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int i=0; i<this.count; i++) {
+				final int landmark = i;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						int[] d = distancesFrom(vertices[landmark]);
+						for (int v=0; v<d.length; v++) dist[v*Landmarks.this.count + landmark] = d[v];
+						return null;
+					}
+				});
+			}
+			for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while finding landmark distances", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("finding landmark distances failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		buildNanos = System.nanoTime() - t0;
+	}
+	private Landmarks(Grid _grid, Connectivity c, int[] _vertices, int[] _dist) {
+		grid = _grid;
+		connectivity = c;
+		version = grid.version;
+		vertices = _vertices;
+		count = vertices.length;
+		dist = _dist;
+	}
+	/**
+	 * Entries in the distance table for count landmarks on grid, which must
+	 * fit one int array: 8 landmarks on a 16384x16384 grid already don't.
+	 */
+	private static int tableSize(Grid grid, int count) {
+		long size = (long)grid.size() * count;
+		if (size > MAX_ENTRIES) {
+			throw new IllegalArgumentException(count+" landmarks on "+grid.width+"x"+grid.height+" need "+size
+					+" distances, more than one table holds; use at most "+MAX_ENTRIES / grid.size()+" landmarks");
+		}
+		return (int)size;
+	}
+	/**
+	 * True if the distances still match the grid.
+	 */
+	public boolean isCurrent() {
+		return version == grid.version;
+	}
+	/**
+	 * Bytes held by the distance table.
+	 */
+	public long bytes() {
+		return 4L * dist.length;
+	}
+	/**
+	 * Distance between vertex v and landmark i in whole 1/1024ths, or UNREACHABLE.
+	 */
+	public int distance(int v, int i) {
+		return dist[v*count + i];
+	}
+	/**
+	 * The largest triangle inequality bound on the distance from v to t,
+	 * 0 if no landmark reaches both.
+	 */
+	public float estimate(int v, int t) {
+		return estimateUnits(v, t) / 1024.0f;
+	}
+	/**
+	 * estimate in whole 1/1024ths.
+	 */
+	public int estimateUnits(int v, int t) {
+		int best = 0;
+		int vi = v*count, ti = t*count;
+		for (int i=0; i<count; i++) {
+			int a = dist[vi + i], b = dist[ti + i];
+			if (a == UNREACHABLE || b == UNREACHABLE) continue;
+			int d = a > b ? a - b : b - a;
+			if (d > best) best = d;
+		}
+		return best;
+	}
+	/**
+	 * count points evenly spaced around the edge of the grid, each moved to
+	 * the nearest open vertex. Points which land on the same vertex count once.
+	 */
+	private static int[] pick(Grid grid, int count) {
+		int w = grid.width, h = grid.height;
+		int perimeter = Math.max(1, 2*(w + h) - 4);
+		int[] picked = new int[count];
+		int n = 0;
+		for (int i=0; i<count; i++) {
+			long p = (long)i * perimeter / count;//clockwise from the top left
+			int x, y;
+			if (p < w) {
+				x = (int)p; y = 0;
+			} else if (p < w + h - 1) {
+				x = w - 1; y = (int)(p - w + 1);
+			} else if (p < 2*w + h - 2) {
+				x = (int)(2*w + h - 3 - p); y = h - 1;
+			} else {
+				x = 0; y = (int)(perimeter - p);
+			}
+			int v = nearestOpen(grid, x, y);
+			boolean seen = v == -1;
+			for (int j=0; j<n; j++) {
+				if (picked[j] == v) seen = true;
+			}
+			if (!seen) picked[n++] = v;
+		}
+		return Arrays.copyOf(picked, n);
+	}
+	/**
+	 * Open vertex nearest (x,y), searching squares of growing radius, or -1.
+	 */
+	private static int nearestOpen(Grid grid, int x, int y) {
+		int radii = Math.max(grid.width, grid.height);
+		for (int r=0; r<radii; r++) {
+			for (int yy=Math.max(0, y-r); yy<=Math.min(grid.height-1, y+r); yy++) {
+				if (yy == y-r || yy == y+r) {//top or bottom side of the square
+					for (int xx=Math.max(0, x-r); xx<=Math.min(grid.width-1, x+r); xx++) {
+						if (!grid.isBlocked(xx, yy)) return grid.index(xx, yy);
+					}
+				} else {
+					if (x-r >= 0 && !grid.isBlocked(x-r, yy)) return grid.index(x-r, yy);
+					if (x+r < grid.width && !grid.isBlocked(x+r, yy)) return grid.index(x+r, yy);
+				}
+			}
+		}
+		return -1;
+	}
+	/**
+	 * Dijkstra's algorithm from source over the whole grid.
+	 */
+	private int[] distancesFrom(int source) {
+		int width = grid.width, height = grid.height;
+		int[] d = new int[grid.size()];
+		Arrays.fill(d, UNREACHABLE);
+		int directions = connectivity.directions;
+		boolean cutsCorners = connectivity.cutsCorners;
+		int[] offset = connectivity.offsets(width);
+		int[] units = Connectivity.FIXED_UNITS;
+		boolean weighted = grid.hasCosts();
+		LongHeap heap = new LongHeap();
+		d[source] = 0;
+		heap.add(source);
+		while (!heap.isEmpty()) {
+			long top = heap.remove();
+			int cur = (int)top;
+			int dc = (int)(top >>> 32);
+			if (dc != d[cur]) continue;//already reached more cheaply
+			int curx = cur % width, cury = cur / width;
+			for (int dir=0; dir<directions; dir++) {
+				int nx = curx + Connectivity.DX[dir], ny = cury + Connectivity.DY[dir];
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+				int n = cur + offset[dir];
+				if (grid.isBlocked(n)) continue;
+				if (dir >= 4 && !cutsCorners) {
+					if (grid.isBlocked(cur + Connectivity.DX[dir]) || grid.isBlocked(n - Connectivity.DX[dir])) continue;
+				}
+				long step = weighted ? (long)units[dir] * Math.min(grid.cost(cur), grid.cost(n)) : units[dir];
+				int nd = (int)Math.min(MAX_DISTANCE, dc + step);
+				if (nd >= d[n]) continue;
+				d[n] = nd;
+				heap.add((long)nd << 32 | n);
+			}
+		}
+		return d;
+	}
+	/**
+	 * Hash of the grid's blocked bits and costs, so saved distances are
+	 * only loaded for the map they were found on.
+	 */
+	static long checksum(Grid grid) {
+		long h = 0xcbf29ce484222325L;
+		int words = (grid.size() + 63) >>> 6;
+		for (int i=0; i<words; i++) h = (h ^ grid.word(i)) * 0x100000001b3L;
+		if (grid.hasCosts()) {
+			for (int i=0; i<grid.size(); i++) h = (h ^ grid.cost(i)) * 0x100000001b3L;
+		}
+		return h;
+	}
+	/**
+	 * Writes the landmarks and distances, all little-endian:
+	 *   header    32 bytes: magic "AALT", format version, width, height,
+	 *             connectivity ordinal, landmark count, grid checksum (long)
+	 *   landmarks count ints
+	 *   distances width*height*count ints, each vertex's landmarks together
+	 */
+	public void save(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(grid.width).putInt(grid.height)
+					.putInt(connectivity.ordinal()).putInt(count).putLong(checksum(grid));
+			for (int v : vertices) buf.putInt(v);
+			buf.flip();
+			channel.write(buf);
+			for (int i=0; i<dist.length; ) {
+				buf.clear();
+				int n = Math.min(dist.length - i, buf.capacity() / 4);
+				buf.asIntBuffer().put(dist, i, n);
+				buf.limit(n * 4);
+				while (buf.hasRemaining()) channel.write(buf);
+				i += n;
+			}
+		} finally {
+			raf.close();
+		}
+	}
+	/**
+	 * Reads landmarks saved for grid, which must not have changed since.
+	 */
+	public static Landmarks load(File file, Grid grid) throws IOException {
+		long t0 = System.nanoTime();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buf.limit(HEADER_SIZE);
+			readFully(channel, buf);
+			if (buf.getInt() != MAGIC) throw new IOException(file+" is not a landmark file");
+			int format = buf.getInt();
+			if (format != FORMAT_VERSION) throw new IOException(file+" has unsupported format version "+format);
+			int width = buf.getInt(), height = buf.getInt();
+			int connectivity = buf.getInt(), count = buf.getInt();
+			long checksum = buf.getLong();
+			if (width != grid.width || height != grid.height || checksum != checksum(grid)) {
+				throw new IOException(file+" was saved for a different map");
+			}
+			if (connectivity < 0 || connectivity >= Connectivity.values().length || count < 0) {
+				throw new IOException(file+" has a bad header");
+			}
+			if (channel.size() != HEADER_SIZE + 4L*count + 4L*count*grid.size()) throw new IOException(file+" is truncated");
+			int[] vertices = new int[count];
+			buf.clear();
+			buf.limit(4*count);
+			readFully(channel, buf);
+			buf.asIntBuffer().get(vertices);
+			int[] dist;
+			try {
+				dist = new int[tableSize(grid, count)];
+			} catch (IllegalArgumentException e) {
+				throw new IOException(file+": "+e.getMessage());
+			}
+			for (int i=0; i<dist.length; ) {
+				buf.clear();
+				int n = Math.min(dist.length - i, buf.capacity() / 4);
+				buf.limit(n * 4);
+				readFully(channel, buf);
+				buf.asIntBuffer().get(dist, i, n);
+				i += n;
+			}
+			Landmarks l = new Landmarks(grid, Connectivity.values()[connectivity], vertices, dist);
+			l.buildNanos = System.nanoTime() - t0;
+			return l;
+		} finally {
+			raf.close();
+		}
+	}
+	private static void readFully(FileChannel channel, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			if (channel.read(buf) < 0) throw new IOException("unexpected end of file");
+		}
+		buf.flip();
+	}
+	@Override
+	public String toString() {
+		return "Landmarks "+count+" on "+grid.width+"x"+grid.height+" "+connectivity
+				+", "+buildNanos / 1000000+"ms, "+String.format("%.1f", bytes() / 1048576.0)+"MB";
+	}
+}
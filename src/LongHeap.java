@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of longs, for Dijkstra's algorithm over the whole grid
+ * with entries packed as (distance << 32 | vertex). There is no
+ * decrease-key: a vertex is added again when its distance drops, and the
+ * stale entries are skipped as they come out.
+ * @author Michael A. Long
+ *
+ */
+public class LongHeap {
+	private long[] heap = new long[64];
+	private int size;
+
+	public void add(long entry) {
+		if (size == heap.length) heap = Arrays.copyOf(heap, size*2);
+		int i = size++;
+		while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+			heap[i] = heap[(i - 1) >>> 1];
+			i = (i - 1) >>> 1;
+		}
+		heap[i] = entry;
+	}
+	/**
+	 * Removes and returns the smallest entry.
+	 */
+	public long remove() {
+		long top = heap[0];
+		long last = heap[--size];
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int c = 2*i + 1;
+			if (c + 1 < size && heap[c+1] < heap[c]) c++;
+			if (last <= heap[c]) break;
+			heap[i] = heap[c];
+			i = c;
+		}
+		heap[i] = last;
+		return top;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public int size() {
+		return size;
+	}
+	public void clear() {
+		size = 0;
+	}
+}
@@ -6,6 +6,7 @@ import org.newdawn.slick.SlickException;
 
 /**
  * Main class for A* visualization.
+ * Optional arguments: map width and height, 27 by 27 by default.
  * @author Michael A. Long
  */
 public class Main {
@@ -15,7 +16,8 @@ public class Main {
 				, LWJGLUtil.getPlatformName()).getAbsolutePath());
 		
 		try {
-			AppGameContainer app = new AppGameContainer(new Demo());
+			Demo demo = args.length >= 2 ? new Demo(Integer.parseInt(args[0]), Integer.parseInt(args[1])) : new Demo();
+			AppGameContainer app = new AppGameContainer(demo);
 			app.setDisplayMode(745, 600, false);
 			app.setTargetFrameRate(60);
 			app.start();
@@ -0,0 +1,201 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact binary map file, all values little-endian:
+ *   header    32 bytes: magic "AGRD", format version, width, height,
+ *             flags (1 = has a cost plane, 2 = tiled), tile size shift
+ *             (tiled maps only), 8 bytes reserved
+ *   blocked   (width*height + 63) / 64 longs, bit (idx & 63) of long
+ *             (idx >>> 6) set if vertex idx = y*width+x is blocked
+ *   costs     width*height unsigned bytes, if flagged: the cost of moving
+ *             onto each vertex, 0 meaning the normal cost of 1
+ *
+ * Tiled maps store the bits tile by tile instead, and are opened with
+ * TiledGrid. Other maps are opened by memory mapping the file, so no
+ * per-vertex work is done at load time whatever the size of the map.
+ * RowWriter writes a map a row at a time, for maps too big to hold.
+ * @author Michael A. Long
+ *
+ */
+public class MapFile {
+	public static final int MAGIC = 0x44524741;//"AGRD" read little-endian
+	public static final int FORMAT_VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+	public static final int FLAG_COSTS = 1;
+	public static final int FLAG_TILED = 2;
+
+	private MapFile() {
+	}
+	/**
+	 * True if file starts with the map file magic number.
+	 */
+	public static boolean isMapFile(File file) throws IOException {
+		return readHeader(file) != null;
+	}
+	/**
+	 * True if file is a tiled map, to be opened with TiledGrid.
+	 */
+	public static boolean isTiled(File file) throws IOException {
+		int[] header = readHeader(file);
+		return header != null && (header[4] & FLAG_TILED) != 0;
+	}
+	/**
+	 * The header's eight ints, or null if file isn't a map file.
+	 */
+	static int[] readHeader(File file) throws IOException {
+		if (file.length() < HEADER_SIZE) return null;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			int[] header = new int[HEADER_SIZE / 4];
+			for (int i=0; i<header.length; i++) header[i] = Integer.reverseBytes(raf.readInt());
+			return header[0] == MAGIC ? header : null;
+		} finally {
+			raf.close();
+		}
+	}
+	/**
+	 * Writes grid to file, with a cost plane if costs isn't null.
+	 */
+	public static void save(Grid grid, byte[] costs, File file) throws IOException {
+		if (costs != null && costs.length != grid.size()) {
+			throw new IllegalArgumentException("cost plane has "+costs.length+" entries, expected "+grid.size());
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(grid.width).putInt(grid.height)
+				.putInt(costs != null ? FLAG_COSTS : 0).putInt(0).putInt(0).putInt(0);
+			int words = (grid.size() + 63) >>> 6;
+			for (int i=0; i<words; i++) {
+				if (buf.remaining() < 8) flush(channel, buf);
+				buf.putLong(grid.word(i));
+			}
+			flush(channel, buf);
+			if (costs != null) channel.write(ByteBuffer.wrap(costs));
+		} finally {
+			raf.close();
+		}
+	}
+	/**
+	 * Writes a map file row by row as a RowSink, holding only a buffer, so
+	 * the map can be bigger than memory. It must have at most
+	 * Integer.MAX_VALUE vertices, which open can index; TiledGrid takes
+	 * bigger maps. Call close after the last row.
+	 */
+	public static class RowWriter implements RowSink {
+		public final int width;
+		public final int height;
+		private final RandomAccessFile raf;
+		private final FileChannel channel;
+		private final ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		private long word;//bits not yet written, the low wordBits of them
+		private int wordBits;
+		private int rows;//rows written so far
+
+		public RowWriter(File file, int _width, int _height) throws IOException {
+			width = _width;
+			height = _height;
+			if ((long)width * height > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(width+"x"+height+" is too big for an untiled map file, use a TiledGrid");
+			}
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0);
+			channel = raf.getChannel();
+			buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(width).putInt(height)
+				.putInt(0).putInt(0).putInt(0).putInt(0);
+		}
+		/**
+		 * Appends the next row, which must be row y.
+		 */
+		@Override
+		public void row(int y, long[] blocked) {
+			if (y != rows) throw new IllegalArgumentException("expected row "+rows+", got "+y);
+			try {
+				for (int x=0; x<width; x+=64) {
+					int n = Math.min(64, width - x);
+					long bits = blocked[x >>> 6];
+					if (n < 64) bits &= (1L << n) - 1;
+					word |= bits << wordBits;
+					if (wordBits + n >= 64) {
+						put(word);
+						word = wordBits == 0 ? 0 : bits >>> (64 - wordBits);
+						wordBits += n - 64;
+					} else {
+						wordBits += n;
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("writing row "+y, e);
+			}
+			rows++;
+		}
+		private void put(long w) throws IOException {
+			if (buf.remaining() < 8) flush(channel, buf);
+			buf.putLong(w);
+		}
+		/**
+		 * Writes out the last bits and closes the file.
+		 */
+		public void close() throws IOException {
+			try {
+				if (rows != height) throw new IOException("wrote "+rows+" of "+height+" rows");
+				if (wordBits > 0) put(word);
+				flush(channel, buf);
+			} finally {
+				raf.close();
+			}
+		}
+	}
+	private static void flush(FileChannel channel, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) channel.write(buf);
+		buf.clear();
+	}
+	/**
+	 * Maps a map file. A read-only grid can be shared by any number of
+	 * processes and threads. A writable one is a private copy-on-write
+	 * mapping: only the pages changed are copied, and the file is unchanged.
+	 */
+	public static MappedGrid open(File file, boolean writable) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) break;
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+				throw new IOException(file+" is not a map file");
+			}
+			int version = header.getInt();
+			if (version != FORMAT_VERSION) throw new IOException(file+" has unsupported format version "+version);
+			int width = header.getInt();
+			int height = header.getInt();
+			int flags = header.getInt();
+			if ((flags & FLAG_TILED) != 0) throw new IOException(file+" is a tiled map, open it with TiledGrid");
+			long size = (long)width * height;
+			if (width <= 0 || height <= 0) throw new IOException(file+" has bad dimensions "+width+"x"+height);
+			if (size > Integer.MAX_VALUE) throw new IOException(file+" is "+width+"x"+height+", too big for an untiled map file");
+			long bitmapBytes = ((size + 63) >>> 6) * 8;
+			long costBytes = (flags & FLAG_COSTS) != 0 ? size : 0;
+			if (channel.size() < HEADER_SIZE + bitmapBytes + costBytes) throw new IOException(file+" is truncated");
+			FileChannel.MapMode mode = writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY;
+			MappedByteBuffer bitmap = channel.map(mode, HEADER_SIZE, bitmapBytes);
+			LongBuffer words = bitmap.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			ByteBuffer costs = costBytes > 0 ? channel.map(mode, HEADER_SIZE + bitmapBytes, costBytes) : null;
+			return new MappedGrid(width, height, words, costs, !writable);
+		} finally {
+			raf.close();//the mappings stay valid
+		}
+	}
+}
@@ -0,0 +1,73 @@
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Grid whose blocked bits live in a memory-mapped map file instead of on
+ * the heap (see MapFile). Opening one doesn't read the bits, the operating
+ * system pages them in as they are used, and every process mapping the
+ * same file read-only shares one copy.
+ * @author Michael A. Long
+ *
+ */
+public class MappedGrid extends Grid {
+	private final LongBuffer words;//same layout as Grid's blocked array
+	public final ByteBuffer costs;//per-vertex move cost plane from the file, null if it has none
+
+	MappedGrid(int _width, int _height, LongBuffer _words, ByteBuffer _costs, boolean _readOnly) {
+		super(_width, _height, _readOnly);
+		words = _words;
+		costs = _costs;
+	}
+	@Override
+	public boolean hasCosts() {
+		return costs != null;
+	}
+	@Override
+	public int cost(int idx) {
+		if (costs == null) return 1;
+		int c = costs.get(idx) & 0xFF;
+		return c == 0 ? 1 : c;
+	}
+	/**
+	 * Like setBlocked, only allowed on a copy-on-write mapping, and only
+	 * if the file has a cost plane.
+	 */
+	@Override
+	public void setCost(int idx, int c) {
+		if (isReadOnly()) throw new UnsupportedOperationException("Grid is read-only");
+		if (costs == null) throw new UnsupportedOperationException("map file has no cost plane");
+		if (c < 1 || c > 255) throw new IllegalArgumentException("cost "+c+" is not between 1 and 255");
+		if (cost(idx) == c) return;
+		costs.put(idx, (byte)c);
+		fireCellChanged(idx, isBlocked(idx));
+	}
+	@Override
+	public long word(int i) {
+		return words.get(i);
+	}
+	@Override
+	public boolean isBlocked(int idx) {
+		return (words.get(idx >>> 6) & (1L << idx)) != 0;
+	}
+	/**
+	 * Only allowed on a copy-on-write mapping. The change stays in this
+	 * process, the file is never written.
+	 */
+	@Override
+	public void setBlocked(int idx, boolean b) {
+		if (isReadOnly()) throw new UnsupportedOperationException("Grid is read-only");
+		long word = words.get(idx >>> 6);
+		long changed = b ? word | (1L << idx) : word & ~(1L << idx);
+		if (changed != word) {
+			words.put(idx >>> 6, changed);
+			fireCellChanged(idx, b);
+		}
+	}
+	@Override
+	public void fill(boolean b) {
+		if (isReadOnly()) throw new UnsupportedOperationException("Grid is read-only");
+		for (int i=0; i<words.capacity(); i++) words.put(i, b ? -1L : 0L);
+		version++;
+		fireGridChanged();
+	}
+}
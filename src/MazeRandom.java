@@ -0,0 +1,46 @@
+import java.util.Random;
+
+/**
+ * Random number source for the maze generators. java.util.Random updates
+ * its seed with an atomic compare-and-set on every call, which is a large
+ * share of generating a big maze; this one keeps plain SplitMix64 state
+ * instead. Not safe for use by more than one thread at once.
+ * The same seed always gives the same numbers.
+ * @author Michael A. Long
+ *
+ */
+public class MazeRandom extends Random {
+	private static final long serialVersionUID = 1L;
+
+	private long state;
+
+	public MazeRandom(long seed) {
+		super(seed);//calls setSeed
+	}
+	@Override
+	public void setSeed(long seed) {
+		state = seed;
+	}
+	/**
+	 * Multiplies instead of dividing (Lemire's method), rejecting the few
+	 * values which would bias the result, as Random.nextInt does.
+	 */
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0) throw new IllegalArgumentException("bound must be positive");
+		long m = (next(32) & 0xFFFFFFFFL) * bound;
+		if ((m & 0xFFFFFFFFL) < bound) {
+			long threshold = (0x100000000L - bound) % bound;
+			while ((m & 0xFFFFFFFFL) < threshold) m = (next(32) & 0xFFFFFFFFL) * bound;
+		}
+		return (int)(m >>> 32);
+	}
+	@Override
+	protected int next(int bits) {
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z ^= z >>> 31;
+		return (int)(z >>> (64 - bits));
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * The A* open list: queued vertices, removed in order of lowest F cost.
+ * Vertices are referred to by index, y*width+x. Keys are doubles, which
+ * hold sums of fixed point costs (AStarSearch.fixedPoint) exactly.
+ * @author Michael A. Long
+ *
+ */
+public interface OpenList {
+	/**
+	 * Queues a vertex which is not already in the list.
+	 */
+	public void add(int idx, double f);
+	/**
+	 * Queues a vertex which is not already in the list. Among vertices of
+	 * equal f, lists which can break ties remove the lowest k2 first.
+	 */
+	public void add(int idx, double f, double k2);
+	/**
+	 * Lowers the cost of a vertex which is already in the list.
+	 */
+	public void decreaseKey(int idx, double f);
+	/**
+	 * Lowers the cost of a vertex which is already in the list, with a
+	 * new tie-break key as in add.
+	 */
+	public void decreaseKey(int idx, double f, double k2);
+	/**
+	 * Removes and returns the vertex with the lowest cost.
+	 */
+	public int remove();
+	public boolean contains(int idx);
+	public boolean isEmpty();
+	public int size();
+	/**
+	 * The queued vertices, in no particular order.
+	 */
+	public int[] toArray();
+	public void clear();
+}
@@ -0,0 +1,24 @@
+/**
+ * Open list implementations A* can run with.
+ * INDEXED_HEAP tracks each vertex's heap position, so decrease-key costs O(log n).
+ * PRIORITY_QUEUE is the original java.util.PriorityQueue, whose
+ * decrease-key is a linear remove followed by an add.
+ * BUCKET_QUEUE buckets vertices by F (see BucketQueue), so every operation
+ * is O(1); exact when F is always a whole number, e.g. FOUR connectivity.
+ * @author Michael A. Long
+ *
+ */
+public enum OpenListType {
+	INDEXED_HEAP, PRIORITY_QUEUE, BUCKET_QUEUE;
+	
+	public OpenList create(SearchState state) {
+		switch (this) {
+		case PRIORITY_QUEUE:
+			return new PriorityQueueOpenList(state);
+		case BUCKET_QUEUE:
+			return new BucketQueue(state.parent.length);
+		default:
+			return new IndexedHeap(state.parent.length);
+		}
+	}
+}
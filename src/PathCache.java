@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of found paths, keyed by start and goal vertex, which
+ * evicts the least recently used path when full.
+ *
+ * Each path is stamped with the grid version it was found at, and notes
+ * which regions (square blocks of vertices) it passes through. Each region
+ * records the grid version at which a vertex in or next to it last changed.
+ * A path is only returned if none of its regions changed after it was
+ * found, so an edit invalidates the paths near it and leaves the rest.
+ * An edit can open a shortcut for a path which doesn't pass nearby, which
+ * the cache won't notice. Failed searches aren't cached.
+ * @author Michael A. Long
+ *
+ */
+public class PathCache implements GridListener {
+	private static final int REGION_SIZE = 16;
+
+	public final Grid grid;
+	public final int capacity;
+	private final int regionsX;
+	private final int regionsY;
+	private final int[] regionChanged;//grid version when each region last changed
+	private int clearedAt;//grid version of the last bulk change
+	private final LinkedHashMap<Long, CachedPath> entries;
+	public long hits;
+	public long misses;
+	public long evictions;//dropped to make room
+	public long invalidations;//dropped because the grid changed nearby
+
+	private static class CachedPath {
+		final int[] path;
+		final int[] regions;
+		final int version;
+
+		CachedPath(int[] _path, int[] _regions, int _version) {
+			path = _path;
+			regions = _regions;
+			version = _version;
+		}
+	}
+
+	public PathCache(Grid _grid, int _capacity) {
+		grid = _grid;
+		capacity = _capacity;
+		regionsX = (grid.width + REGION_SIZE - 1) / REGION_SIZE;
+		regionsY = (grid.height + REGION_SIZE - 1) / REGION_SIZE;
+		regionChanged = new int[regionsX * regionsY];
+		clearedAt = grid.version;
+		entries = new LinkedHashMap<Long, CachedPath>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CachedPath> eldest) {
+				if (size() <= capacity) return false;
+				evictions++;
+				return true;
+			}
+		};
+		grid.addListener(this);
+	}
+	/**
+	 * Stops listening to the grid.
+	 */
+	public void dispose() {
+		grid.removeListener(this);
+	}
+	private long key(int start, int goal) {
+		return (long)start * grid.size() + goal;
+	}
+	private int regionOf(int idx) {
+		return (idx / grid.width / REGION_SIZE) * regionsX + (idx % grid.width) / REGION_SIZE;
+	}
+	/**
+	 * The cached path from start to goal, or null if there isn't a valid one.
+	 * The returned array is shared, so it must not be modified.
+	 */
+	public int[] get(int start, int goal) {
+		Long key = key(start, goal);
+		CachedPath e = entries.get(key);
+		if (e == null) {
+			misses++;
+			return null;
+		}
+		boolean valid = e.version >= clearedAt;
+		for (int i=0; valid && i<e.regions.length; i++) {
+			if (regionChanged[e.regions[i]] > e.version) valid = false;
+		}
+		if (!valid) {
+			entries.remove(key);
+			invalidations++;
+			misses++;
+			return null;
+		}
+		hits++;
+		return e.path;
+	}
+	/**
+	 * Caches a path just found on the grid as it is now, start first.
+	 */
+	public void put(int start, int goal, int[] path) {
+		int[] regions = new int[8];
+		int count = 0;
+		int last = -1;
+		for (int v : path) {
+			int r = regionOf(v);
+			if (r == last) continue;
+			last = r;
+			boolean seen = false;
+			for (int i=0; i<count; i++) {
+				if (regions[i] == r) seen = true;
+			}
+			if (seen) continue;
+			if (count == regions.length) regions = Arrays.copyOf(regions, count*2);
+			regions[count++] = r;
+		}
+		entries.put(key(start, goal), new CachedPath(path, Arrays.copyOf(regions, count), grid.version));
+	}
+	public int size() {
+		return entries.size();
+	}
+	public void clear() {
+		invalidations += entries.size();
+		entries.clear();
+	}
+	/**
+	 * Marks the regions of the changed vertex and of its neighbors, as a
+	 * diagonal move beside a vertex depends on it too.
+	 */
+	@Override
+	public void cellChanged(Grid _grid, int idx, boolean blocked) {
+		int x = idx % grid.width, y = idx / grid.width;
+		int rx0 = Math.max(0, x-1) / REGION_SIZE, rx1 = Math.min(grid.width-1, x+1) / REGION_SIZE;
+		int ry0 = Math.max(0, y-1) / REGION_SIZE, ry1 = Math.min(grid.height-1, y+1) / REGION_SIZE;
+		for (int ry=ry0; ry<=ry1; ry++) {
+			for (int rx=rx0; rx<=rx1; rx++) regionChanged[ry*regionsX + rx] = grid.version;
+		}
+	}
+	@Override
+	public void gridChanged(Grid _grid) {
+		clearedAt = grid.version;
+	}
+	@Override
+	public String toString() {
+		return "PathCache size "+entries.size()+"/"+capacity+", hits "+hits+", misses "+misses
+				+", evictions "+evictions+", invalidations "+invalidations;
+	}
+}
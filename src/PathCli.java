@@ -0,0 +1,471 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.management.JMException;
+
+/**
+ * Headless command line path finder. Uses only World and the search classes,
+ * so it needs neither Slick2D nor LWJGL on the classpath, nor a display.
+ *
+ * Loads or generates a map, then reads queries, one "startX startY endX endY"
+ * per line, from a file or stdin. For each query it writes one line to stdout:
+ * the query, then cost, path length, microseconds taken, vertices expanded
+ * and the path as x,y pairs (or "none"). For a tiled map, the tile faults
+ * and tile cache hit ratio of each query are written after the vertices
+ * expanded.
+ *
+ * Usage: java -cp target/classes PathCli [options]
+ *   -map file            binary map file (see MapFile), opened read-only,
+ *                        or a tiled map file (see TiledGrid), paged in,
+ *                        or a text map, '.' open, a digit 1-9 open with
+ *                        that terrain cost and anything else blocked
+ *                        (MovingAI .map headers are skipped)
+ *   -generate type       open, prim, prim2, wide, eller or random (default prim)
+ *   -terrain n           give a generated map random terrain costs 1 to n
+ *   -size WxH            size of a generated map (default 27x27)
+ *   -seed n              seed for generated maps
+ *   -queries file        read queries from a file instead of stdin
+ *   -mode m              ASTAR, JPS, JPS_PLUS, BIDIRECTIONAL,
+ *                        INCREMENTAL, HIERARCHICAL or FLOW_FIELD
+ *   -connectivity c      FOUR, EIGHT or EIGHT_NO_CORNER_CUTTING
+ *   -heuristic h         MANHATTAN, OCTILE or EUCLIDEAN
+ *   -openlist t          INDEXED_HEAP, PRIORITY_QUEUE or BUCKET_QUEUE
+ *   -fixedpoint          A* with fixed point costs, so ties in F are exact
+ *   -notiebreak          A* expands equal F in any order, not highest G first
+ *   -landmarks n         A* also uses the ALT bound of n landmarks (see Landmarks),
+ *                        in ASTAR, JPS and JPS_PLUS modes
+ *   -landmarkfile file   load the landmarks from file if it was saved for this
+ *                        map, else build them and save them there
+ *   -save file           save the map as a binary map file first; an eller
+ *                        maze is streamed to the file row by row, for maps
+ *                        too big for memory, and no queries are read (maps
+ *                        of over 2^31 vertices must be tiled)
+ *   -tileshift s         save as a tiled map, tiles 1 << s vertices square
+ *                        (tiled maps have no terrain costs)
+ *   -tiles n             tiles of a tiled map held in memory (default 64)
+ *   -maxwindow n         most vertices a search window on a tiled map may
+ *                        cover (default 16M); a query needing more gives
+ *                        "limit" in place of a cost
+ *   -cache n             remember up to n paths for repeated queries
+ *   -agents n            instead of reading queries, move n agents from
+ *                        random open vertices to random goals with an
+ *                        AgentScheduler, and print tick latency and backlog
+ *   -goals n             goals the agents share (default 8)
+ *   -ticks n             ticks to run the agents for (default 1000)
+ *   -budget ms           replanning time per tick (default 2)
+ *   -stats               print search totals and the slowest query to
+ *                        stderr, and publish them over JMX while running
+ *   -nopath              leave the path out of the output
+ * @author Michael A. Long
+ *
+ */
+public class PathCli {
+
+	public static void main(String[] args) throws IOException {
+		String mapFile = null;
+		String generate = "prim";
+		int width = 27, height = 27;
+		Long seed = null;
+		String queryFile = null;
+		SearchMode mode = SearchMode.ASTAR;
+		Connectivity connectivity = null;
+		Heuristic heuristic = null;
+		OpenListType openList = null;
+		boolean fixedPoint = false;
+		boolean tieBreaking = true;
+		int landmarkCount = 0;
+		String landmarkFile = null;
+		int maxCost = 0;
+		int cacheSize = 0;
+		String saveFile = null;
+		boolean printPath = true;
+		boolean printStats = false;
+		int tileShift = 0;
+		int tiles = 64;
+		long maxWindow = WindowedSearch.MAX_WINDOW;
+		int agents = 0;
+		int goals = 8;
+		int ticks = 1000;
+		double budget = 2;
+		for (int i=0; i<args.length; i++) {
+			String a = args[i];
+			if (a.equals("-map")) mapFile = args[++i];
+			else if (a.equals("-generate")) generate = args[++i];
+			else if (a.equals("-size")) {
+				String[] wh = args[++i].toLowerCase().split("x");
+				width = Integer.parseInt(wh[0]);
+				height = Integer.parseInt(wh[wh.length-1]);
+			}
+			else if (a.equals("-seed")) seed = Long.parseLong(args[++i]);
+			else if (a.equals("-queries")) queryFile = args[++i];
+			else if (a.equals("-mode")) mode = SearchMode.valueOf(args[++i].toUpperCase());
+			else if (a.equals("-connectivity")) connectivity = Connectivity.valueOf(args[++i].toUpperCase());
+			else if (a.equals("-heuristic")) heuristic = Heuristic.valueOf(args[++i].toUpperCase());
+			else if (a.equals("-openlist")) openList = OpenListType.valueOf(args[++i].toUpperCase());
+			else if (a.equals("-fixedpoint")) fixedPoint = true;
+			else if (a.equals("-notiebreak")) tieBreaking = false;
+			else if (a.equals("-landmarks")) landmarkCount = Integer.parseInt(args[++i]);
+			else if (a.equals("-landmarkfile")) landmarkFile = args[++i];
+			else if (a.equals("-terrain")) maxCost = Integer.parseInt(args[++i]);
+			else if (a.equals("-cache")) cacheSize = Integer.parseInt(args[++i]);
+			else if (a.equals("-save")) saveFile = args[++i];
+			else if (a.equals("-tileshift")) tileShift = Integer.parseInt(args[++i]);
+			else if (a.equals("-tiles")) tiles = Integer.parseInt(args[++i]);
+			else if (a.equals("-maxwindow")) maxWindow = Long.parseLong(args[++i]);
+			else if (a.equals("-stats")) printStats = true;
+			else if (a.equals("-nopath")) printPath = false;
+			else if (a.equals("-agents")) agents = Integer.parseInt(args[++i]);
+			else if (a.equals("-goals")) goals = Integer.parseInt(args[++i]);
+			else if (a.equals("-ticks")) ticks = Integer.parseInt(args[++i]);
+			else if (a.equals("-budget")) budget = Double.parseDouble(args[++i]);
+			else {
+				System.err.println("Usage: java -cp target/classes PathCli [-map file | -generate type"
+						+ " -size WxH -seed n [-terrain n]] [-queries file] [-mode m] [-connectivity c]"
+						+ " [-heuristic h] [-openlist t] [-fixedpoint] [-notiebreak]"
+						+ " [-landmarks n [-landmarkfile file]] [-cache n] [-save file [-tileshift s]] [-tiles n] [-maxwindow n] [-stats] [-nopath]"
+						+ " [-agents n [-goals n] [-ticks n] [-budget ms]]");
+				System.exit(2);
+			}
+		}
+
+		long t0 = System.nanoTime();
+		if (mapFile != null && MapFile.isTiled(new File(mapFile))) {
+			runTiled(TiledGrid.open(new File(mapFile), tiles, false), queryFile, connectivity, heuristic, maxWindow, printPath);
+			return;
+		}
+		if (mapFile == null && generate.equals("eller") && saveFile != null) {
+			if (tileShift == 0 && (long)width * height > Integer.MAX_VALUE) {
+				System.err.println(width+"x"+height+" is too big for an untiled map file, save it tiled with -tileshift");
+				System.exit(2);
+			}
+			streamEller(width, height, seed != null ? seed : System.nanoTime(), new File(saveFile), tileShift);
+			System.err.println("wrote "+width+"x"+height+" maze in "+(System.nanoTime() - t0) / 1000000 + "ms");
+			return;
+		}
+		World world;
+		if (mapFile != null && MapFile.isMapFile(new File(mapFile))) {
+			world = World.load(new File(mapFile), false);
+		} else if (mapFile != null) {
+			Reader in = new FileReader(mapFile);
+			try {
+				world = loadText(in);
+			} finally {
+				in.close();
+			}
+		} else {
+			world = generate(generate, width, height, seed);
+			if (maxCost > 1) world.randomizeCosts(maxCost);
+		}
+		if (connectivity != null) world.setConnectivity(connectivity);
+		if (heuristic != null) world.setHeuristic(heuristic);
+		if (openList != null) world.setOpenListType(openList);
+		world.setSearchMode(mode);//first, as the jump point modes change the connectivity landmarks are built for
+		if (landmarkCount > 0 && mode != SearchMode.ASTAR && !mode.isJumpPoint()) {
+			System.err.println("landmarks are only used by ASTAR, JPS and JPS_PLUS, not building them for "+mode);
+			landmarkCount = 0;
+		}
+		if (fixedPoint || !tieBreaking || landmarkCount > 0) {//else the first query makes the search
+			AStarSearch search = world.aStarSearch();
+			search.fixedPoint = fixedPoint;
+			search.tieBreaking = tieBreaking;
+			if (landmarkCount > 0) search.landmarks = landmarks(world, landmarkCount, landmarkFile);
+		}
+		world.enablePathCache(cacheSize);
+		System.err.println("map "+world.width+"x"+world.height+" ready in "
+				+ (System.nanoTime() - t0) / 1000 + "us");
+		SearchMetrics metrics = null;
+		if (printStats) {
+			metrics = new SearchMetrics();
+			world.addSearchListener(metrics);
+			try {
+				metrics.register("PathCli");
+			} catch (JMException e) {
+				System.err.println("not published over JMX: "+e);
+			}
+		}
+		if (saveFile != null && tileShift > 0) TiledGrid.copyOf(world.grid, new File(saveFile), tileShift, tiles).close();
+		else if (saveFile != null) world.save(new File(saveFile));
+		if (agents > 0) {
+			runAgents(world, agents, goals, ticks, (long)(budget * 1000000), seed != null ? seed : System.nanoTime());
+			return;
+		}
+
+		BufferedReader queries = new BufferedReader(queryFile != null
+				? new FileReader(queryFile) : new InputStreamReader(System.in));
+		PrintWriter out = new PrintWriter(System.out, false);
+		try {
+			runQueries(world, queries, out, printPath);
+		} finally {
+			out.flush();
+			queries.close();
+		}
+		if (world.cache != null) System.err.println(world.cache);
+		if (metrics != null) {
+			System.err.println(metrics);
+			System.err.println("slowest: "+metrics.getSlowestQuery());
+		}
+	}
+	/**
+	 * Answers each query line from in, writing one result line per query to out.
+	 * Blank lines and lines starting with '#' are skipped.
+	 */
+	public static void runQueries(World world, BufferedReader in, PrintWriter out, boolean printPath)
+			throws IOException {
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			int[] q = parseQuery(line, out);
+			if (q == null) continue;
+			int sx = q[0], sy = q[1], ex = q[2], ey = q[3];
+			sb.setLength(0);
+			sb.append(sx).append(' ').append(sy).append(' ').append(ex).append(' ').append(ey);
+			if (sx<0||sx>=world.width||ex<0||ex>=world.width||sy<0||sy>=world.height||ey<0||ey>=world.height) {
+				out.println(sb.append("\terror: outside the map"));
+				continue;
+			}
+			if (world.grid.isBlocked(sx, sy) || world.grid.isBlocked(ex, ey)) {
+				out.println(sb.append("\tnone\t0\t0\t0\tblocked"));
+				continue;
+			}
+			long start = System.nanoTime();
+			world.startX = sx; world.startY = sy;
+			world.endX = ex; world.endY = ey;
+			world.reinitAStar();
+			world.runSearch();
+			int[] path = world.path();
+			long micros = (System.nanoTime() - start) / 1000;
+
+			if (path == null) {
+				sb.append("\tnone\t0");
+			} else {
+				sb.append('\t').append(world.state.G[world.grid.index(ex, ey)]).append('\t').append(path.length);
+			}
+			sb.append('\t').append(micros).append('\t').append(world.expanded());
+			if (printPath) {
+				sb.append('\t');
+				if (path == null) {
+					sb.append("none");
+				} else {
+					for (int i=0; i<path.length; i++) {
+						if (i > 0) sb.append(' ');
+						sb.append(world.grid.xOf(path[i])).append(',').append(world.grid.yOf(path[i]));
+					}
+				}
+			}
+			out.println(sb);
+		}
+	}
+	/**
+	 * Reads startX startY endX endY from a query line, or prints an error
+	 * line for it to out and returns null if it doesn't hold four whole numbers.
+	 */
+	private static int[] parseQuery(String line, PrintWriter out) {
+		String[] f = line.split("[\\s,]+");
+		if (f.length < 4) {
+			out.println(line + "\terror: expected startX startY endX endY");
+			return null;
+		}
+		int[] q = new int[4];
+		try {
+			for (int i=0; i<4; i++) q[i] = Integer.parseInt(f[i]);
+		} catch (NumberFormatException e) {
+			out.println(line + "\terror: not a whole number: " + e.getMessage());
+			return null;
+		}
+		return q;
+	}
+	/**
+	 * Moves agents from random open vertices towards goals picked from a
+	 * few random open vertices for the given number of ticks, then prints
+	 * the scheduler's latency and backlog to stderr.
+	 */
+	public static void runAgents(World world, int agents, int goals, int ticks, long budgetNanos, long seed) {
+		Random rand = new Random(seed);
+		int[] goal = new int[Math.max(1, goals)];
+		for (int i=0; i<goal.length; i++) goal[i] = randomOpen(world.grid, rand);
+		AgentScheduler scheduler = new AgentScheduler(world, budgetNanos, Runtime.getRuntime().availableProcessors());
+		try {
+			for (int i=0; i<agents; i++) scheduler.add(randomOpen(world.grid, rand), goal[rand.nextInt(goal.length)]);
+			int arrived = 0;
+			for (int t=0; t<ticks && arrived < agents; t++) {
+				scheduler.tick();
+				arrived = 0;
+				for (int i=0; i<agents; i++) if (scheduler.agent(i).arrived()) arrived++;
+			}
+			System.err.println(scheduler);
+			System.err.println(arrived+" of "+agents+" agents arrived");
+			if (world.fields != null) System.err.println(world.fields);
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+	private static int randomOpen(Grid grid, Random rand) {
+		while (true) {
+			int v = rand.nextInt(grid.size());
+			if (!grid.isBlocked(v)) return v;
+		}
+	}
+	/**
+	 * Answers queries on a tiled map with a WindowedSearch, as the map may
+	 * be too big for a World. -mode and -cache don't apply.
+	 */
+	private static void runTiled(TiledGrid grid, String queryFile, Connectivity connectivity,
+			Heuristic heuristic, long maxWindow, boolean printPath) throws IOException {
+		WindowedSearch search = new WindowedSearch(grid, 1 << grid.tileShift);
+		search.maxWindow = maxWindow;
+		if (connectivity != null) search.setConnectivity(connectivity);
+		if (heuristic != null) search.heuristicType = heuristic;
+		System.err.println("tiled map "+grid.width+"x"+grid.height+", "+grid.tilesX+"x"+grid.tilesY+" tiles");
+		BufferedReader in = new BufferedReader(queryFile != null
+				? new FileReader(queryFile) : new InputStreamReader(System.in));
+		PrintWriter out = new PrintWriter(System.out, false);
+		StringBuilder sb = new StringBuilder();
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) continue;
+				int[] q = parseQuery(line, out);
+				if (q == null) continue;
+				int sx = q[0], sy = q[1], ex = q[2], ey = q[3];
+				sb.setLength(0);
+				sb.append(sx).append(' ').append(sy).append(' ').append(ex).append(' ').append(ey);
+				if (sx<0||sx>=grid.width||ex<0||ex>=grid.width||sy<0||sy>=grid.height||ey<0||ey>=grid.height) {
+					out.println(sb.append("\terror: outside the map"));
+					continue;
+				}
+				if (grid.isBlocked(sx, sy) || grid.isBlocked(ex, ey)) {
+					out.println(sb.append("\tnone\t0\t0\t0\tblocked"));
+					continue;
+				}
+				long start = System.nanoTime();
+				boolean found = search.findPath(sx, sy, ex, ey);
+				long micros = (System.nanoTime() - start) / 1000;
+				int[] pathX = search.pathX(), pathY = search.pathY();
+				if (found) sb.append('\t').append(search.cost).append('\t').append(pathX.length);
+				else sb.append(search.windowLimited ? "\tlimit\t0" : "\tnone\t0");
+				sb.append('\t').append(micros).append('\t').append(search.expanded);
+				sb.append('\t').append(search.tileFaults).append('\t').append(String.format("%.3f", search.hitRatio()));
+				if (printPath) {
+					sb.append('\t');
+					if (pathX == null) {
+						sb.append("none");
+					} else {
+						for (int i=0; i<pathX.length; i++) {
+							if (i > 0) sb.append(' ');
+							sb.append(pathX[i]).append(',').append(pathY[i]);
+						}
+					}
+				}
+				out.println(sb);
+			}
+		} finally {
+			out.flush();
+			in.close();
+			grid.close();
+		}
+		System.err.println("tile faults "+grid.tileFaults+", hit ratio "+String.format("%.3f", grid.hitRatio()));
+		if (search.components != null) System.err.println(search.components);
+	}
+	/**
+	 * Landmarks for the world's grid and connectivity, loaded from file if
+	 * it holds ones for this map, otherwise built and saved to file (if any).
+	 */
+	static Landmarks landmarks(World world, int count, String file) throws IOException {
+		Landmarks landmarks = null;
+		if (file != null && new File(file).exists()) {
+			try {
+				landmarks = Landmarks.load(new File(file), world.grid);
+				if (landmarks.connectivity != world.connectivity || landmarks.count != count) landmarks = null;
+			} catch (IOException e) {
+				System.err.println("rebuilding landmarks: "+e.getMessage());
+			}
+		}
+		if (landmarks == null) {
+			landmarks = new Landmarks(world.grid, world.connectivity, count, Runtime.getRuntime().availableProcessors());
+			if (file != null) landmarks.save(new File(file));
+		}
+		System.err.println(landmarks);
+		return landmarks;
+	}
+	/**
+	 * Reads a text map: one line per row, '.' is open, a digit 1-9 is open
+	 * with that terrain cost, and anything else is blocked. A MovingAI
+	 * style header ("type", "height", "width", "map") is skipped if present.
+	 */
+	public static World loadText(Reader r) throws IOException {
+		BufferedReader in = new BufferedReader(r);
+		ArrayList<String> rows = new ArrayList<>();
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (rows.isEmpty() && (line.startsWith("type ") || line.startsWith("height ")
+					|| line.startsWith("width ") || line.equals("map"))) continue;
+			if (line.isEmpty()) continue;
+			rows.add(line);
+		}
+		int width = 0;
+		for (String row : rows) width = Math.max(width, row.length());
+		World world = new World(width, rows.size());
+		for (int y=0; y<rows.size(); y++) {
+			String row = rows.get(y);
+			for (int x=0; x<width; x++) {
+				char c = x < row.length() ? row.charAt(x) : ' ';
+				if (c >= '1' && c <= '9') world.grid.setCost(world.grid.index(x, y), c - '0');
+				else if (c != '.') world.grid.setBlocked(x, y, true);
+			}
+		}
+		return world;
+	}
+	/**
+	 * Writes an EllerMaze straight to file as it is made, tiled if
+	 * tileShift > 0, never holding more than a few rows (or a row of tiles).
+	 */
+	public static void streamEller(int width, int height, long seed, File file, int tileShift) throws IOException {
+		EllerMaze maze = new EllerMaze(width, height, seed);
+		if (tileShift > 0) {
+			int tilesX = (width + (1 << tileShift) - 1) >> tileShift;
+			TiledGrid grid = TiledGrid.create(file, width, height, tileShift, tilesX);
+			maze.generate(grid);
+			grid.close();
+		} else {
+			MapFile.RowWriter writer = new MapFile.RowWriter(file, width, height);
+			maze.generate(writer);
+			writer.close();
+		}
+	}
+	/**
+	 * Builds a map with one of the World maze generators, or an open or
+	 * randomly obstructed (25% blocked) map.
+	 */
+	public static World generate(String type, int width, int height, Long seed) {
+		World world = new World(width, height);
+		if (seed != null) world.setSeed(seed);
+		if (type.equals("prim")) {
+			world.randomizeWalls();
+		} else if (type.equals("prim2")) {
+			world.randomizeWalls2();
+		} else if (type.equals("wide")) {
+			world.randomizeWalls3();
+		} else if (type.equals("eller")) {
+			world.grid.beginChanges();
+			new EllerMaze(width, height, world.rand.nextLong()).generate(EllerMaze.into(world.grid));
+			world.grid.endChanges();
+		} else if (type.equals("random")) {
+			Random rand = world.rand;
+			int blocked = world.grid.size() / 4;
+			for (int i=0; i<blocked; i++) world.grid.setBlocked(rand.nextInt(world.grid.size()), true);
+		} else if (!type.equals("open")) {
+			throw new IllegalArgumentException("unknown map type "+type);
+		}
+		return world;
+	}
+}
@@ -0,0 +1,79 @@
+import java.util.PriorityQueue;
+
+/**
+ * Open list backed by java.util.PriorityQueue, ordered by CostComparator.
+ * Kept so expansion throughput can be compared against IndexedHeap.
+ * @author Michael A. Long
+ *
+ */
+public class PriorityQueueOpenList implements OpenList {
+	private final PriorityQueue<Integer> queue;
+	private final CostComparator comparator;
+	private final int vertices;
+	
+	public PriorityQueueOpenList(SearchState state) {
+		vertices = state.parent.length;
+		comparator = new CostComparator(vertices);
+		queue = new PriorityQueue<Integer>(30, comparator);
+	}
+	@Override
+	public void add(int idx, double f) {
+		add(idx, f, 0.0);
+	}
+	@Override
+	public void add(int idx, double f, double k2) {
+		comparator.f[idx] = f;
+		setKey2(idx, k2);
+		queue.add(idx);
+	}
+	@Override
+	public void decreaseKey(int idx, double f) {
+		decreaseKey(idx, f, 0.0);
+	}
+	@Override
+	public void decreaseKey(int idx, double f, double k2) {
+		queue.remove(idx);//linear scan
+		comparator.f[idx] = f;
+		setKey2(idx, k2);
+		queue.add(idx);
+	}
+	/**
+	 * Records a vertex's tie-break key for the comparator. The keys are
+	 * only allocated once one isn't zero, so searches which don't break
+	 * ties keep the original order by F alone, and its memory.
+	 */
+	private void setKey2(int idx, double k2) {
+		if (comparator.k2 == null) {
+			if (k2 == 0.0) return;
+			comparator.k2 = new double[vertices];
+		}
+		comparator.k2[idx] = k2;
+	}
+	@Override
+	public int remove() {
+		return queue.remove();
+	}
+	@Override
+	public boolean contains(int idx) {
+		return queue.contains(idx);
+	}
+	@Override
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+	@Override
+	public int size() {
+		return queue.size();
+	}
+	@Override
+	public int[] toArray() {
+		int[] a = new int[queue.size()];
+		int i = 0;
+		for (Integer idx : queue) a[i++] = idx;
+		return a;
+	}
+	@Override
+	public void clear() {
+		queue.clear();
+	}
+}
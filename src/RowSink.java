@@ -0,0 +1,11 @@
+/**
+ * Takes a map one row at a time, from the top down, so a map can be made
+ * without ever holding all of it in memory. Bit (x & 63) of word (x >>> 6)
+ * is set if vertex x of the row is blocked; bits past the row's width are 0.
+ * The array may be reused for the next row, so copy anything to be kept.
+ * @author Michael A. Long
+ *
+ */
+public interface RowSink {
+	public void row(int y, long[] blocked);
+}
@@ -0,0 +1,12 @@
+/**
+ * Told about each search World.runSearch finishes.
+ * @author Michael A. Long
+ *
+ */
+public interface SearchListener {
+	/**
+	 * A search finished. stats is reused for the next search, so copy
+	 * anything which needs keeping.
+	 */
+	public void searchFinished(World world, SearchStats stats);
+}
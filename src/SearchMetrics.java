@@ -0,0 +1,120 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Running totals of the SearchStats of every search a World runs, which
+ * can be registered as a JMX MBean to watch them from outside, e.g. with
+ * jconsole. Keeps the slowest query seen, to track down tail latency.
+ * Reads from JMX threads may see totals a query out of date.
+ * @author Michael A. Long
+ *
+ */
+public class SearchMetrics implements SearchMetricsMBean, SearchListener {
+	private long queries;
+	private long found;
+	private long cacheHits;
+	private long expanded;
+	private long pushed;
+	private long reopened;
+	private long decreaseKeys;
+	private long touched;
+	private int peakOpen;//most of any one search
+	private long nanos;
+	private long maxNanos;
+	private String slowest = "";
+	private ObjectName name;//set while registered
+
+	@Override
+	public synchronized void searchFinished(World world, SearchStats stats) {
+		queries++;
+		if (stats.found) found++;
+		if (stats.cached) cacheHits++;
+		expanded += stats.expanded;
+		pushed += stats.pushed;
+		reopened += stats.reopened;
+		decreaseKeys += stats.decreaseKeys;
+		touched += stats.touched;
+		peakOpen = Math.max(peakOpen, stats.peakOpen);
+		nanos += stats.nanos;
+		if (stats.nanos > maxNanos) {
+			maxNanos = stats.nanos;
+			slowest = world.grid.width+"x"+world.grid.height+" "+stats;
+		}
+	}
+	/**
+	 * Registers with the platform MBean server as astar:type=SearchMetrics,name=name.
+	 */
+	public void register(String _name) throws JMException {
+		name = new ObjectName("astar:type=SearchMetrics,name="+ObjectName.quote(_name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+	}
+	public void unregister() throws JMException {
+		if (name == null) return;
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		name = null;
+	}
+	@Override
+	public synchronized long getQueries() {
+		return queries;
+	}
+	@Override
+	public synchronized long getFound() {
+		return found;
+	}
+	@Override
+	public synchronized long getCacheHits() {
+		return cacheHits;
+	}
+	@Override
+	public synchronized long getExpanded() {
+		return expanded;
+	}
+	@Override
+	public synchronized long getPushed() {
+		return pushed;
+	}
+	@Override
+	public synchronized long getReopened() {
+		return reopened;
+	}
+	@Override
+	public synchronized long getDecreaseKeys() {
+		return decreaseKeys;
+	}
+	@Override
+	public synchronized long getTouched() {
+		return touched;
+	}
+	@Override
+	public synchronized int getPeakOpen() {
+		return peakOpen;
+	}
+	@Override
+	public synchronized double getMeanMicros() {
+		return queries == 0 ? 0 : nanos / 1000.0 / queries;
+	}
+	@Override
+	public synchronized long getMaxMicros() {
+		return maxNanos / 1000;
+	}
+	@Override
+	public synchronized String getSlowestQuery() {
+		return slowest;
+	}
+	@Override
+	public synchronized void reset() {
+		queries = found = cacheHits = expanded = pushed = reopened = decreaseKeys = touched = 0;
+		peakOpen = 0;
+		nanos = maxNanos = 0;
+		slowest = "";
+	}
+	@Override
+	public synchronized String toString() {
+		return "queries "+queries+", found "+found+", cache hits "+cacheHits+", expanded "+expanded
+				+", pushed "+pushed+", reopened "+reopened+", decreaseKeys "+decreaseKeys
+				+", touched "+touched+", peak open "+peakOpen
+				+String.format(", mean %.1fus, max %dus", getMeanMicros(), getMaxMicros());
+	}
+}
@@ -0,0 +1,20 @@
+/**
+ * JMX view of SearchMetrics.
+ * @author Michael A. Long
+ *
+ */
+public interface SearchMetricsMBean {
+	public long getQueries();
+	public long getFound();
+	public long getCacheHits();
+	public long getExpanded();
+	public long getPushed();
+	public long getReopened();
+	public long getDecreaseKeys();
+	public long getTouched();
+	public int getPeakOpen();
+	public double getMeanMicros();
+	public long getMaxMicros();
+	public String getSlowestQuery();
+	public void reset();
+}
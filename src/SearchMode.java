@@ -0,0 +1,25 @@
+/**
+ * Search algorithms World.runSearch can use.
+ * JPS and JPS_PLUS are Jump Point Search, which only suits uniform cost
+ * grids (terrain costs are ignored), and always move with
+ * EIGHT_NO_CORNER_CUTTING connectivity. HIERARCHICAL ignores terrain costs
+ * too; the other modes follow them.
+ * JPS_PLUS reads precomputed jump distances instead of scanning the grid.
+ * BIDIRECTIONAL searches from both ends at once and joins the halves.
+ * INCREMENTAL keeps a D* Lite search between runs and only repairs
+ * the part affected by moving the start or editing blocked vertices.
+ * HIERARCHICAL plans over clusters of the grid first (HPA*), which is much
+ * faster for long paths on large grids, but not always optimal.
+ * FLOW_FIELD finds the distance from every vertex to the end once (see
+ * DistanceField) and follows it; later searches for the same end, from
+ * any start, only read the cached field. Only World runs it.
+ * @author Michael A. Long
+ *
+ */
+public enum SearchMode {
+	ASTAR, JPS, JPS_PLUS, BIDIRECTIONAL, INCREMENTAL, HIERARCHICAL, FLOW_FIELD;
+	
+	public boolean isJumpPoint() {
+		return this == JPS || this == JPS_PLUS;
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Per-vertex A* bookkeeping, kept in flat primitive arrays indexed by
+ * y*width+x instead of one Node object per vertex.
+ * Costs 17 bytes per vertex (stamp, status, G, H, parent), against roughly
+ * 60 for a Node plus its slot in the grid array; with the open list's
+ * index a search takes 21 or more, see the readme.
+ * 
+ * Each search has a generation number. A vertex's fields are only valid
+ * while its stamp matches the current generation, otherwise it is UNSEEN.
+ * Starting a new search is then a counter increment, and only the
+ * vertices the search actually reaches are ever written. Callers which
+ * redraw only what changed can also have the touched vertices logged.
+ * @author Michael A. Long
+ *
+ */
+public class SearchState {
+	public static final byte UNSEEN = 0;
+	public static final byte OPEN = 1;
+	public static final byte CLOSED = 2;
+	private static final NodeStatus[] STATUSES = NodeStatus.values();
+	
+	public final int[] stamp;//generation which last touched this vertex
+	public final byte[] status;//whether A* has checked this vertex yet, or added it to the queue
+	public final float[] G;// distance from start point to this vertex
+	public final float[] H;// estimated distance to goal
+	public final int[] parent;//index of the previous vertex on the path, -1 if none
+	public int generation;
+	private int[] touched;//vertices touched this generation in order, null unless logged
+	public int touchedCount;
+	
+	public SearchState(int size) {
+		stamp = new int[size];
+		status = new byte[size];
+		G = new float[size];
+		H = new float[size];
+		parent = new int[size];
+		generation = 1;
+	}
+	/**
+	 * Begins a new search. Every vertex becomes UNSEEN in O(1).
+	 */
+	public void reset() {
+		touchedCount = 0;
+		generation++;
+		if (generation == 0) {//wrapped around, old stamps could match again
+			java.util.Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+	}
+	/**
+	 * Logs every vertex the current and later searches touch, in order,
+	 * which costs up to 4 more bytes per vertex. The searches set a
+	 * vertex's status in the same step that touches it.
+	 */
+	public void logTouched() {
+		if (touched == null) touched = new int[64];
+	}
+	/**
+	 * The i'th vertex touched by the current search, i below touchedCount.
+	 */
+	public int touched(int i) {
+		return touched[i];
+	}
+	/**
+	 * True if the vertex has been touched by the current search.
+	 */
+	public boolean isCurrent(int idx) {
+		return stamp[idx] == generation;
+	}
+	/**
+	 * Claims a vertex for the current search with UNSEEN status,
+	 * no parent and zero cost.
+	 */
+	public void touch(int idx) {
+		if (touched != null) {
+			if (touchedCount == touched.length) touched = java.util.Arrays.copyOf(touched, touchedCount*2);
+			touched[touchedCount++] = idx;
+		}
+		stamp[idx] = generation;
+		status[idx] = UNSEEN;
+		G[idx] = 0.0f;
+		H[idx] = 0.0f;
+		parent[idx] = -1;
+	}
+	/**
+	 * F = G + H
+	 */
+	public float F(int idx) {
+		return G[idx] + H[idx];
+	}
+	public byte statusOf(int idx) {
+		return stamp[idx] == generation ? status[idx] : UNSEEN;
+	}
+	public void setStatus(int idx, byte s) {
+		if (stamp[idx] != generation) touch(idx);
+		status[idx] = s;
+	}
+	public int parentOf(int idx) {
+		return stamp[idx] == generation ? parent[idx] : -1;
+	}
+	/**
+	 * Records a path found some other way, start first, as a parent chain
+	 * with G measured from the start, so it can be drawn like an A* result.
+	 * Each move costs what AStarSearch.runAStar charges for it: its length
+	 * times the terrain cost of the vertex moved onto.
+	 */
+	public void writePath(int[] path, Grid grid) {
+		int width = grid.width;
+		boolean weighted = grid.hasCosts();
+		float cost = 0.0f;
+		for (int i=0; i<path.length; i++) {
+			int v = path[i];
+			if (stamp[v] != generation) touch(v);
+			if (i > 0) {
+				int p = path[i-1];
+				float length = (p % width != v % width && p / width != v / width) ? Connectivity.SQRT2 : 1.0f;
+				cost += weighted ? length * grid.cost(v) : length;
+				parent[v] = p;
+			} else {
+				parent[v] = -1;
+			}
+			G[v] = cost;
+		}
+	}
+	public NodeStatus getStatus(int idx) {
+		return STATUSES[statusOf(idx)];
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * Counters for one search. runAStar fills in every field; the other
+ * search modes only record vertices expanded and the time taken.
+ * @author Michael A. Long
+ *
+ */
+public class SearchStats {
+	public SearchMode mode;//algorithm which answered the query
+	public int start;
+	public int goal;
+	public boolean found;//a path was found
+	public boolean cached;//answered from the PathCache, without searching
+	public int expanded;//vertices removed from the open list
+	public int pushed;//vertices added to the open list, including reopened ones
+	public int reopened;//vertices moved from CLOSED back to the open list
+	public int decreaseKeys;//open vertices given a lower cost
+	public int peakOpen;//most vertices in the open list at once
+	public int touched;//vertices the search wrote bookkeeping for
+	public long nanos;//wall time of the query
+
+	public void reset() {
+		mode = null;
+		start = goal = -1;
+		found = cached = false;
+		expanded = pushed = reopened = decreaseKeys = peakOpen = touched = 0;
+		nanos = 0;
+	}
+	@Override
+	public String toString() {
+		return mode+" "+start+"->"+goal+(found ? " found" : " none")+(cached ? " (cached)" : "")
+				+", expanded "+expanded+", pushed "+pushed+", reopened "+reopened
+				+", decreaseKeys "+decreaseKeys+", peakOpen "+peakOpen+", touched "+touched
+				+", "+nanos/1000+"us";
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * A* search which runs a little at a time, so it can share a frame or a
+ * server tick with other work. Each step runs an AStarSearch for a number
+ * of expansions, or until a time budget is spent, then returns; the next
+ * step carries on from there. Between steps the frontier and the best
+ * partial path so far can be read, e.g. to animate the search.
+ *
+ * Start it with AStarSearch.init, as for runAStar. Many searches can be
+ * interleaved, each with its own AStarSearch.
+ * @author Michael A. Long
+ *
+ */
+public class SteppedSearch {
+	private static final int CHECK_EVERY = 64;//expansions between clock reads in runFor
+
+	public final AStarSearch search;
+	private int result = AStarSearch.RUNNING;
+	private float startH;//estimate from the start, to measure progress against
+
+	public SteppedSearch(AStarSearch _search) {
+		search = _search;
+		restart();
+	}
+	/**
+	 * Picks up a new search after search.init was called again.
+	 */
+	public void restart() {
+		result = AStarSearch.RUNNING;
+		startH = search.start >= 0 ? search.state.H[search.start] : 0.0f;
+	}
+	/**
+	 * Runs up to n expansions. Returns AStarSearch.RUNNING if the search
+	 * isn't finished, or else FOUND or NO_PATH.
+	 */
+	public int step(int n) {
+		if (result == AStarSearch.RUNNING) result = search.runAStar(n);
+		return result;
+	}
+	/**
+	 * Runs until the search finishes or about nanos nanoseconds pass,
+	 * checking the clock every few dozen expansions.
+	 */
+	public int runFor(long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		while (result == AStarSearch.RUNNING) {
+			step(CHECK_EVERY);
+			if (System.nanoTime() - deadline >= 0) break;
+		}
+		return result;
+	}
+	public boolean isDone() {
+		return result != AStarSearch.RUNNING;
+	}
+	public boolean found() {
+		return result == AStarSearch.FOUND;
+	}
+	/**
+	 * Vertices expanded so far.
+	 */
+	public int expanded() {
+		return search.expanded;
+	}
+	/**
+	 * Rough fraction of the way to the goal, from how close the best
+	 * vertex expanded so far is estimated to be. 1 once finished.
+	 */
+	public float progress() {
+		if (isDone()) return 1.0f;
+		if (startH <= 0.0f) return 0.0f;
+		return 1.0f - search.state.H[search.closest] / startH;
+	}
+	/**
+	 * Vertices in the open list, waiting to be expanded.
+	 */
+	public int[] frontier() {
+		return search.open.toArray();
+	}
+	/**
+	 * The path found once finished, or until then the path to the expanded
+	 * vertex estimated closest to the goal. Null if there is no path.
+	 */
+	public int[] bestPath() {
+		if (result == AStarSearch.NO_PATH) return null;
+		if (result == AStarSearch.FOUND) return search.path();
+		SearchState state = search.state;
+		int length = 0;
+		for (int cur = search.closest; cur != -1; cur = state.parentOf(cur)) length++;
+		int[] path = new int[length];
+		for (int cur = search.closest; cur != -1; cur = state.parentOf(cur)) path[--length] = cur;
+		return path;
+	}
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+
+/**
+ * Connected groups of open vertices of a grid too big to label vertex by
+ * vertex, such as a TiledGrid, so WindowedSearch can answer "no path"
+ * without growing its window over the whole map.
+ *
+ * The grid is cut into square blocks. Only the vertices on the edges of
+ * each block are labeled: a flood fill inside the block from each edge
+ * vertex gives every edge vertex it reaches one label, and labels are
+ * joined with union-find where edge vertices of neighboring blocks touch.
+ * A query floods from each end inside its own block until it meets an
+ * edge vertex (or the other end), then compares labels. Takes one pass
+ * over the grid to build and about 16 / blockSide bytes per vertex.
+ *
+ * Addresses vertices by x and y only. Built for one Grid version and
+ * Connectivity, like Landmarks.
+ * @author Michael A. Long
+ *
+ */
+public class TileComponents {
+	public final Grid grid;
+	public final Connectivity connectivity;
+	public final int blockShift;//blocks are 1 << blockShift vertices square
+	public final int blocksX;
+	public final int blocksY;
+	public final int version;//Grid version the labels were found at
+	private final boolean diagonal;//groups join diagonally, across blocked corners, as in ConnectivityIndex
+	private final int[][] edge;//label of each edge vertex of each block (see ringIndex), -1 if blocked
+	private int[] labelParent = new int[64];//union-find over labels
+	private int labels;
+	private final int[] mark;//flood fill stamps for one block
+	private int markGeneration;
+	private int[] queue = new int[64];//block-local indices
+	public long buildNanos;
+
+	public TileComponents(Grid _grid, Connectivity c, int _blockShift) {
+		long t0 = System.nanoTime();
+		grid = _grid;
+		connectivity = c;
+		blockShift = _blockShift;
+		version = grid.version;
+		diagonal = c.directions == 8 && c.cutsCorners;
+		int side = 1 << blockShift;
+		blocksX = (grid.width + side - 1) >> blockShift;
+		blocksY = (grid.height + side - 1) >> blockShift;
+		edge = new int[blocksX * blocksY][];
+		mark = new int[Math.min(side, grid.width) * Math.min(side, grid.height)];
+		for (int by=0; by<blocksY; by++) {
+			for (int bx=0; bx<blocksX; bx++) build(bx, by);
+		}
+		buildNanos = System.nanoTime() - t0;
+	}
+	/**
+	 * True if the labels still match the grid.
+	 */
+	public boolean isCurrent() {
+		return version == grid.version;
+	}
+	public long bytes() {
+		long n = 4L * labelParent.length + 4L * mark.length;
+		for (int[] e : edge) n += 4L * e.length;
+		return n;
+	}
+	/**
+	 * True if a path may exist from (ax, ay) to (bx, by), false only if
+	 * there is none.
+	 */
+	public boolean connected(int ax, int ay, int bx, int by) {
+		if (grid.isBlocked(ax, ay) || grid.isBlocked(bx, by)) return false;
+		int la = reach(ax, ay, bx, by);
+		if (la == Integer.MAX_VALUE) return true;//met b inside the block
+		if (la < 0) return false;//a's group never leaves its block, and b isn't in it
+		int lb = reach(bx, by, -1, -1);
+		return lb >= 0 && find(la) == find(lb);
+	}
+	/**
+	 * Labels the edge vertices of block (bx, by) and joins them to those of
+	 * the blocks before it, which share every edge with a later block.
+	 */
+	private void build(int bx, int by) {
+		int x0 = bx << blockShift, y0 = by << blockShift;
+		int w = blockWidth(bx), h = blockHeight(by);
+		int[] ring = new int[2*w + 2*h];
+		Arrays.fill(ring, -1);
+		edge[by*blocksX + bx] = ring;
+		nextMark();
+		for (int i=0; i<ring.length; i++) {
+			int lx = ringX(i, w, h), ly = ringY(i, w, h);
+			if (ring[i] >= 0 || mark[ly*w + lx] == markGeneration || grid.isBlocked(x0 + lx, y0 + ly)) continue;
+			fill(x0, y0, w, h, lx, ly, newLabel(), ring, -1);
+		}
+		int directions = diagonal ? 8 : 4;
+		int block = by*blocksX + bx;
+		for (int i=0; i<ring.length; i++) {
+			if (ring[i] < 0) continue;
+			int x = x0 + ringX(i, w, h), y = y0 + ringY(i, w, h);
+			for (int d=0; d<directions; d++) {
+				int nx = x + Connectivity.DX[d], ny = y + Connectivity.DY[d];
+				if (nx < 0 || nx >= grid.width || ny < 0 || ny >= grid.height) continue;
+				int nb = (ny >> blockShift) * blocksX + (nx >> blockShift);
+				if (nb >= block) continue;//same block, or one not built yet which joins to this one itself
+				int ln = edgeLabel(nx, ny);
+				if (ln >= 0) union(ring[i], ln);
+			}
+		}
+	}
+	/**
+	 * Floods from (x, y) inside its block. Returns Integer.MAX_VALUE if it
+	 * met (tx, ty), else the label of an edge vertex it met, or -1 if none.
+	 */
+	private int reach(int x, int y, int tx, int ty) {
+		int bx = x >> blockShift, by = y >> blockShift;
+		int x0 = bx << blockShift, y0 = by << blockShift;
+		int w = blockWidth(bx), h = blockHeight(by);
+		boolean sameBlock = tx >> blockShift == bx && ty >> blockShift == by && tx >= 0;
+		int target = sameBlock ? (ty - y0)*w + tx - x0 : -1;
+		int l = edgeLabel(x, y);
+		if (l >= 0 && !sameBlock) return l;
+		nextMark();
+		return fill(x0, y0, w, h, x - x0, y - y0, -1, edge[by*blocksX + bx], target);
+	}
+	/**
+	 * Flood fills the open vertices of the w x h block at (x0, y0) joined to
+	 * block vertex (lx, ly). If label is at least 0, gives every edge
+	 * vertex reached that label and returns it. Otherwise stops at target
+	 * (a block-local index), returning Integer.MAX_VALUE, or at the first
+	 * edge vertex if there is no target, returning its label; -1 if neither
+	 * is reached.
+	 */
+	private int fill(int x0, int y0, int w, int h, int lx, int ly, int label, int[] ring, int target) {
+		int directions = diagonal ? 8 : 4;
+		int found = -1;
+		int head = 0, tail = 0;
+		queue[tail++] = ly*w + lx;
+		mark[ly*w + lx] = markGeneration;
+		while (head < tail) {
+			int cur = queue[head++];
+			int cx = cur % w, cy = cur / w;
+			if (cur == target) return Integer.MAX_VALUE;
+			if (cx == 0 || cy == 0 || cx == w - 1 || cy == h - 1) {
+				if (label >= 0) {
+					setRing(ring, cx, cy, w, h, label);
+				} else if (found < 0) {
+					found = ring[ringIndex(cx, cy, w, h)];
+					if (target < 0) return found;
+				}
+			}
+			for (int d=0; d<directions; d++) {
+				int nx = cx + Connectivity.DX[d], ny = cy + Connectivity.DY[d];
+				if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
+				int n = ny*w + nx;
+				if (mark[n] == markGeneration || grid.isBlocked(x0 + nx, y0 + ny)) continue;
+				mark[n] = markGeneration;
+				if (tail == queue.length) {
+					if (head > queue.length / 2) {//slide the unread part down instead of growing
+						System.arraycopy(queue, head, queue, 0, tail - head);
+						tail -= head;
+						head = 0;
+					} else {
+						queue = Arrays.copyOf(queue, queue.length*2);
+					}
+				}
+				queue[tail++] = n;
+			}
+		}
+		return label >= 0 ? label : found;
+	}
+	private int blockWidth(int bx) {
+		return Math.min(1 << blockShift, grid.width - (bx << blockShift));
+	}
+	private int blockHeight(int by) {
+		return Math.min(1 << blockShift, grid.height - (by << blockShift));
+	}
+	/**
+	 * Label of edge vertex (x, y) of its block, -1 if it is blocked or not
+	 * on the edge.
+	 */
+	private int edgeLabel(int x, int y) {
+		int bx = x >> blockShift, by = y >> blockShift;
+		int w = blockWidth(bx), h = blockHeight(by);
+		int lx = x - (bx << blockShift), ly = y - (by << blockShift);
+		if (lx != 0 && ly != 0 && lx != w - 1 && ly != h - 1) return -1;
+		return edge[by*blocksX + bx][ringIndex(lx, ly, w, h)];
+	}
+	/*
+	 * An edge ring holds the top row, the bottom row, the left column and
+	 * the right column, so corners appear twice.
+	 */
+	private static int ringIndex(int lx, int ly, int w, int h) {
+		if (ly == 0) return lx;
+		if (ly == h - 1) return w + lx;
+		if (lx == 0) return 2*w + ly;
+		return 2*w + h + ly;
+	}
+	private static void setRing(int[] ring, int lx, int ly, int w, int h, int label) {
+		if (ly == 0) ring[lx] = label;
+		if (ly == h - 1) ring[w + lx] = label;
+		if (lx == 0) ring[2*w + ly] = label;
+		if (lx == w - 1) ring[2*w + h + ly] = label;
+	}
+	private static int ringX(int i, int w, int h) {
+		if (i < 2*w) return i < w ? i : i - w;
+		return i < 2*w + h ? 0 : w - 1;
+	}
+	private static int ringY(int i, int w, int h) {
+		if (i < 2*w) return i < w ? 0 : h - 1;
+		return i < 2*w + h ? i - 2*w : i - 2*w - h;
+	}
+	private int find(int l) {
+		while (labelParent[l] != l) {
+			labelParent[l] = labelParent[labelParent[l]];
+			l = labelParent[l];
+		}
+		return l;
+	}
+	private void union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a != b) labelParent[a] = b;
+	}
+	private int newLabel() {
+		if (labels == labelParent.length) labelParent = Arrays.copyOf(labelParent, labels*2);
+		labelParent[labels] = labels;
+		return labels++;
+	}
+	private void nextMark() {
+		markGeneration++;
+		if (markGeneration == 0) {
+			Arrays.fill(mark, 0);
+			markGeneration = 1;
+		}
+	}
+	@Override
+	public String toString() {
+		return "TileComponents "+blocksX+"x"+blocksY+" blocks of "+(1 << blockShift)+", "+labels+" labels, "
+				+buildNanos / 1000000+"ms, "+String.format("%.1f", bytes() / 1048576.0)+"MB";
+	}
+}
@@ -0,0 +1,318 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Grid kept in a file as square tiles, for maps too big for the heap.
+ * Only a fixed number of tiles are held in memory at once. A tile is read
+ * in the first time a vertex on it is looked at (a tile fault), and the
+ * least recently used tile makes room for it, being written back first
+ * if it was changed.
+ *
+ * The file is a MapFile header flagged tiled, then each tile in row
+ * order, each tile holding its vertices' bits in row order.
+ * As a RowSink it takes whole rows, e.g. from EllerMaze; that needs a
+ * cache of at least tilesX tiles to avoid reading tiles back in.
+ *
+ * A tiled map may have more than Integer.MAX_VALUE vertices, which have
+ * no int index: address them by x and y (isBlocked(x, y), setBlocked(x,
+ * y, b), row). On such a map index and size throw, and listeners are told
+ * the grid changed rather than about each vertex.
+ * Not safe for use by more than one thread at once.
+ * @author Michael A. Long
+ *
+ */
+public class TiledGrid extends Grid {
+	public final int tileShift;//tiles are 1 << tileShift vertices square
+	public final int tilesX;
+	public final int tilesY;
+	private final int tileMask;
+	private final boolean indexed;//every vertex has an int index
+	private final int tileWords;//longs per tile
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final ByteBuffer io;//one tile's bytes, for reading and writing
+	private final int[] tileSlot;//cache slot holding each tile, -1 if none
+	private final long[][] slotWords;
+	private final int[] slotTile;//tile in each slot, -1 if empty
+	private final boolean[] slotDirty;
+	private final long[] slotUsed;//clock value at last use, for LRU
+	private long clock;
+	private int lastTile = -1;//most recently looked up tile, checked first
+	private long[] lastWords;
+	public long tileFaults;//tiles read from the file
+	public long tileHits;//lookups of another tile which was already in memory
+
+	private TiledGrid(RandomAccessFile _file, int _width, int _height, int _tileShift, int cacheTiles, boolean _readOnly) {
+		super(_width, _height, _readOnly);
+		file = _file;
+		channel = file.getChannel();
+		tileShift = _tileShift;
+		tileMask = (1 << tileShift) - 1;
+		indexed = (long)width * height <= Integer.MAX_VALUE;
+		tilesX = (int)(((long)width + tileMask) >> tileShift);
+		tilesY = (int)(((long)height + tileMask) >> tileShift);
+		tileWords = Math.max(1, (1 << (2*tileShift)) >>> 6);
+		io = ByteBuffer.allocateDirect(tileWords * 8).order(ByteOrder.LITTLE_ENDIAN);
+		tileSlot = new int[tilesX * tilesY];
+		Arrays.fill(tileSlot, -1);
+		int slots = Math.max(1, Math.min(cacheTiles, tileSlot.length));
+		slotWords = new long[slots][];
+		slotTile = new int[slots];
+		Arrays.fill(slotTile, -1);
+		slotDirty = new boolean[slots];
+		slotUsed = new long[slots];
+	}
+	/**
+	 * Makes a new tiled map file with every vertex open.
+	 * @param tileShift tiles are 1 << tileShift vertices square, e.g. 8 for 256
+	 * @param cacheTiles most tiles to hold in memory at once
+	 */
+	public static TiledGrid create(File f, int width, int height, int tileShift, int cacheTiles) throws IOException {
+		checkSize(width, height, tileShift);
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		TiledGrid g = new TiledGrid(raf, width, height, tileShift, cacheTiles, false);
+		raf.setLength(0);
+		ByteBuffer header = ByteBuffer.allocate(MapFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MapFile.MAGIC).putInt(MapFile.FORMAT_VERSION).putInt(width).putInt(height)
+			.putInt(MapFile.FLAG_TILED).putInt(tileShift).putInt(0).putInt(0);
+		header.flip();
+		g.channel.write(header, 0);
+		raf.setLength(g.offset(g.tileSlot.length));//unwritten tiles read back as zeros, all open
+		return g;
+	}
+	/**
+	 * Opens a tiled map file made by create.
+	 * @param cacheTiles most tiles to hold in memory at once
+	 */
+	public static TiledGrid open(File f, int cacheTiles, boolean writable) throws IOException {
+		int[] header = MapFile.readHeader(f);
+		if (header == null || (header[4] & MapFile.FLAG_TILED) == 0) throw new IOException(f+" is not a tiled map");
+		if (header[1] != MapFile.FORMAT_VERSION) throw new IOException(f+" has unsupported format version "+header[1]);
+		try {
+			checkSize(header[2], header[3], header[5]);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(f+": "+e.getMessage());
+		}
+		RandomAccessFile raf = new RandomAccessFile(f, writable ? "rw" : "r");
+		TiledGrid g = new TiledGrid(raf, header[2], header[3], header[5], cacheTiles, !writable);
+		if (raf.length() < g.offset(g.tileSlot.length)) {
+			raf.close();
+			throw new IOException(f+" is truncated");
+		}
+		return g;
+	}
+	/**
+	 * Throws if a map of width x height can't be tiled 1 << tileShift
+	 * square: one tile must fit an array, and the tiles must be numbered
+	 * with ints.
+	 */
+	private static void checkSize(int width, int height, int tileShift) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("bad dimensions "+width+"x"+height);
+		if (tileShift < 0 || tileShift > 15) throw new IllegalArgumentException("tile size shift "+tileShift+" is not 0 to 15");
+		long side = 1L << tileShift;
+		long tiles = ((width + side - 1) >> tileShift) * ((height + side - 1) >> tileShift);
+		if (tiles > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException(width+"x"+height+" needs "+tiles+" tiles of "+side+", too many; use bigger tiles");
+		}
+	}
+	/**
+	 * Copies src into a new tiled map file.
+	 */
+	public static TiledGrid copyOf(Grid src, File f, int tileShift, int cacheTiles) throws IOException {
+		TiledGrid g = create(f, src.width, src.height, tileShift, cacheTiles);
+		for (int y=0; y<src.height; y++) {
+			for (int x=0; x<src.width; x++) {
+				if (src.isBlocked(x, y)) g.setBlocked(x, y, true);
+			}
+		}
+		g.flush();
+		return g;
+	}
+	private long offset(int tile) {
+		return MapFile.HEADER_SIZE + (long)tile * tileWords * 8;
+	}
+	/**
+	 * Words of a tile, reading it in if it isn't in memory.
+	 */
+	private long[] tile(int t) {
+		if (t == lastTile) return lastWords;
+		int slot = tileSlot[t];
+		if (slot >= 0) {
+			tileHits++;
+		} else {
+			tileFaults++;
+			slot = 0;
+			for (int s=1; s<slotTile.length; s++) {
+				if (slotUsed[s] < slotUsed[slot]) slot = s;
+			}
+			try {
+				if (slotTile[slot] >= 0) evict(slot);
+				if (slotWords[slot] == null) slotWords[slot] = new long[tileWords];
+				io.clear();
+				long pos = offset(t);
+				while (io.hasRemaining()) {
+					if (channel.read(io, pos + io.position()) < 0) break;
+				}
+				io.flip();
+				io.asLongBuffer().get(slotWords[slot]);
+			} catch (IOException e) {
+				throw new RuntimeException("reading tile "+t, e);
+			}
+			slotTile[slot] = t;
+			tileSlot[t] = slot;
+		}
+		slotUsed[slot] = ++clock;
+		lastTile = t;
+		lastWords = slotWords[slot];
+		return lastWords;
+	}
+	private void evict(int slot) throws IOException {
+		int t = slotTile[slot];
+		if (slotDirty[slot]) write(t, slotWords[slot]);
+		slotDirty[slot] = false;
+		tileSlot[t] = -1;
+		slotTile[slot] = -1;
+		if (lastTile == t) lastTile = -1;
+	}
+	private void write(int t, long[] words) throws IOException {
+		io.clear();
+		io.asLongBuffer().put(words);
+		long pos = offset(t);
+		while (io.hasRemaining()) channel.write(io, pos + io.position());
+	}
+	private int tileOf(int x, int y) {
+		return (y >> tileShift) * tilesX + (x >> tileShift);
+	}
+	@Override
+	public int size() {
+		if (!indexed) throw new UnsupportedOperationException(width+"x"+height+" has more vertices than an int counts");
+		return width * height;
+	}
+	@Override
+	public int index(int x, int y) {
+		if (!indexed) throw new UnsupportedOperationException(width+"x"+height+" vertices have no int index, use x and y");
+		return y*width + x;
+	}
+	@Override
+	public boolean isBlocked(int idx) {
+		return isBlocked(idx % width, idx / width);
+	}
+	@Override
+	public boolean isBlocked(int x, int y) {
+		long[] words = tile(tileOf(x, y));
+		int local = ((y & tileMask) << tileShift) | (x & tileMask);
+		return (words[local >>> 6] & (1L << local)) != 0;
+	}
+	@Override
+	public long word(int i) {
+		long w = 0;
+		int end = Math.min(size(), (i + 1) << 6);
+		for (int idx=i << 6; idx<end; idx++) {
+			if (isBlocked(idx)) w |= 1L << idx;
+		}
+		return w;
+	}
+	@Override
+	public void setBlocked(int idx, boolean b) {
+		setBlocked(idx % width, idx / width, b);
+	}
+	@Override
+	public void setBlocked(int x, int y, boolean b) {
+		if (isReadOnly()) throw new UnsupportedOperationException("Grid is read-only");
+		int t = tileOf(x, y);
+		long[] words = tile(t);
+		int local = ((y & tileMask) << tileShift) | (x & tileMask);
+		long word = words[local >>> 6];
+		long changed = b ? word | (1L << local) : word & ~(1L << local);
+		if (changed != word) {
+			words[local >>> 6] = changed;
+			slotDirty[tileSlot[t]] = true;
+			if (indexed) {
+				fireCellChanged(y*width + x, b);
+			} else {
+				version++;
+				fireGridChanged();
+			}
+		}
+	}
+	@Override
+	public void fill(boolean b) {
+		if (isReadOnly()) throw new UnsupportedOperationException("Grid is read-only");
+		long[] words = new long[tileWords];
+		Arrays.fill(words, b ? -1L : 0L);
+		try {
+			for (int s=0; s<slotTile.length; s++) {
+				if (slotTile[s] >= 0) tileSlot[slotTile[s]] = -1;
+				slotTile[s] = -1;
+				slotDirty[s] = false;
+			}
+			lastTile = -1;
+			for (int t=0; t<tileSlot.length; t++) write(t, words);
+		} catch (IOException e) {
+			throw new RuntimeException("filling tiles", e);
+		}
+		version++;
+		fireGridChanged();
+	}
+	/**
+	 * Sets row y from packed bits, a tile at a time. Listeners are told
+	 * the grid changed rather than about each vertex.
+	 */
+	@Override
+	public void row(int y, long[] blocked) {
+		if (isReadOnly()) throw new UnsupportedOperationException("Grid is read-only");
+		int side = 1 << tileShift;
+		int ly = y & tileMask;
+		for (int tx=0; tx<tilesX; tx++) {
+			int t = (y >> tileShift) * tilesX + tx;
+			long[] words = tile(t);
+			int x0 = tx << tileShift;
+			if (tileShift >= 6) {//tile rows are whole words, lined up with the row's
+				int perRow = side >>> 6;
+				for (int k=0; k<perRow; k++) {
+					int src = (x0 >>> 6) + k;
+					words[ly*perRow + k] = src < blocked.length ? blocked[src] : 0L;
+				}
+			} else {
+				for (int lx=0; lx<side && x0+lx<width; lx++) {
+					int x = x0 + lx, local = (ly << tileShift) | lx;
+					if ((blocked[x >>> 6] & (1L << x)) != 0) words[local >>> 6] |= 1L << local;
+					else words[local >>> 6] &= ~(1L << local);
+				}
+			}
+			slotDirty[tileSlot[t]] = true;
+		}
+		version++;
+		fireGridChanged();
+	}
+	/**
+	 * Writes changed tiles back to the file.
+	 */
+	public void flush() throws IOException {
+		for (int s=0; s<slotTile.length; s++) {
+			if (slotTile[s] >= 0 && slotDirty[s]) {
+				write(slotTile[s], slotWords[s]);
+				slotDirty[s] = false;
+			}
+		}
+	}
+	/**
+	 * Flushes, then closes the file.
+	 */
+	public void close() throws IOException {
+		if (!isReadOnly()) flush();
+		file.close();
+	}
+	/**
+	 * Fraction of tile lookups answered from memory.
+	 */
+	public double hitRatio() {
+		long total = tileHits + tileFaults;
+		return total == 0 ? 1.0 : (double)tileHits / total;
+	}
+}
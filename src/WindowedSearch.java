@@ -0,0 +1,185 @@
+/**
+ * Finds paths on grids too big to give every vertex search bookkeeping,
+ * such as a TiledGrid, by running an ordinary AStarSearch on a GridWindow
+ * around the start and goal.
+ *
+ * The window first covers the box around the start and goal plus a margin.
+ * Any path which leaves it passes a vertex just outside, so costs at least
+ * the least estimate through one of those. If the path found inside is no
+ * dearer than that, it is the shortest path; otherwise, or if none was
+ * found, the margin is doubled and the search run again.
+ *
+ * A window's search takes about 21 bytes per vertex of it, so windows
+ * stop growing at maxWindow vertices: a query which needs a bigger one
+ * fails with windowLimited set, though a path may exist. Failing in a
+ * window proves nothing, so before searching, start and goal are checked
+ * against a TileComponents of the grid (built by the first query, in one
+ * pass over the grid, and again after the grid changes), and a query
+ * between unconnected vertices fails at once with unreachable set.
+ *
+ * Start, goal and path are given by x and y, so grids with more vertices
+ * than an int index reaches can be searched.
+ * On a TiledGrid, the tile faults and hits of the last query are recorded.
+ * @author Michael A. Long
+ *
+ */
+public class WindowedSearch {
+	private static final int ROUND = 64;//window sizes are rounded up to a multiple of this, so searches can be reused
+	public static final long MAX_WINDOW = 1L << 24;//default maxWindow, about 350MB of search bookkeeping
+
+	public final Grid grid;
+	public Connectivity connectivity;
+	public Heuristic heuristicType;
+	public int initialMargin;//vertices around the start and goal in the first window
+	public long maxWindow = MAX_WINDOW;//most vertices a window may cover
+	public int componentBlockShift;//block size of components, 1 << this
+	public TileComponents components;//rejects unconnected queries, built when first needed
+	private GridWindow window;
+	private AStarSearch search;//on window, kept while windows stay the same size
+	private int[] pathX;//vertices of the last path found
+	private int[] pathY;
+	public float cost;//of the last path found
+	public int expanded;//vertices expanded by the last query, over all its windows
+	public int windows;//windows searched by the last query
+	public boolean unreachable;//the last query failed because start and goal aren't connected
+	public boolean windowLimited;//the last query failed because it needed a window over maxWindow
+	public long tileFaults;//tiles read in by the last query
+	public long tileHits;
+
+	public WindowedSearch(Grid _grid, int _initialMargin) {
+		grid = _grid;
+		initialMargin = _initialMargin;
+		componentBlockShift = Math.max(10, grid instanceof TiledGrid ? ((TiledGrid)grid).tileShift : 0);
+		setConnectivity(Connectivity.FOUR);
+	}
+	public void setConnectivity(Connectivity c) {
+		connectivity = c;
+		heuristicType = c.defaultHeuristic();
+	}
+	/**
+	 * Searches from vertex start to vertex goal, returning true if there is a path.
+	 */
+	public boolean findPath(int start, int goal) {
+		return findPath(grid.xOf(start), grid.yOf(start), grid.xOf(goal), grid.yOf(goal));
+	}
+	/**
+	 * Searches from (sx, sy) to (gx, gy), returning true if there is a path.
+	 */
+	public boolean findPath(int sx, int sy, int gx, int gy) {
+		TiledGrid tiled = grid instanceof TiledGrid ? (TiledGrid)grid : null;
+		long faults0 = tiled != null ? tiled.tileFaults : 0;
+		long hits0 = tiled != null ? tiled.tileHits : 0;
+		pathX = null;
+		pathY = null;
+		cost = Float.POSITIVE_INFINITY;
+		expanded = 0;
+		windows = 0;
+		unreachable = false;
+		windowLimited = false;
+		if (components == null || !components.isCurrent() || components.connectivity != connectivity) {
+			components = new TileComponents(grid, connectivity, componentBlockShift);
+		}
+		unreachable = !components.connected(sx, sy, gx, gy);
+		int margin = Math.max(1, initialMargin);
+		while (!unreachable) {
+			int x0 = Math.max(0, Math.min(sx, gx) - margin);
+			int y0 = Math.max(0, Math.min(sy, gy) - margin);
+			int x1 = Math.min(grid.width, Math.max(sx, gx) + margin + 1);
+			int y1 = Math.min(grid.height, Math.max(sy, gy) + margin + 1);
+			int w = Math.min(grid.width, round(x1 - x0));
+			int h = Math.min(grid.height, round(y1 - y0));
+			x0 = Math.min(x0, grid.width - w);//keep the rounded window inside the grid
+			y0 = Math.min(y0, grid.height - h);
+			boolean whole = w == grid.width && h == grid.height;
+			if ((long)w * h > maxWindow) {
+				windowLimited = true;
+				break;
+			}
+			if (search == null || window.width != w || window.height != h) {
+				window = new GridWindow(grid, w, h);
+				search = new AStarSearch(window);
+			}
+			window.moveTo(x0, y0);
+			search.setConnectivity(connectivity);
+			search.heuristicType = heuristicType;
+			search.init(window.fromSource(sx, sy), window.fromSource(gx, gy));
+			boolean found = search.runAStar();
+			expanded += search.expanded;
+			windows++;
+			if (found) {
+				float c = search.state.G[search.goal];
+				if (whole || c <= boundOutside(x0, y0, w, h, sx, sy, gx, gy)) {
+					int[] p = search.path();
+					pathX = new int[p.length];
+					pathY = new int[p.length];
+					for (int i=0; i<p.length; i++) {
+						pathX[i] = x0 + p[i] % w;
+						pathY[i] = y0 + p[i] / w;
+					}
+					cost = c;
+					break;
+				}
+			}
+			if (whole) break;
+			margin *= 2;
+		}
+		if (tiled != null) {
+			tileFaults = tiled.tileFaults - faults0;
+			tileHits = tiled.tileHits - hits0;
+		}
+		return pathX != null;
+	}
+	private static int round(int n) {
+		return (n + ROUND - 1) / ROUND * ROUND;
+	}
+	private float estimate(int ax, int ay, int bx, int by) {
+		return heuristicType.estimate(Math.abs(ax - bx), Math.abs(ay - by));
+	}
+	/**
+	 * Least estimated cost of a path from (sx,sy) to (gx,gy) through a
+	 * vertex just outside the window, a lower bound on any path which
+	 * leaves it.
+	 */
+	private float boundOutside(int x0, int y0, int w, int h, int sx, int sy, int gx, int gy) {
+		float best = Float.POSITIVE_INFINITY;
+		int left = x0 - 1, right = x0 + w, top = y0 - 1, bottom = y0 + h;
+		for (int x=Math.max(0, left); x<=Math.min(grid.width-1, right); x++) {
+			if (top >= 0) best = Math.min(best, estimate(sx, sy, x, top) + estimate(x, top, gx, gy));
+			if (bottom < grid.height) best = Math.min(best, estimate(sx, sy, x, bottom) + estimate(x, bottom, gx, gy));
+		}
+		for (int y=Math.max(0, top); y<=Math.min(grid.height-1, bottom); y++) {
+			if (left >= 0) best = Math.min(best, estimate(sx, sy, left, y) + estimate(left, y, gx, gy));
+			if (right < grid.width) best = Math.min(best, estimate(sx, sy, right, y) + estimate(right, y, gx, gy));
+		}
+		return best;
+	}
+	/**
+	 * The vertices of the last path found, from start to goal, or null.
+	 * Needs a grid whose vertices have int indices.
+	 */
+	public int[] path() {
+		if (pathX == null) return null;
+		int[] path = new int[pathX.length];
+		for (int i=0; i<path.length; i++) path[i] = grid.index(pathX[i], pathY[i]);
+		return path;
+	}
+	/**
+	 * The x of each vertex of the last path found, from start to goal, or null.
+	 */
+	public int[] pathX() {
+		return pathX;
+	}
+	/**
+	 * The y of each vertex of the last path found, from start to goal, or null.
+	 */
+	public int[] pathY() {
+		return pathY;
+	}
+	/**
+	 * Fraction of the last query's tile lookups answered from memory.
+	 */
+	public double hitRatio() {
+		long total = tileHits + tileFaults;
+		return total == 0 ? 1.0 : (double)tileHits / total;
+	}
+}
@@ -1,9 +1,11 @@
-import java.util.ArrayList;
-import java.util.PriorityQueue;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
- * Holds the Nodes which represent the vertices for this simulation.
+ * Holds the vertices for this simulation, stored as flat primitive arrays
+ * indexed by y*width+x (see Grid and SearchState).
  * Contains maze generating routines, and A* path finding
  * @author Michael A. Long
  *
@@ -16,142 +18,318 @@ public class World {
 	public int endX;
 	public int endY;
 	public boolean hasSolution;
-	public Node[][] grid;
-	public PriorityQueue<Node> openqueue;
-	
+	public Grid grid;//which vertices are blocked
+	public AStarSearch search;//path finding over grid, null until the first search or aStarSearch()
+	public SearchState state;//A* bookkeeping for each vertex, the same as search.state
+	public OpenList openqueue;//the same as search.open
+	public OpenListType openListType;
+	public Connectivity connectivity;//which moves A* may make
+	public Heuristic heuristicType;//estimate of the remaining distance
+	public SearchMode searchMode;//algorithm used by runSearch
+	public DStarLite planner;//kept between searches in INCREMENTAL mode, created when first needed
+	public HierarchicalSearch hierarchical;//cluster graph for HIERARCHICAL mode, created when first needed
+	public DistanceFieldCache fields;//distance fields by goal, for FLOW_FIELD mode and agents, created when first needed
+	private int[] flowPath;//the last runSearch's path in FLOW_FIELD mode
+	public PathCache cache;//repeat queries are answered from here, null unless enablePathCache was called
+	private int[] cachedPath;//the last runSearch's path, if it came from cache
+	private SteppedSearch stepped;//reused by beginSteppedSearch
+	public ConnectivityIndex components;//answers "no path" between unconnected vertices without searching
+	private boolean unreachable;//the last runSearch was answered by components
+	public final SearchStats stats = new SearchStats();//counters of the last runSearch, kept only while there are search listeners
+	private SearchListener[] searchListeners = new SearchListener[0];
+	public Random rand;//used by the maze generators, a MazeRandom unless replaced
+
 	public World(int _width, int _height) {
-		width = _width;
-		height = _height;
+		this(new Grid(_width, _height));
+	}
+	/**
+	 * World over an existing grid, e.g. one opened with MapFile.
+	 * The maze generators need a grid which isn't read-only.
+	 * Nothing is allocated per vertex here: the search state and open
+	 * list are created by the first search, and components labels the
+	 * grid on its first query.
+	 */
+	public World(Grid _grid) {
+		grid = _grid;
+		width = grid.width;
+		height = grid.height;
 		startX = startY = endX = endY = -1;
-		grid = new Node[height][width];
-		for (int y=0; y<height; y++) {
-			for (int x=0; x<width; x++) {
-				grid[y][x] = new Node();
-				grid[y][x].blocked = false;
-				grid[y][x].parent = null;
-				grid[y][x].status = NodeStatus.UNSEEN;
-				grid[y][x].xloc = x;
-				grid[y][x].yloc = y;
+		components = new ConnectivityIndex(grid, Connectivity.FOUR);
+		setOpenListType(OpenListType.INDEXED_HEAP);
+		setConnectivity(Connectivity.FOUR);
+		searchMode = SearchMode.ASTAR;
+		rand = new MazeRandom(System.nanoTime());
+	}
+	/**
+	 * Opens a map saved with save, memory mapped rather than read in.
+	 * A read-only map can be shared between processes, a writable one
+	 * keeps its changes to itself. Takes milliseconds whatever the size,
+	 * as the search state isn't allocated until the first search.
+	 */
+	public static World load(File file, boolean writable) throws IOException {
+		return new World(MapFile.open(file, writable));
+	}
+	/**
+	 * Saves the blocked vertices, and terrain costs if any, in the MapFile format.
+	 */
+	public void save(File file) throws IOException {
+		MapFile.save(grid, grid.costPlane(), file);
+	}
+	/**
+	 * The A* search over grid, with its SearchState and open list, created
+	 * on first use as they cost 21 bytes per vertex.
+	 */
+	public AStarSearch aStarSearch() {
+		if (search == null) {
+			search = new AStarSearch(grid);
+			search.setOpenListType(openListType);
+			if (searchListeners.length > 0) search.stats = stats;
+			state = search.state;
+			openqueue = search.open;
+		}
+		return search;
+	}
+	/**
+	 * Makes the maze generators repeatable from here on.
+	 */
+	public void setSeed(long seed) {
+		rand = new MazeRandom(seed);
+	}
+	/**
+	 * Generates a maze with randomizeWalls, randomizeWalls2 or
+	 * randomizeWalls3 (type 1, 2 or 3) from seed, so the same seed
+	 * always gives the same maze.
+	 */
+	public void randomizeWalls(int type, long seed) {
+		setSeed(seed);
+		if (type == 2) randomizeWalls2();
+		else if (type == 3) randomizeWalls3();
+		else randomizeWalls();
+	}
+	/**
+	 * Sets which moves A* may make, along with the heuristic which best
+	 * fits them. setHeuristic can pick a different one afterwards.
+	 */
+	public void setConnectivity(Connectivity c) {
+		connectivity = c;
+		heuristicType = c.defaultHeuristic();
+		components.setConnectivity(c);
+		if (cache != null) cache.clear();
+		if (fields != null) fields.setConnectivity(c);
+	}
+	public void setHeuristic(Heuristic h) {
+		heuristicType = h;
+		if (cache != null) cache.clear();
+	}
+	/**
+	 * Makes runSearch remember up to capacity paths, least recently used
+	 * first out, and answer repeat queries from them until the grid
+	 * changes near a path. Zero turns the cache off.
+	 */
+	public void enablePathCache(int capacity) {
+		if (cache != null) cache.dispose();
+		cache = capacity > 0 ? new PathCache(grid, capacity) : null;
+	}
+	/**
+	 * Has l told about every runSearch from now on, with its SearchStats.
+	 * With no listeners, runSearch doesn't collect stats at all.
+	 */
+	public void addSearchListener(SearchListener l) {
+		searchListeners = Arrays.copyOf(searchListeners, searchListeners.length + 1);
+		searchListeners[searchListeners.length - 1] = l;
+		if (search != null) search.stats = stats;
+	}
+	public void removeSearchListener(SearchListener l) {
+		for (int i=0; i<searchListeners.length; i++) {
+			if (searchListeners[i] == l) {
+				SearchListener[] rest = new SearchListener[searchListeners.length - 1];
+				System.arraycopy(searchListeners, 0, rest, 0, i);
+				System.arraycopy(searchListeners, i + 1, rest, i, rest.length - i);
+				searchListeners = rest;
+				break;
 			}
 		}
-		openqueue = new PriorityQueue<Node>(30,new CostComparator());
+		if (searchListeners.length == 0 && search != null) search.stats = null;
 	}
 	/**
-	 * Distance estimation heuristic
-	 * Manhattan distance (Euclidean is commented).
+	 * Picks the algorithm runSearch uses. The Jump Point Search modes
+	 * switch connectivity to EIGHT_NO_CORNER_CUTTING, which they require.
+	 */
+	public void setSearchMode(SearchMode mode) {
+		searchMode = mode;
+		if (cache != null) cache.clear();
+		if (mode != SearchMode.INCREMENTAL && planner != null) {
+			planner.dispose();//stop collecting edits nobody will replan for
+			planner = null;
+		}
+		if (mode != SearchMode.HIERARCHICAL && hierarchical != null) {
+			hierarchical.dispose();
+			hierarchical = null;
+		}
+		if (mode.isJumpPoint() && connectivity != Connectivity.EIGHT_NO_CORNER_CUTTING) {
+			setConnectivity(Connectivity.EIGHT_NO_CORNER_CUTTING);
+		}
+	}
+	/**
+	 * Switches the open list implementation used by runAStar.
+	 * Takes effect from the next initAStar/reinitAStar.
+	 */
+	public void setOpenListType(OpenListType type) {
+		openListType = type;
+		if (search != null) {
+			search.setOpenListType(type);
+			openqueue = search.open;
+		}
+	}
+	/**
+	 * Distance estimation heuristic, from heuristicType.
+	 */
+	public float heuristic(int idx) {
+		return aStarSearch().heuristic(idx);
+	}
+	/**
+	 * Computes H for every vertex up front. A* no longer needs this,
+	 * as it computes H when it first reaches a vertex.
 	 */
 	public void setHeuristicAll() {
-		for (int y=0; y<height; y++) {
-			for (int x=0; x<width; x++) {
-				int xdiff = Math.abs(grid[y][x].xloc - grid[endY][endX].xloc);
-				int ydiff = Math.abs(grid[y][x].yloc - grid[endY][endX].yloc);
-				//int diffSquared = (xdiff * xdiff) + (ydiff * ydiff);
-				//grid[y][x].H = Math.sqrt((double)diffSquared);
-				grid[y][x].H = xdiff + ydiff;
-			}
+		aStarSearch();
+		int size = grid.size();
+		for (int i=0; i<size; i++) {
+			if (!state.isCurrent(i)) state.touch(i);
+			state.H[i] = heuristic(i);
 		}
 	}
-	public void runAStar() {
-		grid[endY][endX].blocked = false;
-		grid[startY][startX].blocked = false;
-		boolean foundSolution = false;
-		while (!openqueue.isEmpty()) {
-			Node cur = openqueue.remove();
-			if (cur.xloc == endX && cur.yloc == endY) {
-				foundSolution = true;
-				break;
-			}
-			cur.status = NodeStatus.CLOSED;
-			//check all accessible adjacent xNodes
-			ArrayList<Node> neighbors = new ArrayList<>();
-			if (cur.yloc > 0) {//check above
-				Node adj = grid[cur.yloc-1][cur.xloc];//check up
-				if (!adj.blocked)
-					neighbors.add(adj);
-				//uncomment for diagonal pathfinding
-			/*	if (cur.xloc > 0) {
-					adj = grid[cur.yloc-1][cur.xloc-1];//up-left
-					if (!adj.blocked)
-						neighbors.add(adj);
-				}
-				if (cur.xloc < width-1) {
-					adj = grid[cur.yloc-1][cur.xloc+1];//up-right
-					if (!adj.blocked)
-						neighbors.add(adj);
-				}     */
-			}
-			if (cur.yloc < height-1) {//check below
-				Node adj = grid[cur.yloc+1][cur.xloc];//down
-				if (!adj.blocked)
-					neighbors.add(adj);
-				//uncomment for diagonal pathfinding
-			 /*	if (cur.xloc > 0) {
-					adj = grid[cur.yloc+1][cur.xloc-1];//down-left
-					if (!adj.blocked)
-						neighbors.add(adj);
-				}
-				if (cur.xloc < width-1) {
-					adj = grid[cur.yloc+1][cur.xloc+1];//down-right
-					if (!adj.blocked)
-						neighbors.add(adj);
-				}  	*/
-			}
-			if (cur.xloc > 0) {
-				Node adj = grid[cur.yloc][cur.xloc-1];//left
-				if (!adj.blocked)
-					neighbors.add(adj);
-			}
-			if (cur.xloc < width-1) {
-				Node adj = grid[cur.yloc][cur.xloc+1];//right
-				if (!adj.blocked)
-					neighbors.add(adj);
-			}
-			for (Node n : neighbors) {
-				double dist = cur.G + getDistance(cur, n);
-				if (n.status == NodeStatus.UNSEEN) {
-					n.status = NodeStatus.OPEN;					
-					n.G = dist;
-					n.calcF();
-					n.parent = cur;
-					openqueue.add(n);
-				} else { //node previously visited (closed), or queued (open)
-					//update this node if the new cost is lower
-					double totalcost = n.H + dist;
-					if (totalcost < n.F) {
-						if (n.status == NodeStatus.CLOSED) {
-							n.status = NodeStatus.OPEN;
-							n.G = dist;
-							n.calcF();
-							n.parent = cur;
-							openqueue.add(n);
-						} else {//node is currently queued
-							openqueue.remove(n);
-							n.status = NodeStatus.OPEN;
-							n.G = dist;
-							n.calcF();
-							n.parent = cur;
-							openqueue.add(n);							
-						}
-					}
-					
-				}
-			}
+	/**
+	 * Finds a path from start to end with the algorithm in searchMode.
+	 * Call reinitAStar first, as for runAStar.
+	 */
+	public void runSearch() {
+		if (searchListeners.length == 0) {
+			search();
+			return;
 		}
-		if (!foundSolution) {
+		stats.reset();
+		long t0 = System.nanoTime();
+		search();
+		stats.nanos = System.nanoTime() - t0;
+		stats.mode = searchMode;
+		stats.start = grid.index(startX, startY);
+		stats.goal = grid.index(endX, endY);
+		stats.found = hasSolution;
+		stats.cached = cachedPath != null;
+		stats.expanded = expanded();
+		for (SearchListener l : searchListeners) l.searchFinished(this, stats);
+	}
+	private void search() {
+		if (grid.isBlocked(endX, endY)) grid.setBlocked(endX, endY, false);//read-only grids can't be set
+		if (grid.isBlocked(startX, startY)) grid.setBlocked(startX, startY, false);
+		int start = grid.index(startX, startY), end = grid.index(endX, endY);
+		aStarSearch();//every mode leaves its result in state
+		unreachable = false;
+		cachedPath = cache != null ? cache.get(start, end) : null;
+		if (cachedPath != null) {
+			hasSolution = true;
+			state.reset();
+			state.writePath(cachedPath, grid);
+			return;
+		}
+		unreachable = !components.connected(start, end);
+		if (unreachable) {
 			hasSolution = false;
-			//log("failed to find solution");
+			state.reset();
+			return;
+		}
+		if (searchMode == SearchMode.INCREMENTAL) {
+			replan();
+		} else if (searchMode == SearchMode.FLOW_FIELD) {
+			flowPath = distanceField(end).path(start);
+			hasSolution = flowPath != null;
+			state.reset();
+			if (hasSolution) state.writePath(flowPath, grid);
+		} else if (searchMode == SearchMode.HIERARCHICAL) {
+			if (hierarchical == null) hierarchical = new HierarchicalSearch(grid, connectivity);
+			hierarchical.setConnectivity(connectivity);
+			hasSolution = hierarchical.findPath(start, end);
+			state.reset();
+			if (hasSolution) state.writePath(hierarchical.path(), grid);
 		} else {
-			hasSolution = true;
-			//log("found a solution!");
+			search.setMode(searchMode);
+			hasSolution = search.run();
 		}
+		if (cache != null && hasSolution) cache.put(start, end, path());
+	}
+	/**
+	 * Distance field (flow field) towards goal for the current connectivity,
+	 * from the cache if the grid hasn't changed it since it was found.
+	 * Agents heading for goal can each read their next step from it in O(1).
+	 */
+	public DistanceField distanceField(int goal) {
+		if (fields == null) fields = new DistanceFieldCache(grid, connectivity, 16, Runtime.getRuntime().availableProcessors());
+		fields.setConnectivity(connectivity);
+		return fields.get(goal);
+	}
+	/**
+	 * Repairs the incremental planner's search after the start, end or
+	 * blocked vertices changed, then copies it into state for display.
+	 */
+	private void replan() {
+		if (planner == null) planner = new DStarLite(grid, connectivity);
+		planner.setConnectivity(connectivity);
+		planner.setStart(grid.index(startX, startY));
+		planner.setGoal(grid.index(endX, endY));
+		hasSolution = planner.replan();
+		planner.exportTo(state);
+	}
+	/**
+	 * Path found by the last runSearch, from start to end, or null.
+	 */
+	public int[] path() {
+		if (!hasSolution) return null;
+		if (cachedPath != null) return cachedPath;
+		if (searchMode == SearchMode.INCREMENTAL) return planner.path();
+		if (searchMode == SearchMode.FLOW_FIELD) return flowPath;
+		if (searchMode == SearchMode.HIERARCHICAL) return hierarchical.path();
+		return search.path();
+	}
+	/**
+	 * Vertices expanded by the last runSearch.
+	 */
+	public int expanded() {
+		if (cachedPath != null || unreachable || search == null) return 0;
+		if (searchMode == SearchMode.INCREMENTAL) return planner.expanded;
+		if (searchMode == SearchMode.FLOW_FIELD) return fields.lastBuilt ? fields.last.settled : 0;
+		if (searchMode == SearchMode.HIERARCHICAL) return hierarchical.expanded;
+		return search.expanded;
+	}
+	/**
+	 * Starts an A* search from start to end which runs a step at a time,
+	 * e.g. a slice of each frame, instead of all at once. hasSolution is
+	 * left false; set it from the SteppedSearch once it is done.
+	 */
+	public SteppedSearch beginSteppedSearch() {
+		if (grid.isBlocked(endX, endY)) grid.setBlocked(endX, endY, false);
+		if (grid.isBlocked(startX, startY)) grid.setBlocked(startX, startY, false);
+		initAStar();
+		hasSolution = false;
+		cachedPath = null;
+		unreachable = false;
+		if (stepped == null) stepped = new SteppedSearch(search);
+		else stepped.restart();
+		return stepped;
+	}
+	public void runAStar() {
+		if (grid.isBlocked(endX, endY)) grid.setBlocked(endX, endY, false);//read-only grids can't be set
+		if (grid.isBlocked(startX, startY)) grid.setBlocked(startX, startY, false);
+		hasSolution = aStarSearch().runAStar();
 	}
 	public void writeSolution() {
-		Node cur = grid[endY][endX];
-		while (cur != null) {
-			String str = "("+cur.xloc+","+cur.yloc+")";
-			str += "F:"+cur.F+" G:"+cur.G+" H:"+cur.H;
+		if (state == null) return;
+		int cur = grid.index(endX, endY);
+		while (cur != -1) {
+			String str = "("+grid.xOf(cur)+","+grid.yOf(cur)+")";
+			str += "F:"+state.F(cur)+" G:"+state.G[cur]+" H:"+state.H[cur];
 			log(str);
-			cur = cur.parent;
+			cur = state.parentOf(cur);
 		}
 	}
 	public void initAStar() {
@@ -159,43 +337,26 @@ public class World {
 				||startY<0||startY>=height||endY<0||endY>=height) {
 			log("ERROR: invalid initialization values!");
 		}
-		setHeuristicAll();
-		openqueue.clear();
-		grid[startY][startX].G = 0.0;
-		grid[startY][startX].calcF();
-		grid[startY][startX].parent = null;
-		openqueue.add(grid[startY][startX]);
+		aStarSearch().setConnectivity(connectivity);
+		search.heuristicType = heuristicType;
+		search.init(grid.index(startX, startY), grid.index(endX, endY));
 	}
 	/**
 	 * Re-initializes the graph in preparation
-	 * for another A* run.
+	 * for another A* run. Only the open list and a generation
+	 * counter are reset, so this does not depend on the grid size.
 	 */
 	public void reinitAStar() {
-		if (startX<0||startX>=width||endX<0||endX>=width
-				||startY<0||startY>=height||endY<0||endY>=height) {
-			log("ERROR: invalid initialization values!");
-		}
-
-		openqueue.clear();
-		for (int y=0; y<height; y++) {
-			for (int x=0; x<width; x++) {
-				grid[y][x].F = 0.0;
-				grid[y][x].G = 0.0;
-				grid[y][x].H = 0.0;
-				grid[y][x].parent = null;
-				grid[y][x].status = NodeStatus.UNSEEN;
-			}
-		}
-		
-		grid[startY][startX].calcF();		
-		setHeuristicAll();
-		openqueue.add(grid[startY][startX]);
+		initAStar();
 	}
-	public double getDistance(Node n1, Node n2) {
-		int xdiff = Math.abs(n1.xloc - n2.xloc);
-		int ydiff = Math.abs(n1.yloc - n2.yloc);
-		double diffSq = (xdiff * xdiff) + (ydiff * ydiff);
-		return Math.sqrt(diffSq);
+	/**
+	 * Gives every vertex a random terrain cost from 1 to maxCost, leaving
+	 * the blocked vertices as they are.
+	 */
+	public void randomizeCosts(int maxCost) {
+		grid.beginChanges();
+		for (int i=0; i<grid.size(); i++) grid.setCost(i, 1 + rand.nextInt(maxCost));
+		grid.endChanges();
 	}
 	public static void log(String str) {
 		System.out.println(str);
@@ -206,332 +367,169 @@ public class World {
 	 * Passages are generally 1-3 vertices wide.
 	 */
 	public void randomizeWalls3() {
-		for (int y=0; y<height; y++) {
-			for (int x=0; x<width; x++) {
-				grid[y][x].blocked = true;
-				grid[y][x].status = NodeStatus.UNSEEN;
-			}
-		}
-		Random rand = new Random();
-		ArrayList<Node> nearWalls = new ArrayList<>();
-		grid[0][0].blocked = false;
-		nearWalls.add(grid[0][1]);
-		nearWalls.add(grid[1][0]);
+		MazeBits m = new MazeBits(width, height);
+		Frontier nearWalls = new Frontier();
+		m.open(m.at(0, 0));
+		if (width > 1) nearWalls.add(m.at(1, 0));
+		if (height > 1) nearWalls.add(m.at(0, 1));
+		long[] fresh = m.fresh;
+		int stride = m.stride;
 		while (!nearWalls.isEmpty()) {
-			Node cur = nearWalls.remove(rand.nextInt(nearWalls.size()));
-			boolean expanded = false;
-			ArrayList<Integer> order = new ArrayList<>();
-			for (int i=1; i<=4; i++) order.add(new Integer(i));
-			while (!order.isEmpty() && !expanded) {
-				int num = order.remove(rand.nextInt(order.size()));
-				switch (num) {
-				case 1://right
-					if (cur.xloc < width-1) {
-						if (grid[cur.yloc][cur.xloc+1].blocked && grid[cur.yloc][cur.xloc+1].status == NodeStatus.UNSEEN) {
-							cur.blocked = false;
-							expanded = true;
-						}
-					}
-					break;
-				case 2://down
-					if (cur.yloc < height-1) {
-						if (grid[cur.yloc+1][cur.xloc].blocked && grid[cur.yloc+1][cur.xloc].status == NodeStatus.UNSEEN) {
-							cur.blocked = false;
-							expanded = true;
-						}
-					}
-					break;
-				case 3://left
-					if (cur.xloc > 0) {
-						if (grid[cur.yloc][cur.xloc-1].blocked && grid[cur.yloc][cur.xloc-1].status == NodeStatus.UNSEEN) {
-							cur.blocked = false;
-							expanded = true;
-						}
-					}
-					break;
-				case 4://up
-					if (cur.yloc > 0) {
-						if (grid[cur.yloc-1][cur.xloc].blocked && grid[cur.yloc-1][cur.xloc].status == NodeStatus.UNSEEN) {
-							cur.blocked = false;
-							expanded = true;
-						}
-					}
-					break;
-				}
-			
-			}//end while
-			if (!expanded) {
-				cur.status = NodeStatus.CLOSED;
-			} else {
-				if (cur.xloc > 0) {
-					Node nei = grid[cur.yloc][cur.xloc-1];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				if (cur.xloc < width-1) {
-					Node nei = grid[cur.yloc][cur.xloc+1];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				if (cur.yloc > 0) {
-					Node nei = grid[cur.yloc-1][cur.xloc];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				if (cur.yloc < height-1) {
-					Node nei = grid[cur.yloc+1][cur.xloc];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				cur.status = NodeStatus.CLOSED;
-				//System.out.println("closed ("+cur.xloc+","+cur.yloc+")");
-			}
+			int cur = (int)nearWalls.removeRandom(rand);
+			int left = bit(fresh, cur-1), right = bit(fresh, cur+1);
+			int up = bit(fresh, cur-stride), down = bit(fresh, cur+stride);
+			clear(fresh, cur);
+			m.carveFrom(cur, left, right, up, down, nearWalls);
 		}
+		m.copyTo(grid);
+		if (state != null) state.reset();
 	}
 	/**
 	 * Uses a variation of Prim's algorithm for maze generation
 	 * Result is similar to Prim's, but with less regularity in braching
 	 */
 	public void randomizeWalls2() {
-		for (int y=0; y<height; y++) {
-			for (int x=0; x<width; x++) {
-				grid[y][x].blocked = true;
-				grid[y][x].status = NodeStatus.UNSEEN;
-			}
-		}
-		int totalopen = 0;
-		Random rand = new Random();
-		ArrayList<Node> nearWalls = new ArrayList<>();
-		grid[0][0].blocked = false;
-		grid[0][0].status = NodeStatus.CLOSED;
-		nearWalls.add(grid[0][1]);
-		nearWalls.add(grid[1][0]);
+		MazeBits m = new MazeBits(width, height);
+		Frontier nearWalls = new Frontier();
+		m.open(m.at(0, 0));
+		if (width > 1) nearWalls.add(m.at(1, 0));
+		if (height > 1) nearWalls.add(m.at(0, 1));
+		long[] fresh = m.fresh, open = m.open;
+		int stride = m.stride;
 		while (!nearWalls.isEmpty()) {
-			//if (totalopen > 5) return;
-			Node cur = nearWalls.remove(rand.nextInt(nearWalls.size()));
-			int adjopen = 0;
-			boolean expanded = false;
-			boolean skip = false;			
-			if (cur.xloc > 0) {
-				if (!grid[cur.yloc][cur.xloc-1].blocked) adjopen++;
-			}
-			if (cur.xloc < width-1) {
-				if (!grid[cur.yloc][cur.xloc+1].blocked) adjopen++;
-			}
-			if (cur.yloc > 0) {
-				if (!grid[cur.yloc-1][cur.xloc].blocked) adjopen++;
-			}
-			if (cur.yloc < height-1) {
-				if (!grid[cur.yloc+1][cur.xloc].blocked) adjopen++;
-			}
-			if (adjopen >= 2) skip = true;
-			
-			ArrayList<Integer> order = new ArrayList<>();
-			for (int i=1; i<=4; i++) order.add(new Integer(i));
-			while (!order.isEmpty() && !expanded && !skip) {
-				int num = order.remove(rand.nextInt(order.size()));
-				switch (num) {
-				case 1://right
-					if (cur.xloc < width-1) {
-						if (grid[cur.yloc][cur.xloc+1].blocked && grid[cur.yloc][cur.xloc+1].status == NodeStatus.UNSEEN) {
-							cur.blocked = false; totalopen++;
-							expanded = true;
-						}
-					}
-					break;
-				case 2://down
-					if (cur.yloc < height-1) {
-						if (grid[cur.yloc+1][cur.xloc].blocked && grid[cur.yloc+1][cur.xloc].status == NodeStatus.UNSEEN) {
-							cur.blocked = false; totalopen++;
-							expanded = true;
-						}
-					}
-					break;
-				case 3://left
-					if (cur.xloc > 0) {
-						if (grid[cur.yloc][cur.xloc-1].blocked && grid[cur.yloc][cur.xloc-1].status == NodeStatus.UNSEEN) {
-							cur.blocked = false; totalopen++;
-							expanded = true;
-						}
-					}
-					break;
-				case 4://up
-					if (cur.yloc > 0) {
-						if (grid[cur.yloc-1][cur.xloc].blocked && grid[cur.yloc-1][cur.xloc].status == NodeStatus.UNSEEN) {
-							cur.blocked = false; totalopen++;
-							expanded = true;
-						}
-					}
-					break;
-				}
-			
-			}//end while
-			if (!expanded) {
-				cur.status = NodeStatus.CLOSED;
-			} else {
-				if (cur.xloc > 0) {
-					Node nei = grid[cur.yloc][cur.xloc-1];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				if (cur.xloc < width-1) {
-					Node nei = grid[cur.yloc][cur.xloc+1];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				if (cur.yloc > 0) {
-					Node nei = grid[cur.yloc-1][cur.xloc];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				if (cur.yloc < height-1) {
-					Node nei = grid[cur.yloc+1][cur.xloc];
-					if (nei.blocked && nei.status == NodeStatus.UNSEEN) {
-						nei.status = NodeStatus.OPEN;
-						nearWalls.add(nei);
-					}
-				}
-				cur.status = NodeStatus.CLOSED;
-				//System.out.println("closed ("+cur.xloc+","+cur.yloc+")");
+			int cur = (int)nearWalls.removeRandom(rand);
+			int adjopen = bit(open, cur-1) + bit(open, cur+1) + bit(open, cur-stride) + bit(open, cur+stride);
+			int left = 0, right = 0, up = 0, down = 0;
+			if (adjopen < 2) {//else carving cur would join two passages
+				left = bit(fresh, cur-1);
+				right = bit(fresh, cur+1);
+				up = bit(fresh, cur-stride);
+				down = bit(fresh, cur+stride);
 			}
+			clear(fresh, cur);
+			m.carveFrom(cur, left, right, up, down, nearWalls);
 		}
+		m.copyTo(grid);
+		if (state != null) state.reset();
 	}
 	/**
 	 * Uses Prim's Algorithm for maze generation
 	 */
 	public void randomizeWalls() {
-		for (int y=0; y<height; y++) {
-			for (int x=0; x<width; x++) {
-				grid[y][x].blocked = true;
-				grid[y][x].status = NodeStatus.UNSEEN;
-			}
-		}
-		int totalopen = 0;
-		Random rand = new Random();
-		ArrayList<Pair<Node,Integer>> nearWalls = new ArrayList<>();
-		grid[0][0].blocked = false; totalopen++;
-		grid[0][0].status = NodeStatus.CLOSED;
-		nearWalls.add(new Pair<>(grid[0][1], new Integer(1)));
-		nearWalls.add(new Pair<>(grid[1][0], new Integer(2)));
+		MazeBits m = new MazeBits(width, height);
+		Frontier nearWalls = new Frontier();//entries are wall(vertex, direction)
+		long[] fresh = m.fresh;
+		int stride = m.stride;
+		int[] step = {0, 1, stride, -1, -stride};//to the vertex beyond a wall, by direction
+		m.open(m.at(0, 0));
+		if (width > 1) nearWalls.add(wall(m.at(1, 0), 1));
+		if (height > 1) nearWalls.add(wall(m.at(0, 1), 2));
 		while (!nearWalls.isEmpty()) {
-			//if (totalopen > 20) return;
-			Pair<Node,Integer> cur = nearWalls.remove(rand.nextInt(nearWalls.size()));
-			Node n = cur.getLeft();
-			Integer dir = cur.getRight();
-			if (!n.blocked) {
-				//System.out.println("not blocked");
-				continue;
-			}
-			//System.out.println("node ("+n.xloc+","+n.yloc+"), dir:"+dir);
-
-			boolean expanded = false;
-			boolean skip = false;
+			long cur = nearWalls.removeRandom(rand);
+			int n = (int)(cur >>> 3);
+			int n2 = n + step[(int)(cur & 7)];
+			if ((bit(fresh, n) & bit(fresh, n2)) == 0) continue;//n carved already, or nothing beyond it to carve to
+			m.open(n);
+			m.open(n2);
+			int y2 = n2 / stride, x2 = n2 - y2*stride;//border included, so the grid's edges are 1 and width
+			nearWalls.addIf(wall(n2-1, 3), (x2 > 2 ? 1 : 0) & bit(fresh, n2-1));
+			nearWalls.addIf(wall(n2+1, 1), bit(fresh, n2+1));
+			nearWalls.addIf(wall(n2-stride, 4), (y2 > 2 ? 1 : 0) & bit(fresh, n2-stride));
+			nearWalls.addIf(wall(n2+stride, 2), bit(fresh, n2+stride));
+		}
+		m.copyTo(grid);
+		if (state != null) state.reset();
+	}
+	/**
+	 * Working bits for the maze generators, with a border one vertex wide
+	 * around the grid so neighbors are found without bounds checks.
+	 * Carving here and copying the result to the grid a row at a time at
+	 * the end keeps Grid's calls and listeners out of the inner loops, which
+	 * also test bits as 0 or 1 rather than branch on them, as whether a
+	 * neighbor is a wall is too random to predict.
+	 */
+	private static final class MazeBits {
+		final int width;
+		final int height;
+		final int stride;//row length, including one border vertex at each end
+		final long[] open;//carved vertices; the border is never open
+		final long[] fresh;//walls not yet carved, nor put on or taken off a frontier by randomizeWalls2 or 3; never the border
 
-			if (dir.intValue() == 1) {
-				if (n.xloc+1<width && grid[n.yloc][n.xloc+1].blocked) {
-					n.blocked = false; n.status = NodeStatus.CLOSED; totalopen++;
-					grid[n.yloc][n.xloc+1].blocked = false; totalopen++;
-				}
-			} else if (dir.intValue() == 2) {
-				if (n.yloc+1<height && grid[n.yloc+1][n.xloc].blocked) {
-					n.blocked = false; n.status = NodeStatus.CLOSED; totalopen++;
-					grid[n.yloc+1][n.xloc].blocked = false; totalopen++;
-				}
-			} else if (dir.intValue() == 3) {
-				if (n.xloc>0 && grid[n.yloc][n.xloc-1].blocked) {
-					n.blocked = false; n.status = NodeStatus.CLOSED; totalopen++;
-					grid[n.yloc][n.xloc-1].blocked = false; totalopen++;
-				}
-			} else {
-				if (n.yloc>0 && grid[n.yloc-1][n.xloc].blocked) {
-					n.blocked = false; n.status = NodeStatus.CLOSED; totalopen++;
-					grid[n.yloc-1][n.xloc].blocked = false; totalopen++;
-				}
+		MazeBits(int _width, int _height) {
+			width = _width;
+			height = _height;
+			stride = width + 2;
+			long size = (long)stride * (height + 2);
+			if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("grid too big to generate a maze on: "+width+"x"+height);
+			open = new long[(int)((size + 63) >>> 6)];
+			fresh = new long[open.length];
+			Arrays.fill(fresh, -1L);
+			for (int x=0; x<stride; x++) {
+				clear(fresh, x);
+				clear(fresh, (height + 1)*stride + x);
 			}
-			
-			if (!n.blocked) {
-				int xoff = n.xloc;
-				int yoff = n.yloc;
-				if (dir.intValue() == 1) {
-					xoff +=1;
-				} else if (dir.intValue() == 2) {
-					yoff +=1;
-				} else if (dir.intValue() == 3) {
-					xoff -= 1;
-				} else {
-					yoff -= 1;
-				}
-				//System.out.println("n: ("+n.xloc+","+n.yloc+")");
-				//System.out.println("n2: ("+xoff+","+yoff+")");
-				Node n2 = grid[yoff][xoff];
-				
-				if (n2.xloc > 1) {
-					if (grid[n2.yloc][n2.xloc-1].blocked) {
-						Pair<Node,Integer> p = new Pair<>(grid[n2.yloc][n2.xloc-1], new Integer(3));
-						nearWalls.add(p);
-					}
-				}
-				if (n2.xloc < width-1) {
-					if (grid[n2.yloc][n2.xloc+1].blocked) {
-						Pair<Node,Integer> p = new Pair<>(grid[n2.yloc][n2.xloc+1], new Integer(1));
-						nearWalls.add(p);
-					}
-				}
-				if (n2.yloc > 1) {
-					if (grid[n2.yloc-1][n2.xloc].blocked) {
-						Pair<Node,Integer> p = new Pair<>(grid[n2.yloc-1][n2.xloc], new Integer(4));
-						nearWalls.add(p);
-					}
-				}
-				if (n2.yloc < height-1) {
-					if (grid[n2.yloc+1][n2.xloc].blocked) {
-						Pair<Node,Integer> p = new Pair<>(grid[n2.yloc+1][n2.xloc], new Integer(2));
-						nearWalls.add(p);
-					}
+			for (int y=1; y<=height; y++) {
+				clear(fresh, y*stride);
+				clear(fresh, y*stride + stride - 1);
+			}
+			for (long i=size; i<64L*fresh.length; i++) clear(fresh, (int)i);
+		}
+		int at(int x, int y) {
+			return (y + 1)*stride + x + 1;
+		}
+		void open(int p) {
+			set(open, p);
+			clear(fresh, p);
+		}
+		/**
+		 * Carves cur if any of its neighbors is fresh, 1 for those which
+		 * are, and adds those to frontier.
+		 */
+		void carveFrom(int cur, int left, int right, int up, int down, Frontier frontier) {
+			open[cur >>> 6] |= (long)(left | right | up | down) << cur;
+			take(cur-1, left, frontier);
+			take(cur+1, right, frontier);
+			take(cur-stride, up, frontier);
+			take(cur+stride, down, frontier);
+		}
+		private void take(int p, int add, Frontier frontier) {
+			fresh[p >>> 6] &= ~((long)add << p);
+			frontier.addIf(p, add);
+		}
+		/**
+		 * Makes grid this maze, telling its listeners once.
+		 */
+		void copyTo(Grid grid) {
+			long[] row = new long[(width + 63) >>> 6];
+			grid.beginChanges();
+			for (int y=0; y<height; y++) {
+				int p = at(0, y);
+				for (int k=0; k<row.length; k++, p+=64) {
+					int i = p >>> 6, s = p & 63;
+					long w = open[i] >>> s;
+					if (s != 0 && i + 1 < open.length) w |= open[i+1] << (64 - s);
+					row[k] = ~w;
 				}
+				if ((width & 63) != 0) row[row.length-1] &= (1L << width) - 1;
+				grid.row(y, row);
 			}
-
-		}//end while (!isEmpty())
+			grid.endChanges();
+		}
+	}
+	private static int bit(long[] bits, int i) {
+		return (int)(bits[i >>> 6] >>> i) & 1;
+	}
+	private static void set(long[] bits, int i) {
+		bits[i >>> 6] |= 1L << i;
+	}
+	private static void clear(long[] bits, int i) {
+		bits[i >>> 6] &= ~(1L << i);
+	}
+	/**
+	 * Packs a frontier entry for randomizeWalls: a wall (a MazeBits index)
+	 * and the direction (1 right, 2 down, 3 left, 4 up) to carve through it.
+	 */
+	private static long wall(int idx, int dir) {
+		return (long)idx << 3 | dir;
 	}
 }
-
-class Pair<L,R> {
-
-	  private final L left;
-	  private final R right;
-
-	  public Pair(L left, R right) {
-	    this.left = left;
-	    this.right = right;
-	  }
-
-	  public L getLeft() { return left; }
-	  public R getRight() { return right; }
-
-	  @Override
-	  public int hashCode() { return left.hashCode() ^ right.hashCode(); }
-
-	  @Override
-	  public boolean equals(Object o) {
-	    if (o == null) return false;
-	    if (!(o instanceof Pair)) return false;
-	    Pair pairo = (Pair) o;
-	    return this.left.equals(pairo.getLeft()) &&
-	           this.right.equals(pairo.getRight());
-	  }
-
-	}
\ No newline at end of file
@@ -0,0 +1,91 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that AgentScheduler, given a budget too short to replan every
+ * agent in one tick, still brings each agent with a path to its goal
+ * along legal moves and drains its backlog, both on a fixed grid and
+ * with walls moved between ticks; and that agents with no path are
+ * marked unreachable rather than left waiting.
+ * @author Michael A. Long
+ *
+ */
+public class AgentSchedulerTest {
+	private static final Connectivity C = Connectivity.EIGHT_NO_CORNER_CUTTING;
+
+	@Test
+	public void agentsReachTheirGoals() {
+		run(141, 0);
+	}
+	@Test
+	public void agentsReachTheirGoalsAfterEdits() {
+		run(142, 200);
+	}
+	/**
+	 * Runs agents on a random map, flipping a vertex no agent stands on
+	 * each tick for the first editTicks, then ticks until every agent has
+	 * arrived or been found unreachable.
+	 */
+	private void run(long seed, int editTicks) {
+		Random rand = new Random(seed);
+		Grid grid = Reference.randomGrid(rand, 90, 70, 0.25);
+		World world = new World(grid);
+		world.setConnectivity(C);
+		AgentScheduler scheduler = new AgentScheduler(world, 100000, 2);
+		int[] sharedGoals = new int[3];//enough agents per goal that some share a field
+		for (int i=0; i<sharedGoals.length; i++) sharedGoals[i] = Reference.randomOpen(rand, grid);
+		for (int i=0; i<300; i++) {
+			int goal = i % 3 == 0 ? sharedGoals[rand.nextInt(sharedGoals.length)] : Reference.randomOpen(rand, grid);
+			Agent a = scheduler.add(Reference.randomOpen(rand, grid), goal);
+			if (i % 10 == 0) scheduler.setPriority(a, 1);
+		}
+		int[] last = new int[scheduler.agents()];
+		for (int i=0; i<last.length; i++) last[i] = scheduler.agent(i).position;
+		int tick = 0;
+		for (; tick<5000; tick++) {
+			if (tick < editTicks) {
+				int v = rand.nextInt(grid.size());
+				if (!occupied(scheduler, v)) grid.setBlocked(v, !grid.isBlocked(v));
+			}
+			scheduler.tick();
+			boolean done = tick >= editTicks && scheduler.backlog == 0;
+			for (int i=0; i<last.length; i++) {
+				Agent a = scheduler.agent(i);
+				if (a.position != last[i]) {
+					assertTrue("illegal move by "+a+", tick "+tick, Reference.pathCost(grid, C, new int[] {last[i], a.position}) >= 0);
+					last[i] = a.position;
+				}
+				done &= a.arrived() || a.unreachable;
+			}
+			if (done) break;
+		}
+		assertTrue("agents still moving after "+tick+" ticks: "+scheduler, tick < 5000);
+		assertEquals(0, scheduler.backlog);
+		assertTrue("the budget never left a backlog: "+scheduler, scheduler.maxBacklog > 0);
+		assertTrue("no agent shared a field: "+scheduler, scheduler.sharedReplans > 0);
+		int arrived = 0;
+		for (int i=0; i<scheduler.agents(); i++) {
+			Agent a = scheduler.agent(i);
+			assertFalse("agent on a wall, "+a, grid.isBlocked(a.position));
+			if (a.arrived()) {
+				arrived++;
+			} else {
+				assertFalse("has a path but gave up, "+a, Reference.reachable(grid, C, a.position, a.goal));
+			}
+		}
+		assertTrue(arrived > 100);
+		scheduler.shutdown();
+	}
+	private static boolean occupied(AgentScheduler scheduler, int v) {
+		for (int i=0; i<scheduler.agents(); i++) {
+			Agent a = scheduler.agent(i);
+			if (a.position == v || a.goal == v) return true;
+		}
+		return false;
+	}
+}
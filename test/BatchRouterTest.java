@@ -0,0 +1,74 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that BatchRouter's batches, spread over several threads, give
+ * paths as short as Dijkstra's in every mode it supports, and that it
+ * refuses the modes it doesn't rather than quietly running A*.
+ * @author Michael A. Long
+ *
+ */
+public class BatchRouterTest {
+	@Test
+	public void batchesMatchDijkstra() {
+		Random rand = new Random(161);
+		int found = 0;
+		for (SearchMode mode : SearchMode.values()) {
+			if (!BatchRouter.supports(mode)) continue;
+			for (int map=0; map<4; map++) {
+				Grid grid = Reference.randomGrid(rand, 20 + rand.nextInt(60), 20 + rand.nextInt(60), 0.35*rand.nextDouble());
+				if (!mode.isJumpPoint() && map % 2 == 1) Reference.randomCosts(rand, grid, 9);
+				Connectivity c = mode.isJumpPoint() ? Connectivity.EIGHT_NO_CORNER_CUTTING : Connectivity.values()[rand.nextInt(3)];
+				BatchRouter router = new BatchRouter(grid, c, c.defaultHeuristic(), mode, 3);
+				int[] starts = new int[100], goals = new int[100];
+				for (int i=0; i<starts.length; i++) {
+					starts[i] = rand.nextInt(grid.size());
+					goals[i] = rand.nextInt(grid.size());
+				}
+				int[][] paths = router.route(starts, goals);
+				for (int i=0; i<starts.length; i++) {
+					String where = mode+" "+c+" map "+map+", "+starts[i]+" to "+goals[i];
+					double expected = grid.isBlocked(starts[i]) || grid.isBlocked(goals[i])
+							? Double.POSITIVE_INFINITY : Reference.cost(grid, c, starts[i], goals[i]);
+					if (Double.isInfinite(expected)) {
+						assertNull(where, paths[i]);
+						continue;
+					}
+					assertEquals("path steps, "+where, expected, Reference.pathCost(grid, c, paths[i]), Reference.EPSILON);
+					found++;
+				}
+				router.shutdown();
+			}
+		}
+		assertTrue(found > 400);
+	}
+	@Test
+	public void refusesOtherModes() {
+		int refused = 0;
+		for (SearchMode mode : SearchMode.values()) {
+			if (BatchRouter.supports(mode)) continue;
+			try {
+				new BatchRouter(new Grid(10, 10), Connectivity.FOUR, mode);
+				fail(mode+" was accepted");
+			} catch (IllegalArgumentException e) {
+				refused++;
+			}
+		}
+		assertEquals(3, refused);
+	}
+	@Test
+	public void jumpPointModesFitTheirHeuristic() {
+		for (Connectivity c : Connectivity.values()) {
+			BatchRouter router = new BatchRouter(new Grid(10, 10), c, SearchMode.JPS);
+			assertEquals(Connectivity.EIGHT_NO_CORNER_CUTTING, router.connectivity);
+			assertEquals(Connectivity.EIGHT_NO_CORNER_CUTTING.defaultHeuristic(), router.heuristic);
+			router.shutdown();
+		}
+	}
+}
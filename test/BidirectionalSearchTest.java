@@ -0,0 +1,49 @@
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that bidirectional search stops only once its path is as short
+ * as Dijkstra's, on random grids with and without terrain costs and on
+ * mazes, where the two searches meet in narrow passages.
+ * @author Michael A. Long
+ *
+ */
+public class BidirectionalSearchTest {
+	@Test
+	public void four() {
+		check(Connectivity.FOUR, 31);
+	}
+	@Test
+	public void eight() {
+		check(Connectivity.EIGHT, 32);
+	}
+	@Test
+	public void eightNoCornerCutting() {
+		check(Connectivity.EIGHT_NO_CORNER_CUTTING, 33);
+	}
+	private void check(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		int found = 0;
+		for (int map=0; map<30; map++) {
+			int width = 5 + rand.nextInt(60), height = 5 + rand.nextInt(60);
+			Grid grid;
+			if (map % 3 == 2) {
+				World world = new World(width, height);
+				world.rand = rand;
+				world.randomizeWalls();
+				grid = world.grid;
+			} else {
+				grid = Reference.randomGrid(rand, width, height, 0.4*rand.nextDouble());
+				if (map % 3 == 1) Reference.randomCosts(rand, grid, 9);
+			}
+			AStarSearch search = new AStarSearch(grid);
+			search.setConnectivity(c);
+			search.setMode(SearchMode.BIDIRECTIONAL);
+			found += Reference.checkQueries(rand, grid, c, Reference.Search.of(search), 40, 0, c+" "+width+"x"+height+" map "+map);
+		}
+		assertTrue(found > 400);
+	}
+}
@@ -0,0 +1,56 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that A* on a BucketQueue finds paths as short as on an
+ * IndexedHeap: exactly with FOUR connectivity and whole terrain costs,
+ * where every F is a whole number, and within 1/BUCKETS_PER_UNIT with
+ * diagonal moves. Open maps are included, where the open list often
+ * empties between expansions.
+ * @author Michael A. Long
+ *
+ */
+public class BucketQueueTest {
+	@Test
+	public void four() {
+		check(Connectivity.FOUR, 0.0, 101);
+	}
+	@Test
+	public void eight() {
+		check(Connectivity.EIGHT, 1.0 / BucketQueue.BUCKETS_PER_UNIT, 102);
+	}
+	private void check(Connectivity c, double slack, long seed) {
+		Random rand = new Random(seed);
+		int found = 0;
+		for (int map=0; map<30; map++) {
+			int width = 5 + rand.nextInt(80), height = 5 + rand.nextInt(80);
+			Grid grid = Reference.randomGrid(rand, width, height, map % 3 == 0 ? 0.0 : 0.4*rand.nextDouble());
+			if (map % 2 == 1) Reference.randomCosts(rand, grid, 9);
+			AStarSearch heap = new AStarSearch(grid), buckets = new AStarSearch(grid);
+			heap.setConnectivity(c);
+			buckets.setConnectivity(c);
+			buckets.setOpenListType(OpenListType.BUCKET_QUEUE);
+			buckets.tieBreaking = heap.tieBreaking = rand.nextBoolean();
+			for (int query=0; query<40; query++) {
+				int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+				if (start < 0 || goal < 0) continue;
+				heap.init(start, goal);
+				buckets.init(start, goal);
+				boolean reached = heap.runAStar();
+				String where = c+" "+width+"x"+height+" map "+map+" query "+query+", "+start+" to "+goal;
+				assertEquals("found a path, "+where, reached, buckets.runAStar());
+				if (!reached) continue;
+				double expected = heap.state.G[goal], cost = Reference.pathCost(grid, c, buckets.path());
+				assertTrue("illegal step, "+where, cost >= 0);
+				assertEquals("path cost, "+where, cost, buckets.state.G[goal], Reference.EPSILON);
+				assertTrue("path cost "+cost+" against "+expected+", "+where, cost <= expected + slack + Reference.EPSILON);
+				found++;
+			}
+		}
+		assertTrue(found > 800);
+	}
+}
@@ -0,0 +1,57 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks ConnectivityIndex against breadth first search after every one
+ * of 20000 random edits, for each connectivity. Grids start near the
+ * density where groups split and join most often. Now and then a batch
+ * of edits is made between beginChanges and endChanges, or the
+ * connectivity is switched, so the index rebuilds.
+ * @author Michael A. Long
+ *
+ */
+public class ConnectivityIndexTest {
+	@Test
+	public void four() {
+		check(Connectivity.FOUR, 41);
+	}
+	@Test
+	public void eight() {
+		check(Connectivity.EIGHT, 42);
+	}
+	@Test
+	public void eightNoCornerCutting() {
+		check(Connectivity.EIGHT_NO_CORNER_CUTTING, 43);
+	}
+	private void check(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		Grid grid = Reference.randomGrid(rand, 24, 20, c == Connectivity.EIGHT ? 0.55 : 0.4);
+		ConnectivityIndex index = new ConnectivityIndex(grid, c);
+		for (int edit=0; edit<20000; edit++) {
+			if (rand.nextInt(500) == 0) {
+				grid.beginChanges();
+				for (int e=0; e<20; e++) toggle(rand, grid);
+				grid.endChanges();
+			} else {
+				toggle(rand, grid);
+			}
+			if (rand.nextInt(1000) == 0) {
+				index.setConnectivity(Connectivity.values()[rand.nextInt(3)]);
+				index.connected(0, 1);
+				index.setConnectivity(c);
+			}
+			for (int q=0; q<3; q++) {
+				int a = rand.nextInt(grid.size()), b = rand.nextInt(grid.size());
+				assertEquals(c+" edit "+edit+", "+a+" to "+b, Reference.reachable(grid, c, a, b), index.connected(a, b));
+			}
+		}
+		index.dispose();
+	}
+	private static void toggle(Random rand, Grid grid) {
+		int i = rand.nextInt(grid.size());
+		grid.setBlocked(i, !grid.isBlocked(i));
+	}
+}
@@ -0,0 +1,78 @@
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that D* Lite, repaired after random edits, start moves and
+ * terrain cost changes, gives the same path costs as Dijkstra run from
+ * scratch. Some rounds edit more vertices than the planner keeps pending,
+ * so it starts over.
+ * @author Michael A. Long
+ *
+ */
+public class DStarLiteTest {
+	@Test
+	public void four() {
+		check(Connectivity.FOUR, 21);
+	}
+	@Test
+	public void eight() {
+		check(Connectivity.EIGHT, 22);
+	}
+	@Test
+	public void eightNoCornerCutting() {
+		check(Connectivity.EIGHT_NO_CORNER_CUTTING, 23);
+	}
+	private void check(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		int found = 0;
+		for (int map=0; map<12; map++) {
+			int width = 5 + rand.nextInt(40), height = 5 + rand.nextInt(40);
+			Grid grid = Reference.randomGrid(rand, width, height, 0.3*rand.nextDouble());
+			if (rand.nextBoolean()) Reference.randomCosts(rand, grid, 5);
+			final DStarLite planner = new DStarLite(grid, c);
+			int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+			if (start < 0 || goal < 0) continue;
+			Reference.Search search = new Reference.Search() {
+				@Override
+				public boolean find(int from, int to) {
+					planner.setGoal(to);//the same every round, so the planner only repairs
+					planner.setStart(from);
+					return planner.replan();
+				}
+				@Override
+				public int[] path() {
+					return planner.path();
+				}
+			};
+			int[] path = null;//from the last replan
+			for (int round=0; round<60; round++) {
+				int edits = rand.nextInt(20) == 0 ? 5000 : rand.nextInt(8);
+				for (int e=0; e<edits; e++) {
+					int i = rand.nextInt(grid.size());
+					if (i == start || i == goal) continue;
+					if (rand.nextInt(4) == 0) grid.setCost(i, 1 + rand.nextInt(5));
+					else grid.setBlocked(i, !grid.isBlocked(i));
+				}
+				if (rand.nextInt(3) == 0) {//step along the path, or jump elsewhere
+					if (path != null && path.length > 1 && !grid.isBlocked(path[1]) && rand.nextBoolean()) start = path[1];
+					else if (rand.nextInt(4) == 0) start = Reference.randomOpen(rand, grid);
+					if (start < 0) break;
+				}
+				String where = c+" "+width+"x"+height+" map "+map+" round "+round;
+				boolean reached = Reference.checkQuery(grid, c, search, start, goal, where);
+				path = planner.path();
+				if (!reached) {
+					assertNull(where, path);
+					continue;
+				}
+				found++;
+			}
+			planner.dispose();
+		}
+		assertTrue(found > 300);
+	}
+}
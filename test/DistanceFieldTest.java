@@ -0,0 +1,128 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Checks that a distance field found over any number of stripes is the
+ * one found in a single stripe, with shortest paths as Dijkstra finds
+ * them, and that DistanceFieldCache drops a field whenever an edit could
+ * change it, so every field it still holds is the one found from scratch.
+ * @author Michael A. Long
+ *
+ */
+public class DistanceFieldTest {
+	private static final int[] STRIPES = {2, 3, 5, 8, 64};
+
+	@Test
+	public void stripesFour() {
+		stripes(Connectivity.FOUR, 81);
+	}
+	@Test
+	public void stripesEight() {
+		stripes(Connectivity.EIGHT, 82);
+	}
+	@Test
+	public void stripesEightNoCornerCutting() {
+		stripes(Connectivity.EIGHT_NO_CORNER_CUTTING, 83);
+	}
+	@Test
+	public void cacheFour() {
+		cache(Connectivity.FOUR, 84);
+	}
+	@Test
+	public void cacheEight() {
+		cache(Connectivity.EIGHT, 85);
+	}
+	@Test
+	public void cacheEightNoCornerCutting() {
+		cache(Connectivity.EIGHT_NO_CORNER_CUTTING, 86);
+	}
+	private void stripes(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for (int map=0; map<20; map++) {
+				int width = 2 + rand.nextInt(60), height = 2 + rand.nextInt(60);
+				Grid grid = Reference.randomGrid(rand, width, height, 0.4*rand.nextDouble());
+				if (rand.nextBoolean()) Reference.randomCosts(rand, grid, 9);
+				int goal = Reference.randomOpen(rand, grid);
+				if (goal < 0) continue;
+				DistanceField single = new DistanceField(grid, c, goal);
+				String on = c+" "+width+"x"+height+" map "+map+", goal "+goal;
+				for (int q=0; q<10; q++) {
+					int v = rand.nextInt(grid.size());
+					long expected = grid.isBlocked(v) ? -1 : Reference.fixedCost(grid, c, v, goal);
+					assertEquals("reaches, "+on+", from "+v, expected >= 0, single.reaches(v));
+					if (expected < 0) continue;
+					assertEquals("distance, "+on+", from "+v, expected / 1024.0f, single.distance(v), 0.0f);
+					int[] path = single.path(v);
+					assertTrue("illegal step, "+on+", from "+v, Reference.pathCost(grid, c, path) >= 0);
+					assertEquals("path cost, "+on+", from "+v, expected, Reference.fixedPathCost(grid, path));
+				}
+				for (int k : STRIPES) {
+					DistanceField striped = new DistanceField(grid, c, goal, pool, k);
+					for (int v=0; v<grid.size(); v++) {
+						assertEquals(k+" stripes, "+on+", from "+v, single.distance(v), striped.distance(v), 0.0f);
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	private void cache(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		Grid grid = Reference.randomGrid(rand, 30, 24, 0.3);
+		DistanceFieldCache cache = new DistanceFieldCache(grid, c, 4, 1);
+		int[] goals = new int[6];
+		for (int i=0; i<goals.length; i++) goals[i] = Reference.randomOpen(rand, grid);
+		int dropped = 0;
+		for (int edit=0; edit<3000; edit++) {
+			int goal = goals[rand.nextInt(goals.length)];
+			if (grid.isBlocked(goal)) grid.setBlocked(goal, false);
+			DistanceField field = cache.get(goal);
+			int v = pickNear(rand, grid, c, field);
+			if (v == goal) continue;
+			int version = grid.version;
+			if (rand.nextInt(4) == 0) grid.setCost(v, 1 + rand.nextInt(5));
+			else grid.setBlocked(v, !grid.isBlocked(v));
+			if (grid.version != version && field.dependsOn(v)) {
+				assertNull("kept a field the edit could change, edit "+edit, cache.peek(goal));
+				dropped++;
+			}
+			for (int g : goals) {
+				DistanceField kept = cache.peek(g);
+				if (kept == null) continue;
+				DistanceField fresh = new DistanceField(grid, c, g);
+				for (int u=0; u<grid.size(); u++) {
+					assertEquals("stale field for "+g+" after edit "+edit+" at "+v, fresh.distance(u), kept.distance(u), 0.0f);
+				}
+			}
+		}
+		assertTrue(dropped > 300);
+		assertNotNull(cache.get(goals[0]));
+		cache.dispose();
+	}
+	/**
+	 * Mostly a vertex on the field or beside it, to block or unblock, else
+	 * anywhere.
+	 */
+	private static int pickNear(Random rand, Grid grid, Connectivity c, DistanceField field) {
+		for (int tries=0; tries<20 && rand.nextInt(5) != 0; tries++) {
+			int v = rand.nextInt(grid.size());
+			if (field.reaches(v)) {
+				int d = rand.nextInt(c.directions);
+				int nx = grid.xOf(v) + Connectivity.DX[d], ny = grid.yOf(v) + Connectivity.DY[d];
+				if (rand.nextBoolean() || nx < 0 || nx >= grid.width || ny < 0 || ny >= grid.height) return v;
+				return grid.index(nx, ny);
+			}
+		}
+		return rand.nextInt(grid.size());
+	}
+}
@@ -0,0 +1,94 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that EllerMaze makes perfect mazes, whose open vertices are all
+ * joined with exactly one path between any two (a tree: connected, with
+ * one edge fewer than vertices), and that the same seed always gives the
+ * same rows.
+ * @author Michael A. Long
+ *
+ */
+public class EllerMazeTest {
+	@Test
+	public void perfect() {
+		Random rand = new Random(131);
+		for (int maze=0; maze<60; maze++) {
+			int width = 1 + rand.nextInt(150), height = 1 + rand.nextInt(150);
+			Grid grid = new Grid(width, height);
+			new EllerMaze(width, height, rand.nextLong()).generate(EllerMaze.into(grid));
+			String where = width+"x"+height+" maze "+maze;
+			int open = 0, edges = 0, first = -1;
+			for (int i=0; i<grid.size(); i++) {
+				if (grid.isBlocked(i)) continue;
+				open++;
+				if (first < 0) first = i;
+				for (int d=1; d<4; d+=2) {//down and right, so each edge counts once
+					if (Reference.canMove(grid, Connectivity.FOUR, i, d)) edges++;
+				}
+			}
+			assertTrue(where, open > 0);
+			assertEquals("not a tree, "+where, open - 1, edges);
+			assertEquals("not connected, "+where, open, reached(grid, first));
+		}
+	}
+	@Test
+	public void sameSeedSameRows() {
+		Random rand = new Random(132);
+		for (int maze=0; maze<20; maze++) {
+			int width = 1 + rand.nextInt(300), height = 1 + rand.nextInt(100);
+			long seed = rand.nextLong();
+			List<long[]> a = rows(width, height, seed), b = rows(width, height, seed);
+			assertEquals(height, a.size());
+			for (int y=0; y<height; y++) assertArrayEquals(width+"x"+height+" row "+y, a.get(y), b.get(y));
+			if (width > 4 && height > 4) {
+				List<long[]> other = rows(width, height, seed + 1);
+				boolean differs = false;
+				for (int y=0; y<height; y++) differs |= !Arrays.equals(a.get(y), other.get(y));
+				assertTrue("another seed gave the same maze", differs);
+			}
+		}
+	}
+	/**
+	 * Open vertices joined to start, counted by a flood fill.
+	 */
+	private static int reached(Grid grid, int start) {
+		boolean[] seen = new boolean[grid.size()];
+		int[] stack = new int[grid.size()];
+		int top = 0, count = 0;
+		seen[start] = true;
+		stack[top++] = start;
+		while (top > 0) {
+			int cur = stack[--top];
+			count++;
+			for (int d=0; d<4; d++) {
+				if (!Reference.canMove(grid, Connectivity.FOUR, cur, d)) continue;
+				int n = grid.index(grid.xOf(cur) + Connectivity.DX[d], grid.yOf(cur) + Connectivity.DY[d]);
+				if (!seen[n]) {
+					seen[n] = true;
+					stack[top++] = n;
+				}
+			}
+		}
+		return count;
+	}
+	private static List<long[]> rows(int width, int height, long seed) {
+		final List<long[]> rows = new ArrayList<long[]>();
+		new EllerMaze(width, height, seed).generate(new RowSink() {
+			@Override
+			public void row(int y, long[] blocked) {
+				assertEquals(rows.size(), y);
+				rows.add(blocked.clone());
+			}
+		});
+		return rows;
+	}
+}
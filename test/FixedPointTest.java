@@ -0,0 +1,77 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that A* with fixed point costs finds paths exactly as short as
+ * Dijkstra's in the same 1/1024ths, with and without landmarks, and that
+ * ties in F stay exact on paths far longer than a float can add up
+ * 1/1024ths for.
+ * @author Michael A. Long
+ *
+ */
+public class FixedPointTest {
+	@Test
+	public void four() {
+		check(Connectivity.FOUR, 51);
+	}
+	@Test
+	public void eight() {
+		check(Connectivity.EIGHT, 52);
+	}
+	@Test
+	public void eightNoCornerCutting() {
+		check(Connectivity.EIGHT_NO_CORNER_CUTTING, 53);
+	}
+	/**
+	 * A corridor 140000 long, where a float sum of costs no longer holds
+	 * every 1/128th: the path is still the shortest, and tie-breaking only
+	 * expands the vertices on it.
+	 */
+	@Test
+	public void longPath() {
+		Grid grid = new Grid(140000, 3);
+		AStarSearch search = new AStarSearch(grid);
+		search.setConnectivity(Connectivity.EIGHT);
+		search.fixedPoint = true;
+		search.init(grid.index(0, 0), grid.index(139999, 2));
+		assertTrue(search.runAStar());
+		int[] path = search.path();
+		assertNotNull(path);
+		assertEquals(139997*1024L + 2*1448L, Reference.fixedPathCost(grid, path));
+		assertTrue("expanded "+search.expanded, search.expanded <= path.length + 2);
+	}
+	private void check(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		int found = 0;
+		for (int map=0; map<30; map++) {
+			int width = 5 + rand.nextInt(60), height = 5 + rand.nextInt(60);
+			Grid grid = Reference.randomGrid(rand, width, height, 0.4*rand.nextDouble());
+			if (rand.nextBoolean()) Reference.randomCosts(rand, grid, 9);
+			AStarSearch search = new AStarSearch(grid);
+			search.setConnectivity(c);
+			search.fixedPoint = true;
+			search.tieBreaking = rand.nextBoolean();
+			if (map % 3 == 0) search.landmarks = new Landmarks(grid, c, 4, 1);
+			for (int query=0; query<40; query++) {
+				int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+				if (start < 0 || goal < 0) continue;
+				long expected = Reference.fixedCost(grid, c, start, goal);
+				search.init(start, goal);
+				boolean reached = search.runAStar();
+				String where = c+" "+width+"x"+height+" map "+map+" query "+query+", "+start+" to "+goal;
+				assertEquals("found a path, "+where, expected >= 0, reached);
+				if (!reached) continue;
+				int[] path = search.path();
+				assertTrue("illegal step, "+where, Reference.pathCost(grid, c, path) >= 0);
+				assertEquals("path cost, "+where, expected, Reference.fixedPathCost(grid, path));
+				found++;
+			}
+		}
+		assertTrue(found > 400);
+	}
+}
@@ -0,0 +1,91 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that HPA* finds a path whenever one exists, that its paths are
+ * legal and cost what it reports, within HierarchicalSearch.MAX_DETOUR of
+ * Dijkstra's, and that after edits, rebuilding only the dirty clusters
+ * gives the same paths as building every cluster afresh. The path is
+ * refined once per findPath.
+ * @author Michael A. Long
+ *
+ */
+public class HierarchicalSearchTest {
+	@Test
+	public void four() {
+		check(Connectivity.FOUR, 111);
+	}
+	@Test
+	public void eight() {
+		check(Connectivity.EIGHT, 112);
+	}
+	@Test
+	public void eightNoCornerCutting() {
+		check(Connectivity.EIGHT_NO_CORNER_CUTTING, 113);
+	}
+	private void check(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		int found = 0;
+		for (int map=0; map<20; map++) {
+			int width = 10 + rand.nextInt(90), height = 10 + rand.nextInt(90);
+			Grid grid;
+			if (map % 4 == 3) {
+				World world = new World(width, height);
+				world.rand = rand;
+				world.randomizeWalls();
+				grid = world.grid;
+			} else {
+				grid = Reference.randomGrid(rand, width, height, 0.35*rand.nextDouble());
+			}
+			int clusterSize = 4 + rand.nextInt(13);
+			HierarchicalSearch search = new HierarchicalSearch(grid, c, clusterSize);
+			AStarSearch shortest = new AStarSearch(grid);
+			shortest.setConnectivity(c);
+			for (int query=0; query<30; query++) {
+				for (int e=rand.nextInt(6); e>0; e--) {
+					int i = rand.nextInt(grid.size());
+					grid.setBlocked(i, !grid.isBlocked(i));
+				}
+				int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+				if (start < 0 || goal < 0) continue;
+				double expected = Reference.cost(grid, c, start, goal);
+				boolean reached = search.findPath(start, goal);
+				String where = c+" "+width+"x"+height+" clusters of "+clusterSize+" map "+map+" query "+query+", "+start+" to "+goal;
+				HierarchicalSearch fresh = new HierarchicalSearch(grid, c, clusterSize);
+				assertEquals("rebuilt clusters differ, "+where, fresh.findPath(start, goal), reached);
+				fresh.dispose();
+				assertEquals("rebuilt clusters differ, "+where, fresh.cost, search.cost, 0.0f);
+				assertEquals("found a path, "+where, !Double.isInfinite(expected), reached);
+				if (!reached) continue;
+				double cost = Reference.pathCost(grid, c, search.path());
+				assertSame("refined the path again, "+where, search.path(), search.path());
+				assertTrue("illegal step, "+where, cost >= 0);
+				assertEquals("path cost, "+where, search.cost, cost, Reference.EPSILON);
+				assertTrue("shorter than the shortest, "+where, cost >= expected - Reference.EPSILON);
+				shortest.init(start, goal);
+				shortest.runAStar();
+				double bound = expected + HierarchicalSearch.MAX_DETOUR * clusterSize * crossings(grid, clusterSize, shortest.path());
+				assertTrue("path cost "+cost+", over "+bound+", "+where, cost <= bound + Reference.EPSILON);
+				found++;
+			}
+			search.dispose();
+		}
+		assertTrue(found > 300);
+	}
+	/**
+	 * Cluster borders crossed by path, twice for a diagonal move across a corner.
+	 */
+	private static int crossings(Grid grid, int clusterSize, int[] path) {
+		int n = 0;
+		for (int i=1; i<path.length; i++) {
+			if (grid.xOf(path[i]) / clusterSize != grid.xOf(path[i-1]) / clusterSize) n++;
+			if (grid.yOf(path[i]) / clusterSize != grid.yOf(path[i-1]) / clusterSize) n++;
+		}
+		return n;
+	}
+}
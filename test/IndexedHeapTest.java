@@ -0,0 +1,96 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks IndexedHeap against a plain array of keys scanned for the
+ * smallest, over random adds, key changes and removals. Keys are small
+ * integers so ties in both keys are common.
+ * @author Michael A. Long
+ *
+ */
+public class IndexedHeapTest {
+	private static final int VERTICES = 300;
+
+	private final float[] k1 = new float[VERTICES];
+	private final float[] k2 = new float[VERTICES];
+	private final boolean[] queued = new boolean[VERTICES];
+	private int size;
+
+	@Test
+	public void matchesScan() {
+		Random rand = new Random(2);
+		IndexedHeap heap = new IndexedHeap(VERTICES);
+		for (int step=0; step<200000; step++) {
+			int idx = rand.nextInt(VERTICES);
+			float a = rand.nextInt(20), b = rand.nextInt(4);
+			switch (rand.nextInt(6)) {
+			case 0:
+			case 1:
+				if (queued[idx]) break;
+				heap.add(idx, a, b);
+				set(idx, a, b);
+				break;
+			case 2:
+				if (!queued[idx] || !less(a, b, k1[idx], k2[idx])) break;
+				heap.decreaseKey(idx, a, b);
+				set(idx, a, b);
+				break;
+			case 3:
+				if (!queued[idx]) break;
+				heap.changeKey(idx, a, b);
+				set(idx, a, b);
+				break;
+			case 4:
+				heap.remove(idx);
+				unset(idx);
+				break;
+			default:
+				if (size == 0) break;
+				int min = min();
+				assertEquals(k1[min], heap.peekKey(), 0.0f);
+				assertEquals(k2[min], heap.peekKey2(), 0.0f);
+				int top = heap.remove();
+				assertTrue("removed a vertex which wasn't queued", queued[top]);
+				assertTrue("removed a vertex which wasn't the smallest", k1[top] == k1[min] && k2[top] == k2[min]);
+				unset(top);
+			}
+			assertEquals(size, heap.size());
+			assertEquals(queued[idx], heap.contains(idx));
+			if (rand.nextInt(5000) == 0) {
+				heap.clear();
+				for (int i=0; i<VERTICES; i++) unset(i);
+			}
+		}
+		while (size > 0) {
+			int min = min();
+			int top = heap.remove();
+			assertTrue(k1[top] == k1[min] && k2[top] == k2[min]);
+			unset(top);
+		}
+		assertTrue(heap.isEmpty());
+	}
+	private void set(int idx, float a, float b) {
+		if (!queued[idx]) size++;
+		queued[idx] = true;
+		k1[idx] = a;
+		k2[idx] = b;
+	}
+	private void unset(int idx) {
+		if (queued[idx]) size--;
+		queued[idx] = false;
+	}
+	private int min() {
+		int best = -1;
+		for (int i=0; i<VERTICES; i++) {
+			if (queued[i] && (best < 0 || less(k1[i], k2[i], k1[best], k2[best]))) best = i;
+		}
+		return best;
+	}
+	private static boolean less(float a1, float a2, float b1, float b2) {
+		return a1 < b1 || (a1 == b1 && a2 < b2);
+	}
+}
@@ -0,0 +1,38 @@
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that Jump Point Search, scanning and with the JPS+ table, finds
+ * paths as short as Dijkstra's on random grids, and that its pruning
+ * never misses a path which exists. Vertices are blocked and cleared
+ * between queries so the JPS+ table has to be rebuilt.
+ * @author Michael A. Long
+ *
+ */
+public class JumpPointSearchTest {
+	private static final Connectivity C = Connectivity.EIGHT_NO_CORNER_CUTTING;
+
+	@Test
+	public void jpsMatchesDijkstra() {
+		check(false, 11);
+	}
+	@Test
+	public void jpsPlusMatchesDijkstra() {
+		check(true, 12);
+	}
+	private void check(boolean plus, long seed) {
+		Random rand = new Random(seed);
+		int found = 0;
+		for (int map=0; map<40; map++) {
+			int width = 5 + rand.nextInt(60), height = 5 + rand.nextInt(60);
+			Grid grid = Reference.randomGrid(rand, width, height, 0.1 + 0.3*rand.nextDouble());
+			AStarSearch search = new AStarSearch(grid);
+			search.setMode(plus ? SearchMode.JPS_PLUS : SearchMode.JPS);
+			found += Reference.checkQueries(rand, grid, C, Reference.Search.of(search), 50, 4, width+"x"+height+" map "+map);
+		}
+		assertTrue(found > 500);
+	}
+}
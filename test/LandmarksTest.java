@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the landmark bound never overestimates and never drops by
+ * more than a move costs, so A* with it finds paths as short as
+ * Dijkstra's on random maps with terrain costs, and that a saved table
+ * only loads for the map it was built for.
+ * @author Michael A. Long
+ *
+ */
+public class LandmarksTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void four() {
+		check(Connectivity.FOUR, 71);
+	}
+	@Test
+	public void eight() {
+		check(Connectivity.EIGHT, 72);
+	}
+	@Test
+	public void eightNoCornerCutting() {
+		check(Connectivity.EIGHT_NO_CORNER_CUTTING, 73);
+	}
+	@Test
+	public void loadsOnlyForItsMap() throws IOException {
+		Random rand = new Random(74);
+		Grid grid = Reference.randomGrid(rand, 40, 30, 0.2);
+		Landmarks landmarks = new Landmarks(grid, Connectivity.EIGHT, 6, 2);
+		File file = folder.newFile();
+		landmarks.save(file);
+		Landmarks loaded = Landmarks.load(file, grid);
+		assertEquals(Connectivity.EIGHT, loaded.connectivity);
+		for (int q=0; q<1000; q++) {
+			int v = rand.nextInt(grid.size()), t = rand.nextInt(grid.size());
+			assertEquals(landmarks.estimateUnits(v, t), loaded.estimateUnits(v, t));
+		}
+		int open = Reference.randomOpen(rand, grid);
+		Grid edited = Reference.randomGrid(new Random(74), 40, 30, 0.2);
+		edited.setBlocked(open, true);
+		expectRejected(file, edited);
+		expectRejected(file, Reference.randomGrid(new Random(74), 40, 31, 0.2));
+		expectRejected(file, Reference.randomGrid(new Random(75), 40, 30, 0.2));
+	}
+	private static void expectRejected(File file, Grid grid) {
+		try {
+			Landmarks.load(file, grid);
+			fail("loaded landmarks for another map");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("different map"));
+		}
+	}
+	private void check(Connectivity c, long seed) {
+		Random rand = new Random(seed);
+		int found = 0;
+		for (int map=0; map<20; map++) {
+			int width = 5 + rand.nextInt(50), height = 5 + rand.nextInt(50);
+			Grid grid = Reference.randomGrid(rand, width, height, 0.35*rand.nextDouble());
+			if (map % 2 == 0) Reference.randomCosts(rand, grid, 9);
+			Landmarks landmarks = new Landmarks(grid, c, 1 + rand.nextInt(8), 2);
+			String on = c+" "+width+"x"+height+" map "+map;
+			for (int t=0; t<10; t++) {
+				int goal = Reference.randomOpen(rand, grid);
+				if (goal < 0) break;
+				for (int v=0; v<grid.size(); v++) {//consistent: no move lowers the bound by more than it costs
+					if (grid.isBlocked(v)) continue;
+					int h = landmarks.estimateUnits(v, goal);
+					for (int d=0; d<c.directions; d++) {
+						if (!Reference.canMove(grid, c, v, d)) continue;
+						int n = grid.index(grid.xOf(v) + Connectivity.DX[d], grid.yOf(v) + Connectivity.DY[d]);
+						assertTrue("inconsistent, "+on+", "+v+" to "+n+" toward "+goal,
+								h <= Connectivity.FIXED_UNITS[d] * grid.cost(n) + landmarks.estimateUnits(n, goal));
+					}
+				}
+			}
+			AStarSearch search = new AStarSearch(grid);
+			search.setConnectivity(c);
+			search.landmarks = landmarks;
+			for (int query=0; query<40; query++) {
+				int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+				if (start < 0 || goal < 0) continue;
+				double expected = Reference.cost(grid, c, start, goal);
+				String where = on+" query "+query+", "+start+" to "+goal;
+				assertTrue("overestimate, "+where, landmarks.estimate(start, goal) <= expected + Reference.EPSILON);
+				search.init(start, goal);
+				boolean reached = search.runAStar();
+				assertEquals("found a path, "+where, !Double.isInfinite(expected), reached);
+				if (!reached) continue;
+				assertEquals("path cost, "+where, expected, search.state.G[goal], Reference.EPSILON);
+				assertEquals("path steps, "+where, expected, Reference.pathCost(grid, c, search.path()), Reference.EPSILON);
+				found++;
+			}
+		}
+		assertTrue(found > 300);
+	}
+}
@@ -0,0 +1,110 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that maps saved in the MapFile format open as the same map:
+ * untiled with and without a cost plane, written whole or a row at a
+ * time, and tiled, on sizes which don't fill the last word or tile.
+ * @author Michael A. Long
+ *
+ */
+public class MapFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void untiled() throws IOException {
+		Random rand = new Random(121);
+		for (int map=0; map<20; map++) {
+			Grid grid = Reference.randomGrid(rand, 1 + rand.nextInt(150), 1 + rand.nextInt(150), rand.nextDouble());
+			boolean costs = map % 2 == 1;
+			if (costs) Reference.randomCosts(rand, grid, 255);
+			File file = folder.newFile();
+			MapFile.save(grid, grid.costPlane(), file);
+			assertTrue(MapFile.isMapFile(file));
+			assertFalse(MapFile.isTiled(file));
+			MappedGrid opened = MapFile.open(file, false);
+			assertEquals(costs, opened.hasCosts());
+			assertSame(grid, opened, true);
+		}
+	}
+	@Test
+	public void rowWriter() throws IOException {
+		Random rand = new Random(122);
+		for (int map=0; map<20; map++) {
+			Grid grid = Reference.randomGrid(rand, 1 + rand.nextInt(200), 1 + rand.nextInt(50), rand.nextDouble());
+			File file = folder.newFile();
+			MapFile.RowWriter writer = new MapFile.RowWriter(file, grid.width, grid.height);
+			long[] bits = new long[(grid.width + 63) >>> 6];
+			for (int y=0; y<grid.height; y++) {
+				grid.row(y, bits);
+				writer.row(y, bits);
+			}
+			writer.close();
+			assertSame(grid, MapFile.open(file, false), false);
+		}
+	}
+	@Test
+	public void writableMappingLeavesTheFile() throws IOException {
+		Random rand = new Random(123);
+		Grid grid = Reference.randomGrid(rand, 70, 40, 0.3);
+		Reference.randomCosts(rand, grid, 9);
+		File file = folder.newFile();
+		World world = new World(grid);
+		world.save(file);
+		World loaded = World.load(file, true);
+		assertSame(grid, loaded.grid, true);
+		for (int i=0; i<loaded.grid.size(); i++) loaded.grid.setBlocked(i, !loaded.grid.isBlocked(i));
+		loaded.grid.setCost(5, 200);
+		assertSame(grid, MapFile.open(file, false), true);
+	}
+	@Test
+	public void tiled() throws IOException {
+		Random rand = new Random(124);
+		for (int map=0; map<12; map++) {
+			Grid grid = Reference.randomGrid(rand, 1 + rand.nextInt(150), 1 + rand.nextInt(150), rand.nextDouble());
+			File file = folder.newFile();
+			int tileShift = rand.nextInt(7);
+			TiledGrid.copyOf(grid, file, tileShift, 1 + rand.nextInt(8)).close();
+			assertTrue(MapFile.isTiled(file));
+			TiledGrid opened = TiledGrid.open(file, 1 + rand.nextInt(8), false);
+			assertEquals(tileShift, opened.tileShift);
+			assertSame(grid, opened, false);
+			opened.close();
+			try {
+				MapFile.open(file, false);
+				fail("opened a tiled map untiled");
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("tiled"));
+			}
+		}
+		File untiled = folder.newFile();
+		MapFile.save(new Grid(10, 10), null, untiled);
+		try {
+			TiledGrid.open(untiled, 4, false);
+			fail("opened an untiled map tiled");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("not a tiled map"));
+		}
+	}
+	private static void assertSame(Grid expected, Grid actual, boolean costs) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y=0; y<expected.height; y++) {
+			for (int x=0; x<expected.width; x++) {
+				assertEquals(x+","+y, expected.isBlocked(x, y), actual.isBlocked(x, y));
+				if (costs) assertEquals(x+","+y, expected.cost(expected.index(x, y)), actual.cost(actual.index(x, y)));
+			}
+		}
+	}
+}
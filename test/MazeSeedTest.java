@@ -0,0 +1,59 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that World's maze generators, randomizeWalls, randomizeWalls2
+ * and randomizeWalls3, give the same maze for the same seed and another
+ * for another seed, and that every open vertex of it can be reached from
+ * the corner they start carving at, as ConnectivityIndex (checked
+ * against breadth first search by its own test) finds.
+ * @author Michael A. Long
+ *
+ */
+public class MazeSeedTest {
+	@Test
+	public void prim() {
+		check(1, 151);
+	}
+	@Test
+	public void prim2() {
+		check(2, 152);
+	}
+	@Test
+	public void prim3() {
+		check(3, 153);
+	}
+	private void check(int type, long seed) {
+		Random rand = new Random(seed);
+		for (int maze=0; maze<30; maze++) {
+			int width = 1 + rand.nextInt(130), height = 1 + rand.nextInt(130);
+			long mazeSeed = rand.nextLong();
+			World a = new World(width, height), b = new World(width, height);
+			a.randomizeWalls(type, mazeSeed);
+			b.randomizeWalls(type, 12345);//left over state must not matter
+			b.randomizeWalls(type, mazeSeed);
+			String where = "type "+type+" "+width+"x"+height+" maze "+maze;
+			assertEquals("same seed, another maze, "+where, walls(a.grid), walls(b.grid));
+			if (width > 4 && height > 4) {
+				b.randomizeWalls(type, mazeSeed + 1);
+				assertTrue("another seed, the same maze, "+where, !walls(a.grid).equals(walls(b.grid)));
+			}
+			int open = 0;
+			for (int i=0; i<a.grid.size(); i++) {
+				if (a.grid.isBlocked(i)) continue;
+				open++;
+				assertTrue("cut off at "+i+", "+where, a.components.connected(0, i));
+			}
+			assertTrue(where, open > 0);
+		}
+	}
+	private static String walls(Grid grid) {
+		StringBuilder s = new StringBuilder(grid.size());
+		for (int i=0; i<grid.size(); i++) s.append(grid.isBlocked(i) ? '#' : '.');
+		return s.toString();
+	}
+}
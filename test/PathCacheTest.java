@@ -0,0 +1,118 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that PathCache drops a path once a vertex on it or beside it is
+ * blocked, cleared or given a new cost, keeps paths whose regions an edit
+ * didn't touch, and drops everything after a batch of changes.
+ * @author Michael A. Long
+ *
+ */
+public class PathCacheTest {
+	private static final Connectivity C = Connectivity.EIGHT_NO_CORNER_CUTTING;
+
+	@Test
+	public void editsDropOnlyNearbyPaths() {
+		Random rand = new Random(91);
+		Grid grid = Reference.randomGrid(rand, 96, 80, 0.2);
+		AStarSearch search = new AStarSearch(grid);
+		search.setConnectivity(C);
+		PathCache cache = new PathCache(grid, 8);
+		int dropped = 0, kept = 0;
+		for (int round=0; round<2000; round++) {
+			int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+			search.init(start, goal);
+			if (!search.runAStar()) continue;
+			int[] path = search.path();
+			cache.put(start, goal, path);
+			int v = rand.nextBoolean() ? path[rand.nextInt(path.length)] : rand.nextInt(grid.size());
+			if (rand.nextBoolean()) {//or beside it
+				int d = rand.nextInt(8);
+				int nx = grid.xOf(v) + Connectivity.DX[d], ny = grid.yOf(v) + Connectivity.DY[d];
+				if (nx >= 0 && nx < grid.width && ny >= 0 && ny < grid.height) v = grid.index(nx, ny);
+			}
+			if (v == start || v == goal) continue;
+			int version = grid.version;
+			if (rand.nextInt(4) == 0) grid.setCost(v, 1 + rand.nextInt(5));
+			else grid.setBlocked(v, !grid.isBlocked(v));
+			if (grid.version == version) continue;
+			if (touches(grid, path, v)) {
+				assertNull("kept a path through an edit at "+v+", round "+round, cache.get(start, goal));
+				dropped++;
+			} else if (farFrom(grid, path, v)) {
+				assertSame("dropped a path 32 away from an edit, round "+round, path, cache.get(start, goal));
+				kept++;
+			}
+		}
+		assertTrue(dropped > 500);
+		assertTrue(kept > 100);
+		cache.dispose();
+	}
+	@Test
+	public void returnedPathsStayLegal() {
+		Random rand = new Random(92);
+		Grid grid = Reference.randomGrid(rand, 128, 96, 0.25);
+		AStarSearch search = new AStarSearch(grid);
+		search.setConnectivity(C);
+		PathCache cache = new PathCache(grid, 32);
+		int[] starts = new int[40], goals = new int[40];
+		for (int i=0; i<starts.length; i++) {
+			starts[i] = Reference.randomOpen(rand, grid);
+			goals[i] = Reference.randomOpen(rand, grid);
+		}
+		int hits = 0;
+		for (int round=0; round<5000; round++) {
+			int q = rand.nextInt(starts.length);
+			int[] path = cache.get(starts[q], goals[q]);
+			if (path != null) {
+				assertTrue("cached path crosses an edit, round "+round, Reference.pathCost(grid, C, path) >= 0);
+				hits++;
+			} else if (!grid.isBlocked(starts[q]) && !grid.isBlocked(goals[q])) {
+				search.init(starts[q], goals[q]);
+				if (search.runAStar()) cache.put(starts[q], goals[q], search.path());
+			}
+			if (rand.nextInt(4) == 0) {
+				int v = rand.nextInt(grid.size());
+				grid.setBlocked(v, !grid.isBlocked(v));
+			}
+		}
+		assertTrue(hits > 500);
+		grid.beginChanges();
+		grid.setBlocked(0, !grid.isBlocked(0));
+		grid.endChanges();
+		for (int q=0; q<starts.length; q++) assertNull(cache.get(starts[q], goals[q]));
+		assertEquals(0, cache.size());
+		int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+		search.init(start, goal);
+		if (search.runAStar()) {//paths found after the batch are kept
+			int[] path = search.path();
+			cache.put(start, goal, path);
+			assertSame(path, cache.get(start, goal));
+		}
+		cache.dispose();
+	}
+	/**
+	 * True if v is on path or next to a vertex of it.
+	 */
+	private static boolean touches(Grid grid, int[] path, int v) {
+		for (int p : path) {
+			if (Math.abs(grid.xOf(p) - grid.xOf(v)) <= 1 && Math.abs(grid.yOf(p) - grid.yOf(v)) <= 1) return true;
+		}
+		return false;
+	}
+	/**
+	 * True if v is at least two regions from every vertex of path.
+	 */
+	private static boolean farFrom(Grid grid, int[] path, int v) {
+		for (int p : path) {
+			if (Math.abs(grid.xOf(p) - grid.xOf(v)) < 32 && Math.abs(grid.yOf(p) - grid.yOf(v)) < 32) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,38 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Checks that PathCli answers every query line, printing an error line
+ * for malformed ones and carrying on with the rest.
+ * @author Michael A. Long
+ *
+ */
+public class PathCliTest {
+	@Test
+	public void malformedLinesGiveErrors() throws IOException {
+		World world = new World(new Grid(10, 10));
+		String[] lines = runQueries(world, "0 0 9 9\nx 0 9 9\n0 0 9 99999999999\n0 0 9\n# comment\n\n0,0,3,4\n0 0 10 0\n");
+		assertEquals(6, lines.length);
+		assertTrue(lines[0], lines[0].startsWith("0 0 9 9\t18.0\t19\t"));
+		assertTrue(lines[1], lines[1].startsWith("x 0 9 9\terror: "));
+		assertTrue(lines[2], lines[2].startsWith("0 0 9 99999999999\terror: "));
+		assertTrue(lines[3], lines[3].startsWith("0 0 9\terror: "));
+		assertTrue(lines[4], lines[4].startsWith("0 0 3 4\t7.0\t8\t"));
+		assertEquals("0 0 10 0\terror: outside the map", lines[5]);
+	}
+	private static String[] runQueries(World world, String queries) throws IOException {
+		StringWriter s = new StringWriter();
+		PrintWriter out = new PrintWriter(s);
+		PathCli.runQueries(world, new BufferedReader(new StringReader(queries)), out, false);
+		out.flush();
+		return s.toString().split("\\r?\\n");
+	}
+}
@@ -0,0 +1,238 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Plain, slow answers for the tests to check the real searches against:
+ * Dijkstra over every vertex for path costs, and breadth first search
+ * for whether two vertices are joined at all. checkQueries and
+ * checkQuery hold the loop the search tests share, given the search
+ * under test as a Search.
+ * @author Michael A. Long
+ *
+ */
+public final class Reference {
+	public static final double EPSILON = 1e-3;//float searches add up costs in another order
+
+	private Reference() {
+	}
+	/**
+	 * A width x height grid with about density of its vertices blocked.
+	 */
+	public static Grid randomGrid(Random rand, int width, int height, double density) {
+		Grid grid = new Grid(width, height);
+		for (int i=0; i<grid.size(); i++) {
+			if (rand.nextDouble() < density) grid.setBlocked(i, true);
+		}
+		return grid;
+	}
+	/**
+	 * Gives every vertex a random terrain cost from 1 to maxCost.
+	 */
+	public static void randomCosts(Random rand, Grid grid, int maxCost) {
+		for (int i=0; i<grid.size(); i++) grid.setCost(i, 1 + rand.nextInt(maxCost));
+	}
+	/**
+	 * A random open vertex, or -1 if there are none.
+	 */
+	public static int randomOpen(Random rand, Grid grid) {
+		for (int tries=0; tries<1000; tries++) {
+			int i = rand.nextInt(grid.size());
+			if (!grid.isBlocked(i)) return i;
+		}
+		return -1;
+	}
+	/**
+	 * True if move d from vertex cur is allowed, following AStarSearch.
+	 */
+	public static boolean canMove(Grid grid, Connectivity c, int cur, int d) {
+		int nx = grid.xOf(cur) + Connectivity.DX[d];
+		int ny = grid.yOf(cur) + Connectivity.DY[d];
+		if (nx < 0 || nx >= grid.width || ny < 0 || ny >= grid.height) return false;
+		if (grid.isBlocked(grid.index(nx, ny))) return false;
+		if (d >= 4 && !c.cutsCorners) {
+			return !grid.isBlocked(grid.index(nx, grid.yOf(cur))) && !grid.isBlocked(grid.index(grid.xOf(cur), ny));
+		}
+		return true;
+	}
+	/**
+	 * Cost of the shortest path from start to goal, each move costing its
+	 * length times the terrain cost of the vertex moved onto, or infinity
+	 * if there is none.
+	 */
+	public static double cost(Grid grid, Connectivity c, int start, int goal) {
+		double[] dist = new double[grid.size()];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>(64, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] a, double[] b) {
+				return Double.compare(a[0], b[0]);
+			}
+		});
+		dist[start] = 0;
+		queue.add(new double[] {0, start});
+		while (!queue.isEmpty()) {
+			double[] e = queue.poll();
+			int cur = (int)e[1];
+			if (e[0] > dist[cur]) continue;
+			if (cur == goal) return e[0];
+			for (int d=0; d<c.directions; d++) {
+				if (!canMove(grid, c, cur, d)) continue;
+				int n = grid.index(grid.xOf(cur) + Connectivity.DX[d], grid.yOf(cur) + Connectivity.DY[d]);
+				double nd = e[0] + (d < 4 ? 1.0 : Math.sqrt(2.0)) * grid.cost(n);
+				if (nd < dist[n]) {
+					dist[n] = nd;
+					queue.add(new double[] {nd, n});
+				}
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+	/**
+	 * Cost of the shortest path from start to goal in whole 1/1024ths,
+	 * each move costing Connectivity.FIXED_UNITS times the terrain cost of
+	 * the vertex moved onto, or -1 if there is none.
+	 */
+	public static long fixedCost(Grid grid, Connectivity c, int start, int goal) {
+		long[] dist = new long[grid.size()];
+		Arrays.fill(dist, Long.MAX_VALUE);
+		LongHeap heap = new LongHeap();
+		dist[start] = 0;
+		heap.add(start);
+		while (!heap.isEmpty()) {
+			long e = heap.remove();
+			int cur = (int)(e & 0xffffffffL);
+			if (e >>> 32 > dist[cur]) continue;
+			if (cur == goal) return dist[cur];
+			for (int d=0; d<c.directions; d++) {
+				if (!canMove(grid, c, cur, d)) continue;
+				int n = grid.index(grid.xOf(cur) + Connectivity.DX[d], grid.yOf(cur) + Connectivity.DY[d]);
+				long nd = dist[cur] + Connectivity.FIXED_UNITS[d] * grid.cost(n);
+				if (nd < dist[n]) {
+					dist[n] = nd;
+					heap.add(nd << 32 | n);
+				}
+			}
+		}
+		return -1;
+	}
+	/**
+	 * Cost of path, checking every step of it is a legal move, or -1 if
+	 * one isn't.
+	 */
+	public static double pathCost(Grid grid, Connectivity c, int[] path) {
+		double total = 0;
+		for (int i=1; i<path.length; i++) {
+			int move = -1;
+			for (int d=0; d<c.directions; d++) {
+				int nx = grid.xOf(path[i-1]) + Connectivity.DX[d], ny = grid.yOf(path[i-1]) + Connectivity.DY[d];
+				if (nx == grid.xOf(path[i]) && ny == grid.yOf(path[i])) move = d;
+			}
+			if (move < 0 || !canMove(grid, c, path[i-1], move)) return -1;
+			total += (move < 4 ? 1.0 : Math.sqrt(2.0)) * grid.cost(path[i]);
+		}
+		return total;
+	}
+	/**
+	 * Cost of path in whole 1/1024ths, as fixedCost, without checking its steps.
+	 */
+	public static long fixedPathCost(Grid grid, int[] path) {
+		long total = 0;
+		for (int i=1; i<path.length; i++) {
+			boolean diagonal = grid.xOf(path[i]) != grid.xOf(path[i-1]) && grid.yOf(path[i]) != grid.yOf(path[i-1]);
+			total += (diagonal ? 1448 : 1024) * grid.cost(path[i]);
+		}
+		return total;
+	}
+	/**
+	 * True if b can be reached from a, found by breadth first search.
+	 */
+	public static boolean reachable(Grid grid, Connectivity c, int a, int b) {
+		if (grid.isBlocked(a) || grid.isBlocked(b)) return false;
+		boolean[] seen = new boolean[grid.size()];
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		seen[a] = true;
+		queue.add(a);
+		while (!queue.isEmpty()) {
+			int cur = queue.poll();
+			if (cur == b) return true;
+			for (int d=0; d<c.directions; d++) {
+				if (!canMove(grid, c, cur, d)) continue;
+				int n = grid.index(grid.xOf(cur) + Connectivity.DX[d], grid.yOf(cur) + Connectivity.DY[d]);
+				if (!seen[n]) {
+					seen[n] = true;
+					queue.add(n);
+				}
+			}
+		}
+		return false;
+	}
+	/**
+	 * A search under test, as checkQuery runs it.
+	 */
+	public abstract static class Search {
+		public abstract boolean find(int start, int goal);
+		public abstract int[] path();//found by the last find, start first
+		public double cost() {//reported by the last find, NaN if the search reports none
+			return Double.NaN;
+		}
+		/**
+		 * An AStarSearch in whatever mode it has been set to.
+		 */
+		public static Search of(final AStarSearch search) {
+			return new Search() {
+				@Override
+				public boolean find(int start, int goal) {
+					search.init(start, goal);
+					return search.run();
+				}
+				@Override
+				public int[] path() {
+					return search.path();
+				}
+				@Override
+				public double cost() {
+					return search.state.G[search.goal];
+				}
+			};
+		}
+	}
+	/**
+	 * Runs search between queries random pairs of open vertices, first
+	 * flipping up to edits - 1 random vertices before each, and checks
+	 * each with checkQuery. Returns how many found a path.
+	 */
+	public static int checkQueries(Random rand, Grid grid, Connectivity c, Search search, int queries, int edits, String where) {
+		int found = 0;
+		for (int query=0; query<queries; query++) {
+			for (int e = edits > 0 ? rand.nextInt(edits) : 0; e>0; e--) {
+				int i = rand.nextInt(grid.size());
+				grid.setBlocked(i, !grid.isBlocked(i));
+			}
+			int start = randomOpen(rand, grid), goal = randomOpen(rand, grid);
+			if (start < 0 || goal < 0) continue;
+			if (checkQuery(grid, c, search, start, goal, where+" query "+query)) found++;
+		}
+		return found;
+	}
+	/**
+	 * Checks that search finds a path from start to goal just when
+	 * Dijkstra does, made of legal moves and costing what Dijkstra's
+	 * does, as does the cost it reports. Returns whether it found one.
+	 */
+	public static boolean checkQuery(Grid grid, Connectivity c, Search search, int start, int goal, String where) {
+		double expected = cost(grid, c, start, goal);
+		boolean reached = search.find(start, goal);
+		where += ", "+start+" to "+goal;
+		assertEquals("found a path, "+where, !Double.isInfinite(expected), reached);
+		if (!reached) return false;
+		double cost = search.cost();
+		if (!Double.isNaN(cost)) assertEquals("path cost, "+where, expected, cost, EPSILON);
+		assertEquals("path steps, "+where, expected, pathCost(grid, c, search.path()), EPSILON);
+		return true;
+	}
+}
@@ -0,0 +1,77 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks WindowedSearch and TileComponents on random tiled maps, with
+ * tiles much smaller than the map and too few held in memory for one
+ * query, so tiles are evicted and read back in: paths must cost what
+ * Dijkstra's do over the whole map, and components must agree with
+ * breadth first search, including after edits.
+ * @author Michael A. Long
+ *
+ */
+public class WindowedSearchTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void four() throws IOException {
+		check(Connectivity.FOUR, 61);
+	}
+	@Test
+	public void eight() throws IOException {
+		check(Connectivity.EIGHT, 62);
+	}
+	@Test
+	public void eightNoCornerCutting() throws IOException {
+		check(Connectivity.EIGHT_NO_CORNER_CUTTING, 63);
+	}
+	private void check(Connectivity c, long seed) throws IOException {
+		Random rand = new Random(seed);
+		int found = 0;
+		long faults = 0;
+		for (int map=0; map<8; map++) {
+			int width = 70 + rand.nextInt(130), height = 70 + rand.nextInt(130);
+			File file = folder.newFile();
+			TiledGrid grid = TiledGrid.copyOf(Reference.randomGrid(rand, width, height, 0.45*rand.nextDouble()), file, 3, 6);
+			WindowedSearch search = new WindowedSearch(grid, 1 + rand.nextInt(8));
+			search.setConnectivity(c);
+			search.componentBlockShift = 2 + rand.nextInt(4);
+			for (int query=0; query<25; query++) {
+				for (int e=rand.nextInt(3); e>0; e--) {
+					int i = rand.nextInt(grid.size());
+					grid.setBlocked(i, !grid.isBlocked(i));
+				}
+				int start = Reference.randomOpen(rand, grid), goal = Reference.randomOpen(rand, grid);
+				if (start < 0 || goal < 0) continue;
+				double expected = Reference.cost(grid, c, start, goal);
+				boolean reached = search.findPath(start, goal);
+				String where = c+" "+width+"x"+height+" map "+map+" query "+query+", "+start+" to "+goal;
+				assertEquals("connected, "+where, !Double.isInfinite(expected), search.components.connected(
+						grid.xOf(start), grid.yOf(start), grid.xOf(goal), grid.yOf(goal)));
+				faults += search.tileFaults;
+				if (Double.isInfinite(expected)) {
+					assertFalse("found a path which doesn't exist, "+where, reached);
+					assertTrue(where, search.unreachable);
+					continue;
+				}
+				assertTrue("missed a path, "+where, reached);
+				assertEquals("path cost, "+where, expected, search.cost, Reference.EPSILON);
+				assertEquals("path steps, "+where, expected, Reference.pathCost(grid, c, search.path()), Reference.EPSILON);
+				found++;
+			}
+			grid.close();
+		}
+		assertTrue(found > 100);
+		assertTrue("tiles were never evicted", faults > 1000);
+	}
+}